@@ -13,6 +13,7 @@ package com.facebook.rebound;
 import android.annotation.TargetApi;
 import android.os.Build;
 import android.os.Handler;
+import android.os.Looper;
 import android.os.SystemClock;
 import android.view.Choreographer;
 
@@ -24,10 +25,26 @@ import android.view.Choreographer;
 abstract class AndroidSpringLooperFactory {
 
   /**
-   * Create an Android {@link com.facebook.rebound.SpringLooper} for the detected Android platform.
+   * Create an Android {@link com.facebook.rebound.SpringLooper} that runs on the process wide
+   * {@link SpringFrameScheduler}, sharing a single frame callback with every other system. The
+   * scheduler is bound to the main thread, so on any other thread this falls back to a looper that
+   * posts its own frame callbacks on that thread.
+   * @param priority the priority of the looper in the scheduler
    * @return a SpringLooper
    */
-  public static SpringLooper createSpringLooper() {
+  public static SpringLooper createSpringLooper(int priority) {
+    if (Looper.myLooper() != Looper.getMainLooper()) {
+      return createDedicatedSpringLooper();
+    }
+    return new SharedAndroidSpringLooper(SpringFrameScheduler.getInstance(), priority);
+  }
+
+  /**
+   * Create an Android {@link com.facebook.rebound.SpringLooper} for the detected Android platform
+   * that posts its own frame callbacks on the current thread.
+   * @return a SpringLooper
+   */
+  public static SpringLooper createDedicatedSpringLooper() {
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
       return ChoreographerAndroidSpringLooper.create();
     } else {
@@ -35,6 +52,49 @@ abstract class AndroidSpringLooperFactory {
     }
   }
 
+  /**
+   * The spring looper attached to the shared {@link SpringFrameScheduler}.
+   */
+  private static class SharedAndroidSpringLooper extends SpringLooper
+      implements SpringFrameScheduler.FrameClient {
+
+    private final SpringFrameScheduler mScheduler;
+    private final int mPriority;
+    private boolean mStarted;
+    private long mLastTime;
+
+    SharedAndroidSpringLooper(SpringFrameScheduler scheduler, int priority) {
+      mScheduler = scheduler;
+      mPriority = priority;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+      if (!mStarted || mSpringSystem == null) {
+        return;
+      }
+      long currentTime = SystemClock.uptimeMillis();
+      mSpringSystem.loop(currentTime - mLastTime);
+      mLastTime = currentTime;
+    }
+
+    @Override
+    public void start() {
+      if (mStarted) {
+        return;
+      }
+      mStarted = true;
+      mLastTime = SystemClock.uptimeMillis();
+      mScheduler.start(this, mPriority);
+    }
+
+    @Override
+    public void stop() {
+      mStarted = false;
+      mScheduler.stop(this);
+    }
+  }
+
   /**
    * The base implementation of the Android spring looper, using a {@link Handler} for the
    * frame callbacks.
@@ -11,9 +11,7 @@ package com.facebook.rebound;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 
 /**
  * AnimationQueue provides a way to trigger a delayed stream of animations off of a stream of
@@ -21,6 +19,10 @@ import java.util.Queue;
  * the number of animation frames equal to its position in the callback list. This makes it easy
  * to build cascading animations.
  *
+ * Values are kept in primitive ring buffers and dispatched by index to {@link ValueCallback}s, so
+ * running a frame does not allocate however many values are queued. {@link Callback} is still
+ * supported through an adapter that boxes each value it receives.
+ *
  * TODO: Add options for changing the delay after which a callback receives a value from the
  *       animation queue value stream.
  */
@@ -34,17 +36,35 @@ public class AnimationQueue {
     void onFrame(Double value);
   }
 
-  private final ChoreographerCompat mChoreographer;
-  private final Queue<Double> mPendingQueue = new LinkedList<Double>();
-  private final Queue<Double> mAnimationQueue = new LinkedList<Double>();
-  private final List<Callback> mCallbacks = new ArrayList<Callback>();
-  private final ArrayList<Double> mTempValues = new ArrayList<Double>();
-  private final ChoreographerCompat.FrameCallback mChoreographerCallback;
+  /**
+   * AnimationQueue.ValueCallback receives the value from the stream that it should use in its
+   * onFrame method without boxing.
+   */
+  public interface ValueCallback {
+    void onFrame(double value);
+  }
+
+  private final SpringFrameScheduler mScheduler;
+  private final DoubleRingBuffer mPendingQueue = new DoubleRingBuffer();
+  private final DoubleRingBuffer mAnimationQueue = new DoubleRingBuffer();
+  private final List<ValueCallback> mCallbacks = new ArrayList<ValueCallback>();
+  private final SpringFrameScheduler.FrameClient mFrameClient;
+  private final int mPriority;
   private boolean mRunning;
 
   public AnimationQueue() {
-    mChoreographer = ChoreographerCompat.getInstance();
-    mChoreographerCallback = new ChoreographerCompat.FrameCallback() {
+    this(SpringFrameScheduler.PRIORITY_DEFAULT);
+  }
+
+  /**
+   * Create an AnimationQueue running on the shared {@link SpringFrameScheduler}. The queue must be
+   * created and used on the main thread.
+   * @param priority the priority of the queue in the scheduler
+   */
+  public AnimationQueue(int priority) {
+    mScheduler = SpringFrameScheduler.getInstance();
+    mPriority = priority;
+    mFrameClient = new SpringFrameScheduler.FrameClient() {
       @Override
       public void doFrame(long frameTimeNanos) {
         onFrame(frameTimeNanos);
@@ -59,6 +79,14 @@ public class AnimationQueue {
    * @param value the single value to add
    */
   public void addValue(Double value) {
+    addValue(value.doubleValue());
+  }
+
+  /**
+   * Add a single value to the pending animation queue.
+   * @param value the single value to add
+   */
+  public void addValue(double value) {
     mPendingQueue.add(value);
     runIfIdle();
   }
@@ -68,6 +96,17 @@ public class AnimationQueue {
    * @param values the collection of values to add
    */
   public void addAllValues(Collection<Double> values) {
+    for (Double value : values) {
+      mPendingQueue.add(value);
+    }
+    runIfIdle();
+  }
+
+  /**
+   * Add an array of values to the pending animation value queue
+   * @param values the values to add
+   */
+  public void addAllValues(double[] values) {
     mPendingQueue.addAll(values);
     runIfIdle();
   }
@@ -86,6 +125,14 @@ public class AnimationQueue {
    * @param callback the callback to add
    */
   public void addCallback(Callback callback) {
+    mCallbacks.add(new BoxingCallback(callback));
+  }
+
+  /**
+   * Add a callback receiving unboxed values to the AnimationQueue.
+   * @param callback the callback to add
+   */
+  public void addValueCallback(ValueCallback callback) {
     mCallbacks.add(callback);
   }
 
@@ -94,6 +141,21 @@ public class AnimationQueue {
    * @param callback the callback to remove
    */
   public void removeCallback(Callback callback) {
+    for (int i = 0; i < mCallbacks.size(); i++) {
+      ValueCallback valueCallback = mCallbacks.get(i);
+      if (valueCallback instanceof BoxingCallback &&
+          ((BoxingCallback) valueCallback).mCallback == callback) {
+        mCallbacks.remove(i);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Remove the specified callback from the AnimationQueue.
+   * @param callback the callback to remove
+   */
+  public void removeValueCallback(ValueCallback callback) {
     mCallbacks.remove(callback);
   }
 
@@ -110,7 +172,7 @@ public class AnimationQueue {
   private void runIfIdle() {
     if (!mRunning) {
       mRunning = true;
-      mChoreographer.postFrameCallback(mChoreographerCallback);
+      mScheduler.start(mFrameClient, mPriority);
     }
   }
 
@@ -125,35 +187,48 @@ public class AnimationQueue {
    *                       uptimeMillis() time base.
    */
   private void onFrame(long frameTimeNanos) {
-    Double nextPendingValue = mPendingQueue.poll();
-
     int drainingOffset;
-    if (nextPendingValue != null) {
-      mAnimationQueue.offer(nextPendingValue);
+    if (!mPendingQueue.isEmpty()) {
+      mAnimationQueue.add(mPendingQueue.poll());
       drainingOffset = 0;
     } else {
       drainingOffset = Math.max(mCallbacks.size() - mAnimationQueue.size(), 0);
     }
 
-    // Copy the values into a temporary ArrayList for processing.
-    mTempValues.addAll(mAnimationQueue);
-    for (int i = mTempValues.size() - 1; i > -1; i--) {
-      Double val = mTempValues.get(i);
-      int cbIdx = mTempValues.size() - 1 - i + drainingOffset;
+    // The newest value goes to the first callback, older values to the callbacks after it.
+    int size = mAnimationQueue.size();
+    for (int i = size - 1; i > -1; i--) {
+      int cbIdx = size - 1 - i + drainingOffset;
       if (mCallbacks.size() > cbIdx) {
-        mCallbacks.get(cbIdx).onFrame(val);
+        mCallbacks.get(cbIdx).onFrame(mAnimationQueue.get(i));
       }
     }
-    mTempValues.clear();
 
-    while (mAnimationQueue.size() + drainingOffset >= mCallbacks.size()) {
+    while (!mAnimationQueue.isEmpty() &&
+        mAnimationQueue.size() + drainingOffset >= mCallbacks.size()) {
       mAnimationQueue.poll();
     }
 
     if (mAnimationQueue.isEmpty() && mPendingQueue.isEmpty()) {
       mRunning = false;
-    } else {
-      mChoreographer.postFrameCallback(mChoreographerCallback);
+      mScheduler.stop(mFrameClient);
+    }
+  }
+
+  /**
+   * Adapter passing boxed values to a {@link Callback}.
+   */
+  private static class BoxingCallback implements ValueCallback {
+
+    private final Callback mCallback;
+
+    BoxingCallback(Callback callback) {
+      mCallback = callback;
+    }
+
+    @Override
+    public void onFrame(double value) {
+      mCallback.onFrame(value);
     }
   }
 
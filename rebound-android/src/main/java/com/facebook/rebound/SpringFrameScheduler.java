@@ -0,0 +1,175 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SpringFrameScheduler multiplexes every animation client of the process onto a single frame
+ * callback. Each {@link SpringSystem} created with {@link SpringSystem#create()} and each
+ * {@link AnimationQueue} attaches to the shared instance while it is running instead of posting its
+ * own callback, so a screen with many systems still only gets one callback per frame. Clients are
+ * run in descending priority order and the scheduler stops posting callbacks as soon as every
+ * client is idle.
+ *
+ * The scheduler is bound to the main thread and must only be used from it. Systems that run on
+ * another thread post their own frame callbacks instead, see
+ * {@link SpringSystem#createWithDedicatedLooper()}.
+ */
+public class SpringFrameScheduler {
+
+  public static final int PRIORITY_HIGH = 100;
+  public static final int PRIORITY_DEFAULT = 0;
+  public static final int PRIORITY_LOW = -100;
+
+  private static final int INITIAL_CAPACITY = 8;
+
+  private static SpringFrameScheduler sInstance;
+
+  /**
+   * get the shared scheduler of the main thread, creating it on first use
+   * @return the scheduler
+   * @throws IllegalStateException if called from a thread other than the main thread
+   */
+  public static SpringFrameScheduler getInstance() {
+    if (Looper.myLooper() != Looper.getMainLooper()) {
+      throw new IllegalStateException("the frame scheduler must be used from the main thread");
+    }
+    // only ever created on the main thread, so the Choreographer it binds to is the main one
+    if (sInstance == null) {
+      sInstance = new SpringFrameScheduler(ChoreographerCompat.getInstance());
+    }
+    return sInstance;
+  }
+
+  /**
+   * FrameClient is run on every frame while it is started on the scheduler.
+   */
+  public interface FrameClient {
+
+    /**
+     * called once per frame while the client is started
+     * @param frameTimeNanos The time in nanoseconds when the frame started being rendered, in the
+     *                       nanoTime() timebase.
+     */
+    void doFrame(long frameTimeNanos);
+  }
+
+  private final ChoreographerCompat mChoreographer;
+  private final ChoreographerCompat.FrameCallback mFrameCallback;
+  // started clients sorted by descending priority, with their priorities at the same index
+  private final List<FrameClient> mClients = new ArrayList<FrameClient>();
+  private int[] mPriorities = new int[INITIAL_CAPACITY];
+  // reused snapshot of the clients so they can start and stop while a frame is running
+  private final List<FrameClient> mFrameClients = new ArrayList<FrameClient>();
+  private boolean mPosted;
+
+  private SpringFrameScheduler(ChoreographerCompat choreographer) {
+    mChoreographer = choreographer;
+    mFrameCallback = new ChoreographerCompat.FrameCallback() {
+      @Override
+      public void doFrame(long frameTimeNanos) {
+        onFrame(frameTimeNanos);
+      }
+    };
+  }
+
+  /**
+   * Start running a client on every frame. Starting a client that is already started only updates
+   * its priority.
+   * @param client the client to run
+   * @param priority clients with a higher priority run first in each frame
+   */
+  public void start(FrameClient client, int priority) {
+    if (client == null) {
+      throw new IllegalArgumentException("client is required");
+    }
+    int existing = mClients.indexOf(client);
+    if (existing != -1) {
+      removeAt(existing);
+    }
+    int count = mClients.size();
+    int index = 0;
+    while (index < count && mPriorities[index] >= priority) {
+      index++;
+    }
+    if (count == mPriorities.length) {
+      int[] priorities = new int[count * 2];
+      System.arraycopy(mPriorities, 0, priorities, 0, count);
+      mPriorities = priorities;
+    }
+    System.arraycopy(mPriorities, index, mPriorities, index + 1, count - index);
+    mPriorities[index] = priority;
+    mClients.add(index, client);
+    if (!mPosted) {
+      mPosted = true;
+      mChoreographer.postFrameCallback(mFrameCallback);
+    }
+  }
+
+  /**
+   * Stop running a client. The frame callback is removed once no clients are left.
+   * @param client the client to stop
+   */
+  public void stop(FrameClient client) {
+    int index = mClients.indexOf(client);
+    if (index == -1) {
+      return;
+    }
+    removeAt(index);
+    if (mClients.isEmpty() && mPosted) {
+      mPosted = false;
+      mChoreographer.removeFrameCallback(mFrameCallback);
+    }
+  }
+
+  /**
+   * check if a client is started
+   * @param client the client to check
+   * @return true if the client runs on every frame
+   */
+  public boolean isStarted(FrameClient client) {
+    return mClients.contains(client);
+  }
+
+  /**
+   * get the number of started clients
+   * @return the number of clients running on every frame
+   */
+  public int getStartedClientCount() {
+    return mClients.size();
+  }
+
+  private void removeAt(int index) {
+    System.arraycopy(mPriorities, index + 1, mPriorities, index, mClients.size() - index - 1);
+    mClients.remove(index);
+  }
+
+  private void onFrame(long frameTimeNanos) {
+    mPosted = false;
+    mFrameClients.addAll(mClients);
+    for (int i = 0; i < mFrameClients.size(); i++) {
+      FrameClient client = mFrameClients.get(i);
+      // skip clients stopped by an earlier client during this frame
+      if (mClients.contains(client)) {
+        client.doFrame(frameTimeNanos);
+      }
+    }
+    mFrameClients.clear();
+    if (!mClients.isEmpty() && !mPosted) {
+      mPosted = true;
+      mChoreographer.postFrameCallback(mFrameCallback);
+    }
+  }
+}
@@ -18,11 +18,34 @@ public class SpringSystem extends BaseSpringSystem {
 
   /**
    * Create a new SpringSystem providing the appropriate constructor parameters to work properly
-   * in an Android environment.
+   * in an Android environment. The system runs on the shared {@link SpringFrameScheduler} of the
+   * main thread, or posts its own frame callbacks when created on another thread.
    * @return the SpringSystem
    */
   public static SpringSystem create() {
-    return new SpringSystem(AndroidSpringLooperFactory.createSpringLooper());
+    return create(SpringFrameScheduler.PRIORITY_DEFAULT);
+  }
+
+  /**
+   * Create a new SpringSystem running on the shared {@link SpringFrameScheduler} with the provided
+   * priority. Systems with a higher priority are looped first in each frame. When called from a
+   * thread other than the main thread the priority is ignored and the system posts its own frame
+   * callbacks on the current thread, as with {@link #createWithDedicatedLooper()}.
+   * @param priority the priority of the system in the scheduler
+   * @return the SpringSystem
+   */
+  public static SpringSystem create(int priority) {
+    return new SpringSystem(AndroidSpringLooperFactory.createSpringLooper(priority));
+  }
+
+  /**
+   * Create a new SpringSystem that posts its own frame callbacks on the current thread instead of
+   * using the shared {@link SpringFrameScheduler}. This is only needed to run springs on a thread
+   * other than the main thread.
+   * @return the SpringSystem
+   */
+  public static SpringSystem createWithDedicatedLooper() {
+    return new SpringSystem(AndroidSpringLooperFactory.createDedicatedSpringLooper());
   }
 
   private SpringSystem(SpringLooper springLooper) {
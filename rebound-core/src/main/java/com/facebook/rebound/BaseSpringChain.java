@@ -0,0 +1,335 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BaseSpringChain is a helper class for creating spring animations with multiple springs in a
+ * chain. Chains of springs can be used to create cascading animations that maintain individual
+ * physics state for each member of the chain. One spring in the chain is chosen to be the control
+ * spring. Springs before and after the control spring in the chain are pulled along by their
+ * predecessor. You can change which spring is the control spring at any point by calling
+ * {@link BaseSpringChain#setControlSpringIndex(int)}.
+ *
+ * Chains created with {@link #createCoupled(BaseSpringSystem)} integrate all of their springs
+ * jointly with a {@link CoupledSpringChain} instead of copying the position of each spring into
+ * the end value of the next one, so the whole chain moves in the same frame and settles as one
+ * system.
+ *
+ * The chain creates its springs in the {@link BaseSpringSystem} it is given, so many chains can
+ * share a single system and loop. On a plain JVM the system can be driven with a
+ * {@link SteppingLooper}.
+ */
+public class BaseSpringChain implements SpringListener {
+
+  /**
+   * Add these spring configs to the registry to support live tuning through the
+   * SpringConfiguratorView on Android
+   */
+  private static final SpringConfigRegistry registry = SpringConfigRegistry.getInstance();
+  static final int DEFAULT_MAIN_TENSION = 40;
+  static final int DEFAULT_MAIN_FRICTION = 6;
+  static final int DEFAULT_ATTACHMENT_TENSION = 70;
+  static final int DEFAULT_ATTACHMENT_FRICTION = 10;
+  private static int id = 0;
+
+
+  /**
+   * Factory method for creating a new BaseSpringChain with default SpringConfig.
+   * @param springSystem the system to create the springs of the chain in
+   * @return the newly created BaseSpringChain
+   */
+  public static BaseSpringChain create(BaseSpringSystem springSystem) {
+    return create(
+        springSystem,
+        DEFAULT_MAIN_TENSION,
+        DEFAULT_MAIN_FRICTION,
+        DEFAULT_ATTACHMENT_TENSION,
+        DEFAULT_ATTACHMENT_FRICTION);
+  }
+
+  /**
+   * Factory method for creating a new BaseSpringChain with the provided SpringConfig.
+   * @param springSystem the system to create the springs of the chain in
+   * @param mainTension tension for the main spring
+   * @param mainFriction friction for the main spring
+   * @param attachmentTension tension for the attachment spring
+   * @param attachmentFriction friction for the attachment spring
+   * @return the newly created BaseSpringChain
+   */
+  public static BaseSpringChain create(
+      BaseSpringSystem springSystem,
+      int mainTension,
+      int mainFriction,
+      int attachmentTension,
+      int attachmentFriction) {
+    return new BaseSpringChain(
+        springSystem,
+        mainTension,
+        mainFriction,
+        attachmentTension,
+        attachmentFriction,
+        false);
+  }
+
+  /**
+   * Factory method for creating a new coupled BaseSpringChain with default SpringConfig.
+   * @param springSystem the system to create the springs of the chain in
+   * @return the newly created BaseSpringChain
+   */
+  public static BaseSpringChain createCoupled(BaseSpringSystem springSystem) {
+    return createCoupled(
+        springSystem,
+        DEFAULT_MAIN_TENSION,
+        DEFAULT_MAIN_FRICTION,
+        DEFAULT_ATTACHMENT_TENSION,
+        DEFAULT_ATTACHMENT_FRICTION);
+  }
+
+  /**
+   * Factory method for creating a new coupled BaseSpringChain with the provided SpringConfig. The
+   * springs of a coupled chain are solved together in a single pass per frame.
+   * @param springSystem the system to create the springs of the chain in
+   * @param mainTension tension for the main spring
+   * @param mainFriction friction for the main spring
+   * @param attachmentTension tension for the attachment spring
+   * @param attachmentFriction friction for the attachment spring
+   * @return the newly created BaseSpringChain
+   */
+  public static BaseSpringChain createCoupled(
+      BaseSpringSystem springSystem,
+      int mainTension,
+      int mainFriction,
+      int attachmentTension,
+      int attachmentFriction) {
+    return new BaseSpringChain(
+        springSystem,
+        mainTension,
+        mainFriction,
+        attachmentTension,
+        attachmentFriction,
+        true);
+  }
+
+  private final BaseSpringSystem mSpringSystem;
+  private final ArrayList<SpringListener> mListeners = new ArrayList<SpringListener>();
+  private final ArrayList<Spring> mSprings = new ArrayList<Spring>();
+  private int mControlSpringIndex = -1;
+
+  // The main spring config defines the tension and friction for the control spring. Keeping these
+  // values separate allows the behavior of the trailing springs to be different than that of the
+  // control point.
+  private final SpringConfig mMainSpringConfig;
+
+  // The attachment spring config defines the tension and friction for the rest of the springs in
+  // the chain.
+  private final SpringConfig mAttachmentSpringConfig;
+
+  // Joint solver for the springs of a coupled chain, null when the springs are chained through
+  // their listeners.
+  private final CoupledSpringChain mCoupledChain;
+
+  /**
+   * constructor for the BaseSpringChain
+   * @param springSystem the system to create the springs of the chain in
+   * @param mainTension tension for the main spring
+   * @param mainFriction friction for the main spring
+   * @param attachmentTension tension for the attachment spring
+   * @param attachmentFriction friction for the attachment spring
+   * @param coupled true to solve the springs of the chain jointly
+   */
+  protected BaseSpringChain(
+      BaseSpringSystem springSystem,
+      int mainTension,
+      int mainFriction,
+      int attachmentTension,
+      int attachmentFriction,
+      boolean coupled) {
+    if (springSystem == null) {
+      throw new IllegalArgumentException("springSystem is required");
+    }
+    mSpringSystem = springSystem;
+    mMainSpringConfig = SpringConfig.fromOrigamiTensionAndFriction(mainTension, mainFriction);
+    mAttachmentSpringConfig =
+        SpringConfig.fromOrigamiTensionAndFriction(attachmentTension, attachmentFriction);
+    registry.addSpringConfig(mMainSpringConfig, "main spring " + id++);
+    registry.addSpringConfig(mAttachmentSpringConfig, "attachment spring " + id++);
+    mCoupledChain = coupled ?
+        new CoupledSpringChain(mSpringSystem, mMainSpringConfig, mAttachmentSpringConfig) :
+        null;
+  }
+
+  /**
+   * check if the springs of this chain are solved jointly
+   * @return true if the chain was created with {@link #createCoupled(BaseSpringSystem)}
+   */
+  public boolean isCoupled() {
+    return mCoupledChain != null;
+  }
+
+  /**
+   * get the system the springs of this chain are created in
+   * @return the BaseSpringSystem
+   */
+  public BaseSpringSystem getSpringSystem() {
+    return mSpringSystem;
+  }
+
+  public SpringConfig getMainSpringConfig() {
+    return mMainSpringConfig;
+  }
+
+  public SpringConfig getAttachmentSpringConfig() {
+    return mAttachmentSpringConfig;
+  }
+
+  /**
+   * Add a spring to the chain that will callback to the provided listener.
+   * @param listener the listener to notify for this Spring in the chain
+   * @return this BaseSpringChain for chaining
+   */
+  public BaseSpringChain addSpring(final SpringListener listener) {
+    if (mCoupledChain != null) {
+      // The coupled solver moves every spring itself, so the listener is notified directly.
+      mSprings.add(mCoupledChain.addSpring().addListener(listener));
+      mListeners.add(listener);
+      return this;
+    }
+    // We listen to each spring added to the SpringChain and dynamically chain the springs together
+    // whenever the control spring state is modified. Each spring gets its own link listener that
+    // knows the index of the spring so callbacks never have to search the chain.
+    Spring spring = mSpringSystem
+        .createSpring()
+        .addListener(new ChainLink(mSprings.size()))
+        .setSpringConfig(mAttachmentSpringConfig);
+    mSprings.add(spring);
+    mListeners.add(listener);
+    return this;
+  }
+
+  /**
+   * Set the index of the control spring. This spring will drive the positions of all the springs
+   * before and after it in the list when moved.
+   * @param i the index to use for the control spring
+   * @return this BaseSpringChain
+   */
+  public BaseSpringChain setControlSpringIndex(int i) {
+    mControlSpringIndex = i;
+    Spring controlSpring = mSprings.get(mControlSpringIndex);
+    if (controlSpring == null) {
+      return null;
+    }
+    if (mCoupledChain != null) {
+      mCoupledChain.setControlSpringIndex(i);
+      return this;
+    }
+    for (int j = 0; j < mSprings.size(); j++) {
+      mSprings.get(j).setSpringConfig(mAttachmentSpringConfig);
+    }
+    getControlSpring().setSpringConfig(mMainSpringConfig);
+    return this;
+  }
+
+  /**
+   * Retrieve the control spring so you can manipulate it to drive the positions of the other
+   * springs.
+   * @return the control spring.
+   */
+  public Spring getControlSpring() {
+    return mSprings.get(mControlSpringIndex);
+  }
+
+  /**
+   * Retrieve the list of springs in the chain.
+   * @return the list of springs
+   */
+  public List<Spring> getAllSprings() {
+    return mSprings;
+  }
+
+  @Override
+  public void onSpringUpdate(Spring spring) {
+    onSpringUpdate(mSprings.indexOf(spring), spring);
+  }
+
+  @Override
+  public void onSpringAtRest(Spring spring) {
+    mListeners.get(mSprings.indexOf(spring)).onSpringAtRest(spring);
+  }
+
+  @Override
+  public void onSpringActivate(Spring spring) {
+    mListeners.get(mSprings.indexOf(spring)).onSpringActivate(spring);
+  }
+
+  @Override
+  public void onSpringEndStateChange(Spring spring) {
+    mListeners.get(mSprings.indexOf(spring)).onSpringEndStateChange(spring);
+  }
+
+  private void onSpringUpdate(int idx, Spring spring) {
+    // Get the control spring index and update the endValue of each spring above and below it in the
+    // spring collection triggering a cascading effect.
+    SpringListener listener = mListeners.get(idx);
+    int above = -1;
+    int below = -1;
+    if (idx == mControlSpringIndex) {
+      below = idx - 1;
+      above = idx + 1;
+    } else if (idx < mControlSpringIndex) {
+      below = idx - 1;
+    } else if (idx > mControlSpringIndex) {
+      above = idx + 1;
+    }
+    if (above > -1 && above < mSprings.size()) {
+      mSprings.get(above).setEndValue(spring.getCurrentValue());
+    }
+    if (below > -1 && below < mSprings.size()) {
+      mSprings.get(below).setEndValue(spring.getCurrentValue());
+    }
+    listener.onSpringUpdate(spring);
+  }
+
+  /**
+   * Listener registered on each spring of the chain. It holds the index of its spring so the
+   * neighbours and the user listener are reached by direct array access.
+   */
+  private class ChainLink implements SpringListener {
+
+    private final int mIndex;
+
+    ChainLink(int index) {
+      mIndex = index;
+    }
+
+    @Override
+    public void onSpringUpdate(Spring spring) {
+      BaseSpringChain.this.onSpringUpdate(mIndex, spring);
+    }
+
+    @Override
+    public void onSpringAtRest(Spring spring) {
+      mListeners.get(mIndex).onSpringAtRest(spring);
+    }
+
+    @Override
+    public void onSpringActivate(Spring spring) {
+      mListeners.get(mIndex).onSpringActivate(spring);
+    }
+
+    @Override
+    public void onSpringEndStateChange(Spring spring) {
+      mListeners.get(mIndex).onSpringEndStateChange(spring);
+    }
+  }
+}
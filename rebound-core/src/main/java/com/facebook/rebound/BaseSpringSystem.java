@@ -10,10 +10,12 @@
 
 package com.facebook.rebound;
 
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -27,11 +29,47 @@ import java.util.concurrent.CopyOnWriteArraySet;
  */
 public class BaseSpringSystem {
 
-  private final Map<String, Spring> mSpringRegistry = new HashMap<String, Spring>();
+  // upper bound on the number of frames a FrameRatePolicy may skip between advances of a spring
+  public static final int MAX_FRAME_INTERVAL = 8;
+
+  // stages of a loop, used to attribute spring mutations to the point of the loop they happened in
+  static final int LOOP_STAGE_IDLE = 0;
+  static final int LOOP_STAGE_BEFORE_ADVANCE = 1;
+  static final int LOOP_STAGE_ADVANCING = 2;
+  static final int LOOP_STAGE_AFTER_ADVANCE = 3;
+
+  // header of a snapshot: magic, version and spring count
+  private static final int SNAPSHOT_MAGIC = 0x52425353; // RBSS
+  private static final int SNAPSHOT_VERSION = 1;
+  private static final int SNAPSHOT_HEADER_SIZE = 4 + 1 + 4;
+
+  // registered springs in creation order, which is the order used by snapshots
+  private final Map<String, Spring> mSpringRegistry = new LinkedHashMap<String, Spring>();
   private final Set<Spring> mActiveSprings = new CopyOnWriteArraySet<Spring>();
+  private final Set<SpringSimulation> mActiveSimulations =
+      new CopyOnWriteArraySet<SpringSimulation>();
   private final SpringLooper mSpringLooper;
   private final CopyOnWriteArraySet<SpringSystemListener> mListeners = new CopyOnWriteArraySet<SpringSystemListener>();
   private boolean mIdle = true;
+  private FrameRatePolicy mFrameRatePolicy;
+  private final long[] mFrameIntervalTickCounts = new long[MAX_FRAME_INTERVAL + 1];
+  private final CopyOnWriteArraySet<FrameBudgetListener> mFrameBudgetListeners =
+      new CopyOnWriteArraySet<FrameBudgetListener>();
+  private final CopyOnWriteArraySet<SpringRestoreListener> mRestoreListeners =
+      new CopyOnWriteArraySet<SpringRestoreListener>();
+  private long mFrameBudgetNanos;
+  private long mLoopStartNanos;
+  private int mDegradedSpringCount;
+  private final SpringTimerWheel mTimerWheel = new SpringTimerWheel();
+  private final SpringSolution mFastForwardSolution = new SpringSolution();
+  private double mStartLagMillis;
+  private double mLoopElapsedMillis;
+  private int mLoopStage = LOOP_STAGE_IDLE;
+  private Spring mAdvancingSpring;
+  private SpringRecorder mRecorder;
+  private SpringSystemMetrics mMetrics;
+  private SpringLoopProbe mLoopProbe;
+  private ListenerProfiler mListenerProfiler;
 
   /**
    * create a new BaseSpringSystem
@@ -54,6 +92,67 @@ public class BaseSpringSystem {
     return mIdle;
   }
 
+  /**
+   * Set the policy used to advance slow springs at a reduced rate. Passing null, the default,
+   * advances every active spring on every frame.
+   * @param frameRatePolicy the policy to apply to active springs
+   */
+  public void setFrameRatePolicy(FrameRatePolicy frameRatePolicy) {
+    mFrameRatePolicy = frameRatePolicy;
+  }
+
+  /**
+   * get the policy used to advance slow springs at a reduced rate
+   * @return the FrameRatePolicy or null if every spring advances every frame
+   */
+  public FrameRatePolicy getFrameRatePolicy() {
+    return mFrameRatePolicy;
+  }
+
+  /**
+   * Set the time each loop may spend before lower priority springs are degraded. Once a loop has
+   * used up its budget, {@link Spring#PRIORITY_NORMAL} springs are solved with fewer substeps and
+   * {@link Spring#PRIORITY_LOW} springs are deferred to the next frame, while
+   * {@link Spring#PRIORITY_CRITICAL} springs are always solved first and at full precision.
+   * @param budgetMillis the budget in milliseconds, or 0 to disable the budget
+   */
+  public void setFrameBudget(double budgetMillis) {
+    if (budgetMillis < 0) {
+      throw new IllegalArgumentException("budgetMillis must not be negative");
+    }
+    mFrameBudgetNanos = (long) (budgetMillis * 1000000.0);
+  }
+
+  /**
+   * get the time each loop may spend before lower priority springs are degraded
+   * @return the budget in milliseconds, 0 if disabled
+   */
+  public double getFrameBudget() {
+    return mFrameBudgetNanos / 1000000.0;
+  }
+
+  /**
+   * Get the number of spring advances that happened at the provided frame interval since the
+   * counts were last reset. Advances made without a FrameRatePolicy count towards an interval of 1.
+   * @param frameInterval number of frames between advances, from 1 to {@link #MAX_FRAME_INTERVAL}
+   * @return the number of advances at that interval
+   */
+  public long getFrameIntervalTickCount(int frameInterval) {
+    if (frameInterval < 1 || frameInterval > MAX_FRAME_INTERVAL) {
+      throw new IllegalArgumentException("frameInterval must be between 1 and " + MAX_FRAME_INTERVAL);
+    }
+    return mFrameIntervalTickCounts[frameInterval];
+  }
+
+  /**
+   * Reset the per frame interval tick counts to zero.
+   */
+  public void resetFrameIntervalTickCounts() {
+    for (int i = 0; i < mFrameIntervalTickCounts.length; i++) {
+      mFrameIntervalTickCounts[i] = 0;
+    }
+  }
+
   /**
    * create a spring with a random uuid for its name.
    * @return the spring
@@ -61,6 +160,9 @@ public class BaseSpringSystem {
   public Spring createSpring() {
     Spring spring = new Spring(this);
     registerSpring(spring);
+    if (mRecorder != null) {
+      mRecorder.recordCreate(spring);
+    }
     return spring;
   }
 
@@ -91,6 +193,104 @@ public class BaseSpringSystem {
     return Collections.unmodifiableList(list);
   }
 
+  /**
+   * get the number of registered springs without copying them like {@link #getAllSprings()}
+   * @return the number of springs
+   */
+  int getSpringCount() {
+    return mSpringRegistry.size();
+  }
+
+  /**
+   * get the springs currently advanced by the loop
+   * @return a live view of the active springs
+   */
+  Collection<Spring> getActiveSprings() {
+    return mActiveSprings;
+  }
+
+  /**
+   * get the size of a snapshot of the current springs
+   * @return the number of bytes {@link #snapshot(ByteBuffer)} writes
+   */
+  public int getSnapshotSize() {
+    return SNAPSHOT_HEADER_SIZE + mSpringRegistry.size() * Spring.SNAPSHOT_SIZE;
+  }
+
+  /**
+   * Capture the config, physics state, thresholds and rest flags of every spring in creation
+   * order into a new buffer.
+   * @return the snapshot, flipped and ready to be read or persisted
+   */
+  public ByteBuffer snapshot() {
+    ByteBuffer buffer = ByteBuffer.allocate(getSnapshotSize());
+    snapshot(buffer);
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Capture the state of every spring in creation order into the provided buffer, starting at its
+   * current position.
+   * @param buffer the buffer to write to, with at least {@link #getSnapshotSize()} bytes remaining
+   */
+  public void snapshot(ByteBuffer buffer) {
+    buffer.putInt(SNAPSHOT_MAGIC);
+    buffer.put((byte) SNAPSHOT_VERSION);
+    buffer.putInt(mSpringRegistry.size());
+    for (Spring spring : mSpringRegistry.values()) {
+      spring.writeSnapshot(buffer);
+    }
+  }
+
+  /**
+   * Restore a snapshot taken by {@link #snapshot()}. The springs of the snapshot are matched to
+   * the springs of this system in creation order, so a screen that re-creates its springs the same
+   * way gets its state back; springs missing from this system are created. No spring listener
+   * callbacks are fired while restoring. Once every spring has its state back, each
+   * {@link SpringRestoreListener} is notified once with all of the restored springs and the
+   * springs that were moving resume on the next loop.
+   * @param buffer the snapshot to read from its current position
+   * @return the restored springs in snapshot order
+   */
+  public List<Spring> restore(ByteBuffer buffer) {
+    try {
+      if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.get() != SNAPSHOT_VERSION) {
+        throw new IllegalArgumentException("buffer does not hold a spring system snapshot");
+      }
+      int count = buffer.getInt();
+      if (count < 0 || buffer.remaining() < (long) count * Spring.SNAPSHOT_SIZE) {
+        throw new IllegalArgumentException("spring system snapshot is truncated");
+      }
+      // reject a corrupt snapshot before any spring is touched
+      for (int i = 0; i < count; i++) {
+        Spring.checkSnapshot(buffer, buffer.position() + i * Spring.SNAPSHOT_SIZE);
+      }
+      List<Spring> springs = new ArrayList<Spring>(count);
+      springs.addAll(mSpringRegistry.values());
+      while (springs.size() > count) {
+        springs.remove(springs.size() - 1);
+      }
+      while (springs.size() < count) {
+        springs.add(createSpring());
+      }
+      for (Spring spring : springs) {
+        spring.readSnapshot(buffer);
+      }
+      for (Spring spring : springs) {
+        if (spring.systemShouldAdvance()) {
+          activateSpring(spring.getId());
+        }
+      }
+      for (SpringRestoreListener listener : mRestoreListeners) {
+        listener.onSpringsRestored(this, springs);
+      }
+      return springs;
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("spring system snapshot is truncated");
+    }
+  }
+
   /**
    * Registers a Spring to this BaseSpringSystem so it can be iterated if active.
    * @param spring the Spring to register
@@ -114,21 +314,195 @@ public class BaseSpringSystem {
     if (spring == null) {
       throw new IllegalArgumentException("spring is required");
     }
-    mActiveSprings.remove(spring);
+    deactivateSpring(spring);
     mSpringRegistry.remove(spring.getId());
   }
 
+  /**
+   * Set the end value of a spring after a delay. The start is driven by the loop of this system,
+   * so it happens on the first frame at or after the delay has elapsed and costs nothing until
+   * then no matter how many starts are pending. While starts are pending the system is not idle.
+   * @param spring the spring to start
+   * @param endValue the end value to set on the spring
+   * @param delayMillis delay in milliseconds from the current time of the system
+   * @return a handle that can be used to cancel the start
+   */
+  public ScheduledSpringStart scheduleEndValue(Spring spring, double endValue, double delayMillis) {
+    if (spring == null) {
+      throw new IllegalArgumentException("spring is required");
+    }
+    if (!isRegistered(spring)) {
+      throw new IllegalArgumentException("spring is not registered with this system");
+    }
+    ScheduledSpringStart start = new ScheduledSpringStart(spring, endValue);
+    schedule(start, delayMillis);
+    return start;
+  }
+
+  /**
+   * get the number of scheduled starts waiting to run
+   * @return the number of pending starts
+   */
+  public int getPendingScheduledStartCount() {
+    return mTimerWheel.getPendingCount();
+  }
+
+  /**
+   * Add a start to the timer wheel, running it right away if it is already due.
+   * @param start the start to schedule
+   * @param delayMillis delay in milliseconds from the current time of the system
+   */
+  void schedule(ScheduledSpringStart start, double delayMillis) {
+    if (!mTimerWheel.schedule(start, delayMillis)) {
+      start.run(this);
+    } else if (getIsIdle()) {
+      mIdle = false;
+      mSpringLooper.start();
+    }
+  }
+
+  /**
+   * Springs activated while the timer wheel runs its due starts are integrated over the whole
+   * frame that is about to be solved, so their motion effectively began one frame delta earlier.
+   * @return the delta of the loop being started, or 0 outside of the timer wheel pass
+   */
+  double getStartLagMillis() {
+    return mStartLagMillis;
+  }
+
+  /**
+   * check if the spring is currently registered with this system
+   * @param spring the spring to check
+   * @return true if the spring is registered
+   */
+  boolean isRegistered(Spring spring) {
+    return mSpringRegistry.get(spring.getId()) == spring;
+  }
+
   /**
    * update the springs in the system
    * @param deltaTime delta since last update in millis
    */
   void advance(double deltaTime) {
+    if (mFrameBudgetNanos > 0) {
+      advanceWithinBudget(deltaTime);
+      return;
+    }
     for (Spring spring : mActiveSprings) {
       // advance time in seconds
       if (spring.systemShouldAdvance()) {
-        spring.advance(deltaTime / 1000.0);
+        if (mFrameRatePolicy == null) {
+          mAdvancingSpring = spring;
+          spring.advance(deltaTime / 1000.0);
+          mAdvancingSpring = null;
+          mFrameIntervalTickCounts[1]++;
+        } else {
+          advanceSpring(spring, deltaTime, 1, Spring.SOLVER_TIMESTEP_SEC);
+        }
+      } else {
+        deactivateSpring(spring);
+      }
+    }
+  }
+
+  /**
+   * update the springs in the system, degrading the springs that are not critical once the frame
+   * budget has been used up.
+   * @param deltaTime delta since last update in millis
+   */
+  private void advanceWithinBudget(double deltaTime) {
+    long deadline = mLoopStartNanos + mFrameBudgetNanos;
+    // critical springs go first so they never pay for time spent on the rest of the system
+    for (Spring spring : mActiveSprings) {
+      if (spring.getPriority() == Spring.PRIORITY_CRITICAL) {
+        advanceSpring(spring, deltaTime, 1, Spring.SOLVER_TIMESTEP_SEC);
+      }
+    }
+    boolean overBudget = false;
+    for (Spring spring : mActiveSprings) {
+      int priority = spring.getPriority();
+      if (priority == Spring.PRIORITY_CRITICAL) {
+        continue;
+      }
+      if (!overBudget && System.nanoTime() > deadline) {
+        overBudget = true;
+      }
+      if (!overBudget) {
+        advanceSpring(spring, deltaTime, 1, Spring.SOLVER_TIMESTEP_SEC);
+      } else if (priority == Spring.PRIORITY_LOW) {
+        mDegradedSpringCount++;
+        advanceSpring(spring, deltaTime, 2, Spring.SOLVER_TIMESTEP_SEC);
       } else {
-        mActiveSprings.remove(spring);
+        mDegradedSpringCount++;
+        advanceSpring(spring, deltaTime, 1, Spring.DEGRADED_SOLVER_TIMESTEP_SEC);
+      }
+    }
+  }
+
+  /**
+   * advance a single spring, removing it from the active springs if it no longer needs to be
+   * advanced. The frame interval is the larger of minFrameInterval and the interval chosen by the
+   * FrameRatePolicy. Springs that are starting or coming to rest always advance so their activate
+   * and rest callbacks are not delayed, and the interval is capped so the accumulated time never
+   * exceeds the spring's maximum simulation step.
+   * @param spring the spring to advance
+   * @param deltaTime delta since last update in millis
+   * @param minFrameInterval the minimum number of frames between advances of the spring
+   * @param solverTimestep timestep of each physics iteration in seconds
+   */
+  private void advanceSpring(
+      Spring spring,
+      double deltaTime,
+      int minFrameInterval,
+      double solverTimestep) {
+    if (!spring.systemShouldAdvance()) {
+      deactivateSpring(spring);
+      return;
+    }
+    int frameInterval = 1;
+    if (!spring.wasAtRest() && !spring.isAtRest() && deltaTime > 0) {
+      frameInterval = minFrameInterval;
+      if (mFrameRatePolicy != null) {
+        frameInterval =
+            Math.max(frameInterval, mFrameRatePolicy.getFrameInterval(spring, deltaTime));
+      }
+      int maxFrameInterval = (int) (Spring.MAX_DELTA_TIME_SEC * 1000.0 / deltaTime);
+      frameInterval = Math.min(frameInterval, Math.min(maxFrameInterval, MAX_FRAME_INTERVAL));
+      frameInterval = Math.max(frameInterval, 1);
+    }
+    mAdvancingSpring = spring;
+    boolean advanced =
+        spring.advanceAtFrameInterval(deltaTime / 1000.0, frameInterval, solverTimestep);
+    mAdvancingSpring = null;
+    if (advanced) {
+      mFrameIntervalTickCounts[frameInterval]++;
+    }
+  }
+
+  /**
+   * move the springs in the system forward in closed form
+   * @param deltaTime time to move forward in millis
+   */
+  private void fastForwardSprings(double deltaTime) {
+    for (Spring spring : mActiveSprings) {
+      if (spring.systemShouldAdvance()) {
+        mAdvancingSpring = spring;
+        spring.fastForward(deltaTime / 1000.0, mFastForwardSolution);
+        mAdvancingSpring = null;
+      } else {
+        deactivateSpring(spring);
+      }
+    }
+  }
+
+  /**
+   * update the simulations in the system
+   * @param deltaTime delta since last update in millis
+   */
+  void advanceSimulations(double deltaTime) {
+    for (SpringSimulation simulation : mActiveSimulations) {
+      if (!simulation.advance(deltaTime / 1000.0)) {
+        mActiveSimulations.remove(simulation);
       }
     }
   }
@@ -138,21 +512,184 @@ public class BaseSpringSystem {
    * @param elapsedMillis elapsed milliseconds
    */
   public void loop(double elapsedMillis) {
-    for (SpringSystemListener listener : mListeners) {
-      listener.onBeforeIntegrate(this);
+    loop(elapsedMillis, false);
+  }
+
+  /**
+   * Move the system forward in time by solving the motion of its springs in closed form instead of
+   * integrating it frame by frame. Every active spring jumps to its state at the end of the
+   * interval, or to rest if it settles before then, and its listeners are notified once. The
+   * interval is split at the delayed starts that fall inside it, and active simulations, which
+   * have no closed form, are advanced a frame at a time.
+   * @param elapsedMillis the time to move forward in milliseconds
+   */
+  public void fastForward(double elapsedMillis) {
+    if (elapsedMillis < 0) {
+      throw new IllegalArgumentException("elapsedMillis must not be negative");
+    }
+    double remainingMillis = elapsedMillis;
+    do {
+      double stepMillis = remainingMillis;
+      if (!mActiveSimulations.isEmpty()) {
+        stepMillis = Math.min(stepMillis, SynchronousLooper.SIXTY_FPS);
+      }
+      double untilStartMillis = mTimerWheel.getMillisUntilNextStart();
+      if (untilStartMillis >= 0) {
+        stepMillis = Math.min(stepMillis, Math.max(untilStartMillis, SpringTimerWheel.TICK_MILLIS));
+      }
+      loop(stepMillis, true);
+      remainingMillis -= stepMillis;
+    } while (remainingMillis > 0);
+  }
+
+  /**
+   * Fast forward the system until it is idle, jumping each time over the time the slowest active
+   * spring needs to come to rest. Springs restarted by listeners or delayed starts are fast
+   * forwarded in turn. Like looping a system until idle, this does not return while a spring
+   * that never comes to rest is active.
+   */
+  public void fastForwardToRest() {
+    while (!getIsIdle()) {
+      double restMillis = 0;
+      for (Spring spring : mActiveSprings) {
+        double timeToRest = spring.getTimeToRest(mFastForwardSolution);
+        restMillis = Math.max(restMillis, timeToRest * 1000.0);
+      }
+      if (restMillis == 0 && mActiveSprings.isEmpty()) {
+        restMillis = mTimerWheel.getMillisUntilNextStart();
+      }
+      fastForward(Math.max(restMillis, SynchronousLooper.SIXTY_FPS));
+    }
+  }
+
+  private void loop(double elapsedMillis, boolean fastForward) {
+    SpringSystemMetrics metrics = mMetrics;
+    long metricsLoopStartNanos = metrics != null ? System.nanoTime() : 0;
+    SpringLoopProbe probe = mLoopProbe;
+    if (probe != null) {
+      probe.onLoopBegin(this, elapsedMillis, mActiveSprings.size());
+    }
+    if (mFrameBudgetNanos > 0) {
+      mLoopStartNanos = System.nanoTime();
+      mDegradedSpringCount = 0;
+    }
+    if (mRecorder != null) {
+      mRecorder.recordLoop(elapsedMillis);
     }
-    advance(elapsedMillis);
-    if (mActiveSprings.isEmpty()) {
+    mLoopElapsedMillis = elapsedMillis;
+    mLoopStage = LOOP_STAGE_BEFORE_ADVANCE;
+    notifyBeforeIntegrate(metrics, probe);
+    mStartLagMillis = elapsedMillis;
+    mTimerWheel.advance(elapsedMillis, this);
+    mStartLagMillis = 0;
+    mLoopStage = LOOP_STAGE_ADVANCING;
+    if (probe != null) {
+      probe.onIntegrationBegin(this);
+    }
+    long metricsIntegrationStartNanos = 0;
+    long metricsListenerNanos = 0;
+    if (metrics != null) {
+      metricsIntegrationStartNanos = System.nanoTime();
+      metricsListenerNanos = metrics.mFrameListenerNanos;
+    }
+    if (fastForward) {
+      fastForwardSprings(elapsedMillis);
+    } else {
+      advance(elapsedMillis);
+    }
+    mLoopStage = LOOP_STAGE_AFTER_ADVANCE;
+    advanceSimulations(elapsedMillis);
+    long metricsIntegrationNanos = 0;
+    if (metrics != null) {
+      metricsIntegrationNanos = System.nanoTime() - metricsIntegrationStartNanos;
+      metricsListenerNanos = metrics.mFrameListenerNanos - metricsListenerNanos;
+    }
+    if (probe != null) {
+      probe.onIntegrationEnd(this, mActiveSprings.size());
+    }
+    if (mActiveSprings.isEmpty() && mActiveSimulations.isEmpty() && !mTimerWheel.hasPending()) {
       mIdle = true;
     }
-    for (SpringSystemListener listener : mListeners) {
-      listener.onAfterIntegrate(this);
+    notifyAfterIntegrate(metrics, probe);
+    mLoopStage = LOOP_STAGE_IDLE;
+    if (mListenerProfiler != null) {
+      mListenerProfiler.onLoopEnd(this);
+    }
+    if (probe != null) {
+      probe.onLoopEnd(this, mActiveSprings.size());
+    }
+    if (metrics != null) {
+      metrics.recordLoop(
+          System.nanoTime() - metricsLoopStartNanos,
+          metricsIntegrationNanos,
+          metricsListenerNanos,
+          mActiveSprings.size());
+    }
+    if (mFrameBudgetNanos > 0) {
+      long loopNanos = System.nanoTime() - mLoopStartNanos;
+      if (loopNanos > mFrameBudgetNanos || mDegradedSpringCount > 0) {
+        for (FrameBudgetListener listener : mFrameBudgetListeners) {
+          listener.onFrameBudgetExceeded(this, loopNanos / 1000000.0, mDegradedSpringCount);
+        }
+      }
     }
     if (mIdle) {
       mSpringLooper.stop();
     }
   }
 
+  private void notifyBeforeIntegrate(SpringSystemMetrics metrics, SpringLoopProbe probe) {
+    if (probe != null) {
+      probe.onListenerDispatchBegin(this, false);
+    }
+    long startNanos = metrics != null ? System.nanoTime() : 0;
+    ListenerProfiler profiler = mListenerProfiler;
+    for (SpringSystemListener listener : mListeners) {
+      if (profiler == null) {
+        listener.onBeforeIntegrate(this);
+      } else {
+        long listenerStartNanos = System.nanoTime();
+        listener.onBeforeIntegrate(this);
+        profiler.record(listener, System.nanoTime() - listenerStartNanos);
+      }
+    }
+    if (metrics != null) {
+      metrics.mFrameListenerNanos += System.nanoTime() - startNanos;
+    }
+    if (probe != null) {
+      probe.onListenerDispatchEnd(this, false);
+    }
+  }
+
+  private void notifyAfterIntegrate(SpringSystemMetrics metrics, SpringLoopProbe probe) {
+    if (probe != null) {
+      probe.onListenerDispatchBegin(this, true);
+    }
+    long startNanos = metrics != null ? System.nanoTime() : 0;
+    ListenerProfiler profiler = mListenerProfiler;
+    for (SpringSystemListener listener : mListeners) {
+      if (profiler == null) {
+        listener.onAfterIntegrate(this);
+      } else {
+        long listenerStartNanos = System.nanoTime();
+        listener.onAfterIntegrate(this);
+        profiler.record(listener, System.nanoTime() - listenerStartNanos);
+      }
+    }
+    if (metrics != null) {
+      metrics.mFrameListenerNanos += System.nanoTime() - startNanos;
+    }
+    if (probe != null) {
+      probe.onListenerDispatchEnd(this, true);
+    }
+  }
+
+  private void deactivateSpring(Spring spring) {
+    if (mActiveSprings.remove(spring) && mMetrics != null) {
+      mMetrics.mFrameDeactivations++;
+    }
+  }
+
   /**
    * This is used internally by the {@link Spring}s created by this {@link BaseSpringSystem} to notify
    * it has reached a state where it needs to be iterated. This will add the spring to the list of
@@ -164,13 +701,152 @@ public class BaseSpringSystem {
     if (spring == null) {
       throw new IllegalArgumentException("springId " + springId + " does not reference a registered spring");
     }
-    mActiveSprings.add(spring);
+    SpringSimulation driver = spring.getDriver();
+    if (driver != null) {
+      activateSimulation(driver);
+      return;
+    }
+    if (mActiveSprings.add(spring) && mMetrics != null) {
+      mMetrics.mFrameActivations++;
+    }
+    if (getIsIdle()) {
+      mIdle = false;
+      mSpringLooper.start();
+    }
+  }
+
+  /**
+   * Add a simulation to the set of simulations advanced on every loop, starting the iteration if
+   * the system was idle. The simulation stays active until its advance method returns false.
+   * @param simulation the simulation to activate
+   */
+  public void activateSimulation(SpringSimulation simulation) {
+    if (simulation == null) {
+      throw new IllegalArgumentException("simulation is required");
+    }
+    mActiveSimulations.add(simulation);
     if (getIsIdle()) {
       mIdle = false;
       mSpringLooper.start();
     }
   }
 
+  /**
+   * Create a spring whose integration is handled by a simulation rather than by this system.
+   * @param driver the simulation that advances the spring
+   * @return the spring
+   */
+  Spring createDrivenSpring(SpringSimulation driver) {
+    Spring spring = new Spring(this);
+    spring.setDriver(driver);
+    registerSpring(spring);
+    return spring;
+  }
+
+  /**
+   * Turn the collection of {@link SpringSystemMetrics} on or off. While metrics are off the loop
+   * does not read the clock or touch any counter. Turning them off discards what was collected.
+   * @param enabled true to collect metrics
+   */
+  public void setMetricsEnabled(boolean enabled) {
+    if (!enabled) {
+      mMetrics = null;
+    } else if (mMetrics == null) {
+      mMetrics = new SpringSystemMetrics();
+    }
+  }
+
+  public boolean isMetricsEnabled() {
+    return mMetrics != null;
+  }
+
+  /**
+   * get a snapshot of the metrics collected since they were enabled or last reset
+   * @return a copy of the metrics or null if metrics are not enabled
+   */
+  public SpringSystemMetrics getMetrics() {
+    return mMetrics == null ? null : new SpringSystemMetrics(mMetrics);
+  }
+
+  /**
+   * clear the metrics collected so far
+   */
+  public void resetMetrics() {
+    if (mMetrics != null) {
+      mMetrics.reset();
+    }
+  }
+
+  /**
+   * Install a probe that is told about the phases of every loop, for instance to emit profiler
+   * events. Only one probe can be installed at a time.
+   * @param loopProbe the probe or null to remove the current one
+   */
+  public void setLoopProbe(SpringLoopProbe loopProbe) {
+    mLoopProbe = loopProbe;
+  }
+
+  public SpringLoopProbe getLoopProbe() {
+    return mLoopProbe;
+  }
+
+  /**
+   * Install a profiler that times the listener callbacks made from the loop. Only one profiler
+   * can be installed at a time.
+   * @param listenerProfiler the profiler or null to stop profiling
+   */
+  public void setListenerProfiler(ListenerProfiler listenerProfiler) {
+    mListenerProfiler = listenerProfiler;
+  }
+
+  public ListenerProfiler getListenerProfiler() {
+    return mListenerProfiler;
+  }
+
+  /**
+   * get the metrics being collected, for the springs of this system to add to
+   * @return the live metrics or null if metrics are not enabled
+   */
+  SpringSystemMetrics getCollectingMetrics() {
+    return mMetrics;
+  }
+
+  /**
+   * get the recorder capturing the mutations of this system
+   * @return the recorder or null when not recording
+   */
+  SpringRecorder getRecorder() {
+    return mRecorder;
+  }
+
+  void setRecorder(SpringRecorder recorder) {
+    mRecorder = recorder;
+  }
+
+  /**
+   * get the elapsed time passed to the loop currently running or, between loops, the last one
+   * @return the elapsed milliseconds
+   */
+  double getLoopElapsedMillis() {
+    return mLoopElapsedMillis;
+  }
+
+  /**
+   * get the stage of the loop currently running
+   * @return one of the LOOP_STAGE constants
+   */
+  int getLoopStage() {
+    return mLoopStage;
+  }
+
+  /**
+   * get the spring being advanced while the loop is in {@link #LOOP_STAGE_ADVANCING}
+   * @return the spring being advanced or null
+   */
+  Spring getAdvancingSpring() {
+    return mAdvancingSpring;
+  }
+
   /** listeners **/
 
   /**
@@ -201,6 +877,50 @@ public class BaseSpringSystem {
   public void removeAllListeners() {
     mListeners.clear();
   }
+
+  /**
+   * Add a listener to be notified when a loop exceeds the frame budget.
+   * @param newListener listener
+   */
+  public void addFrameBudgetListener(FrameBudgetListener newListener) {
+    if (newListener == null) {
+      throw new IllegalArgumentException("newListener is required");
+    }
+    mFrameBudgetListeners.add(newListener);
+  }
+
+  /**
+   * Remove a frame budget listener.
+   * @param listenerToRemove listener
+   */
+  public void removeFrameBudgetListener(FrameBudgetListener listenerToRemove) {
+    if (listenerToRemove == null) {
+      throw new IllegalArgumentException("listenerToRemove is required");
+    }
+    mFrameBudgetListeners.remove(listenerToRemove);
+  }
+
+  /**
+   * Add a listener to be notified once when a snapshot is restored.
+   * @param newListener listener
+   */
+  public void addRestoreListener(SpringRestoreListener newListener) {
+    if (newListener == null) {
+      throw new IllegalArgumentException("newListener is required");
+    }
+    mRestoreListeners.add(newListener);
+  }
+
+  /**
+   * Remove a restore listener.
+   * @param listenerToRemove listener
+   */
+  public void removeRestoreListener(SpringRestoreListener listenerToRemove) {
+    if (listenerToRemove == null) {
+      throw new IllegalArgumentException("listenerToRemove is required");
+    }
+    mRestoreListeners.remove(listenerToRemove);
+  }
 }
 
 
@@ -0,0 +1,372 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * ChromeTraceWriter is a {@link SpringLoopProbe} that writes the activity of a
+ * {@link BaseSpringSystem} in the Chrome trace event JSON format, which chrome://tracing and
+ * Perfetto open directly.
+ *
+ * <ul>
+ *   <li>every loop is a slice, with nested slices for the system listeners before integration,
+ *   the integration and the system listeners after integration</li>
+ *   <li>the notification of the listeners of each spring is a slice inside the integration, so
+ *   slow callbacks stand out</li>
+ *   <li>every spring gets an async slice from the moment it starts moving until it comes to rest,
+ *   so long running springs stand out</li>
+ * </ul>
+ *
+ * Events are collected in a fixed size buffer of primitive arrays and only formatted when the
+ * buffer is full, when {@link #flush()} is called or when the writer is closed, so recording a
+ * loop does not allocate. The output is only valid JSON once the writer is closed.
+ *
+ * <pre>
+ *   ChromeTraceWriter trace = new ChromeTraceWriter(new File("springs.json"), 4096);
+ *   springSystem.setLoopProbe(trace);
+ *   ...
+ *   springSystem.setLoopProbe(null);
+ *   trace.close();
+ * </pre>
+ */
+public class ChromeTraceWriter implements SpringLoopProbe, Closeable {
+
+  private static final int TYPE_LOOP = 0;
+  private static final int TYPE_BEFORE_INTEGRATE_LISTENERS = 1;
+  private static final int TYPE_INTEGRATION = 2;
+  private static final int TYPE_AFTER_INTEGRATE_LISTENERS = 3;
+  private static final int TYPE_SPRING_LISTENERS = 4;
+  private static final int TYPE_SPRING_ACTIVE_BEGIN = 5;
+  private static final int TYPE_SPRING_ACTIVE_END = 6;
+
+  private static final int PROCESS_ID = 1;
+
+  private static final String[] SLICE_NAMES = {
+      "loop",
+      "onBeforeIntegrate listeners",
+      "integration",
+      "onAfterIntegrate listeners",
+  };
+
+  private final Writer mOutput;
+  private final StringBuilder mLine = new StringBuilder();
+  private final long mStartNanos = System.nanoTime();
+  // buffered events
+  private final int[] mTypes;
+  private final long[] mTimestamps;
+  private final long[] mDurations;
+  private final long[] mThreadIds;
+  private final int[] mSpringIds;
+  private final double[] mFirstArgs;
+  private final double[] mSecondArgs;
+  private int mCount;
+  // start of the slices in progress
+  private long mLoopStartNanos;
+  private long mDispatchStartNanos;
+  private long mIntegrationStartNanos;
+  private long mSpringListenersStartNanos;
+  private double mLoopElapsedMillis;
+  private boolean mWroteEvent;
+  private boolean mClosed;
+  private IOException mError;
+
+  /**
+   * create a ChromeTraceWriter writing to a file
+   * @param file the file to write, replaced if it exists
+   * @param bufferSize the number of events collected before they are written
+   * @throws IOException if the file cannot be opened
+   */
+  public ChromeTraceWriter(File file, int bufferSize) throws IOException {
+    this(
+        new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8")),
+        bufferSize);
+  }
+
+  /**
+   * constructor for the ChromeTraceWriter
+   * @param output where the JSON is written, it is closed by {@link #close()}
+   * @param bufferSize the number of events collected before they are written
+   */
+  public ChromeTraceWriter(Writer output, int bufferSize) {
+    if (output == null) {
+      throw new IllegalArgumentException("output is required");
+    }
+    if (bufferSize < 1) {
+      throw new IllegalArgumentException("bufferSize must be positive");
+    }
+    mOutput = output;
+    mTypes = new int[bufferSize];
+    mTimestamps = new long[bufferSize];
+    mDurations = new long[bufferSize];
+    mThreadIds = new long[bufferSize];
+    mSpringIds = new int[bufferSize];
+    mFirstArgs = new double[bufferSize];
+    mSecondArgs = new double[bufferSize];
+    try {
+      mOutput.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  /**
+   * get the error that stopped the trace
+   * @return the error or null if writing the trace has not failed
+   */
+  public IOException getError() {
+    return mError;
+  }
+
+  @Override
+  public void onLoopBegin(
+      BaseSpringSystem springSystem,
+      double elapsedMillis,
+      int activeSpringCount) {
+    mLoopStartNanos = System.nanoTime();
+    mLoopElapsedMillis = elapsedMillis;
+  }
+
+  @Override
+  public void onListenerDispatchBegin(BaseSpringSystem springSystem, boolean afterIntegrate) {
+    mDispatchStartNanos = System.nanoTime();
+  }
+
+  @Override
+  public void onListenerDispatchEnd(BaseSpringSystem springSystem, boolean afterIntegrate) {
+    add(
+        afterIntegrate ? TYPE_AFTER_INTEGRATE_LISTENERS : TYPE_BEFORE_INTEGRATE_LISTENERS,
+        mDispatchStartNanos,
+        System.nanoTime() - mDispatchStartNanos,
+        0,
+        0,
+        0);
+  }
+
+  @Override
+  public void onIntegrationBegin(BaseSpringSystem springSystem) {
+    mIntegrationStartNanos = System.nanoTime();
+  }
+
+  @Override
+  public void onIntegrationEnd(BaseSpringSystem springSystem, int activeSpringCount) {
+    add(
+        TYPE_INTEGRATION,
+        mIntegrationStartNanos,
+        System.nanoTime() - mIntegrationStartNanos,
+        0,
+        activeSpringCount,
+        0);
+  }
+
+  @Override
+  public void onSpringActivate(Spring spring) {
+    add(
+        TYPE_SPRING_ACTIVE_BEGIN,
+        System.nanoTime(),
+        0,
+        spring.getNumericId(),
+        spring.getCurrentValue(),
+        spring.getEndValue());
+  }
+
+  @Override
+  public void onSpringAtRest(Spring spring) {
+    add(
+        TYPE_SPRING_ACTIVE_END,
+        System.nanoTime(),
+        0,
+        spring.getNumericId(),
+        spring.getCurrentValue(),
+        spring.getEndValue());
+  }
+
+  @Override
+  public void onSpringListenersBegin(Spring spring) {
+    mSpringListenersStartNanos = System.nanoTime();
+  }
+
+  @Override
+  public void onSpringListenersEnd(Spring spring) {
+    add(
+        TYPE_SPRING_LISTENERS,
+        mSpringListenersStartNanos,
+        System.nanoTime() - mSpringListenersStartNanos,
+        spring.getNumericId(),
+        0,
+        0);
+  }
+
+  @Override
+  public void onLoopEnd(BaseSpringSystem springSystem, int activeSpringCount) {
+    add(
+        TYPE_LOOP,
+        mLoopStartNanos,
+        System.nanoTime() - mLoopStartNanos,
+        0,
+        mLoopElapsedMillis,
+        activeSpringCount);
+  }
+
+  /**
+   * Write the buffered events.
+   */
+  public void flush() {
+    if (mClosed || mError != null) {
+      mCount = 0;
+      return;
+    }
+    try {
+      for (int i = 0; i < mCount; i++) {
+        writeEvent(i);
+      }
+      mOutput.flush();
+    } catch (IOException e) {
+      fail(e);
+    }
+    mCount = 0;
+  }
+
+  /**
+   * Write the buffered events, terminate the JSON and close the output.
+   * @throws IOException if the output cannot be written or closed
+   */
+  @Override
+  public void close() throws IOException {
+    if (mClosed) {
+      return;
+    }
+    flush();
+    mClosed = true;
+    try {
+      if (mError == null) {
+        mOutput.write("]}\n");
+      }
+    } finally {
+      mOutput.close();
+    }
+    if (mError != null) {
+      throw mError;
+    }
+  }
+
+  private void add(
+      int type,
+      long startNanos,
+      long durationNanos,
+      int springId,
+      double firstArg,
+      double secondArg) {
+    if (mClosed || mError != null) {
+      return;
+    }
+    if (mCount == mTypes.length) {
+      flush();
+    }
+    mTypes[mCount] = type;
+    mTimestamps[mCount] = startNanos - mStartNanos;
+    mDurations[mCount] = durationNanos;
+    mThreadIds[mCount] = Thread.currentThread().getId();
+    mSpringIds[mCount] = springId;
+    mFirstArgs[mCount] = firstArg;
+    mSecondArgs[mCount] = secondArg;
+    mCount++;
+  }
+
+  private void writeEvent(int i) throws IOException {
+    StringBuilder line = mLine;
+    line.setLength(0);
+    if (mWroteEvent) {
+      line.append(",\n");
+    }
+    mWroteEvent = true;
+    int type = mTypes[i];
+    line.append("{\"pid\":").append(PROCESS_ID)
+        .append(",\"tid\":").append(mThreadIds[i])
+        .append(",\"ts\":");
+    appendMicros(line, mTimestamps[i]);
+    switch (type) {
+      case TYPE_SPRING_ACTIVE_BEGIN:
+      case TYPE_SPRING_ACTIVE_END:
+        line.append(",\"ph\":\"").append(type == TYPE_SPRING_ACTIVE_BEGIN ? 'b' : 'e')
+            .append("\",\"cat\":\"rebound.spring\",\"name\":\"spring:").append(mSpringIds[i])
+            .append("\",\"id\":").append(mSpringIds[i])
+            .append(",\"args\":{\"currentValue\":");
+        appendNumber(line, mFirstArgs[i]);
+        line.append(",\"endValue\":");
+        appendNumber(line, mSecondArgs[i]);
+        line.append("}}");
+        break;
+      case TYPE_SPRING_LISTENERS:
+        line.append(",\"ph\":\"X\",\"dur\":");
+        appendMicros(line, mDurations[i]);
+        line.append(",\"cat\":\"rebound.listener\",\"name\":\"spring:").append(mSpringIds[i])
+            .append(" listeners\"}");
+        break;
+      default:
+        line.append(",\"ph\":\"X\",\"dur\":");
+        appendMicros(line, mDurations[i]);
+        line.append(",\"cat\":\"rebound\",\"name\":\"").append(SLICE_NAMES[type]).append('"');
+        if (type == TYPE_LOOP) {
+          line.append(",\"args\":{\"elapsedMillis\":");
+          appendNumber(line, mFirstArgs[i]);
+          line.append(",\"activeSprings\":").append((int) mSecondArgs[i]).append('}');
+        } else if (type == TYPE_INTEGRATION) {
+          line.append(",\"args\":{\"activeSprings\":").append((int) mFirstArgs[i]).append('}');
+        }
+        line.append('}');
+        break;
+    }
+    mOutput.append(line);
+  }
+
+  /**
+   * append a value as a JSON number, or null for NaN and infinities which JSON cannot represent
+   */
+  private static void appendNumber(StringBuilder line, double value) {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      line.append("null");
+    } else {
+      line.append(value);
+    }
+  }
+
+  /**
+   * append nanoseconds as microseconds with three decimals, never in scientific notation
+   */
+  private static void appendMicros(StringBuilder line, long nanos) {
+    if (nanos < 0) {
+      line.append('-');
+      nanos = -nanos;
+    }
+    long fraction = nanos % 1000;
+    line.append(nanos / 1000).append('.');
+    if (fraction < 100) {
+      line.append('0');
+    }
+    if (fraction < 10) {
+      line.append('0');
+    }
+    line.append(fraction);
+  }
+
+  private void fail(IOException e) {
+    if (mError == null) {
+      mError = e;
+    }
+  }
+}
@@ -0,0 +1,259 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * CoupledSpringChain integrates a chain of springs as a single linear system. The control spring
+ * is pulled towards its end value using its own config, and every other spring is attached to its
+ * neighbour on the side of the control spring. Instead of copying the current value of a spring
+ * into the end value of the next one after each update, every solver step solves for the new
+ * velocities of the whole chain at once with a Crank-Nicolson step. Each spring only depends on
+ * itself and one neighbour, so the system is tridiagonal and is solved in O(n) per step.
+ *
+ * The springs of the chain are driven by it: they are not advanced individually by the system,
+ * the chain activates once when any of them is moved and notifies their listeners in one pass
+ * after the whole chain has been solved for the frame.
+ */
+public class CoupledSpringChain implements SpringSimulation {
+
+  private final BaseSpringSystem mSpringSystem;
+  private final SpringConfig mMainSpringConfig;
+  private final SpringConfig mAttachmentSpringConfig;
+  private final ArrayList<Spring> mSprings = new ArrayList<Spring>();
+  private int mControlSpringIndex = -1;
+  private double mTimeAccumulator;
+  private boolean mWasAtRest = true;
+
+  // physics state and scratch space for the tridiagonal solve, grown as springs are added
+  private double[] mPositions = new double[0];
+  private double[] mVelocities = new double[0];
+  private double[] mLower = new double[0];
+  private double[] mDiagonal = new double[0];
+  private double[] mUpper = new double[0];
+  private double[] mRhs = new double[0];
+
+  /**
+   * constructor for the CoupledSpringChain
+   * @param springSystem the system the springs of the chain are created in
+   * @param mainSpringConfig config of the control spring
+   * @param attachmentSpringConfig config of the springs attaching each member to its neighbour
+   */
+  public CoupledSpringChain(
+      BaseSpringSystem springSystem,
+      SpringConfig mainSpringConfig,
+      SpringConfig attachmentSpringConfig) {
+    if (springSystem == null) {
+      throw new IllegalArgumentException("springSystem is required");
+    }
+    if (mainSpringConfig == null || attachmentSpringConfig == null) {
+      throw new IllegalArgumentException("spring configs are required");
+    }
+    mSpringSystem = springSystem;
+    mMainSpringConfig = mainSpringConfig;
+    mAttachmentSpringConfig = attachmentSpringConfig;
+  }
+
+  public SpringConfig getMainSpringConfig() {
+    return mMainSpringConfig;
+  }
+
+  public SpringConfig getAttachmentSpringConfig() {
+    return mAttachmentSpringConfig;
+  }
+
+  /**
+   * Add a spring to the end of the chain.
+   * @return the new spring
+   */
+  public Spring addSpring() {
+    Spring spring = mSpringSystem
+        .createDrivenSpring(this)
+        .setSpringConfig(mAttachmentSpringConfig);
+    mSprings.add(spring);
+    if (mPositions.length < mSprings.size()) {
+      int capacity = Math.max(8, mPositions.length * 2);
+      mPositions = new double[capacity];
+      mVelocities = new double[capacity];
+      mLower = new double[capacity];
+      mDiagonal = new double[capacity];
+      mUpper = new double[capacity];
+      mRhs = new double[capacity];
+    }
+    return spring;
+  }
+
+  /**
+   * Set the index of the control spring. This spring will drive the positions of all the springs
+   * before and after it in the chain when moved.
+   * @param i the index to use for the control spring
+   * @return this CoupledSpringChain
+   */
+  public CoupledSpringChain setControlSpringIndex(int i) {
+    if (i < 0 || i >= mSprings.size()) {
+      throw new IndexOutOfBoundsException("control spring index " + i + " is out of the chain");
+    }
+    mControlSpringIndex = i;
+    for (int j = 0; j < mSprings.size(); j++) {
+      mSprings.get(j).setSpringConfig(j == i ? mMainSpringConfig : mAttachmentSpringConfig);
+    }
+    return this;
+  }
+
+  public int getControlSpringIndex() {
+    return mControlSpringIndex;
+  }
+
+  /**
+   * Retrieve the control spring so you can manipulate it to drive the positions of the other
+   * springs.
+   * @return the control spring.
+   */
+  public Spring getControlSpring() {
+    return mSprings.get(mControlSpringIndex);
+  }
+
+  /**
+   * Retrieve the list of springs in the chain.
+   * @return the list of springs
+   */
+  public List<Spring> getAllSprings() {
+    return Collections.unmodifiableList(mSprings);
+  }
+
+  @Override
+  public boolean advance(double deltaTime) {
+    int count = mSprings.size();
+    if (count == 0 || mControlSpringIndex < 0) {
+      return false;
+    }
+
+    // Springs are the source of truth for anything set from outside the chain, such as the
+    // control spring being dragged, so the state is read back from them on every frame.
+    for (int i = 0; i < count; i++) {
+      Spring spring = mSprings.get(i);
+      mPositions[i] = spring.getCurrentValue();
+      mVelocities[i] = spring.getVelocity();
+    }
+    double target = getControlSpring().getEndValue();
+
+    mTimeAccumulator += Math.min(deltaTime, Spring.MAX_DELTA_TIME_SEC);
+    while (mTimeAccumulator >= Spring.SOLVER_TIMESTEP_SEC) {
+      mTimeAccumulator -= Spring.SOLVER_TIMESTEP_SEC;
+      step(Spring.SOLVER_TIMESTEP_SEC, target, count);
+    }
+
+    boolean isAtRest = isAtRest(target, count);
+    if (isAtRest) {
+      for (int i = 0; i < count; i++) {
+        mPositions[i] = target;
+        mVelocities[i] = 0;
+      }
+      mTimeAccumulator = 0;
+    }
+
+    for (int i = 0; i < count; i++) {
+      mSprings.get(i).setDrivenState(mPositions[i], mVelocities[i], getAnchor(i, target));
+    }
+    boolean notifyActivate = mWasAtRest;
+    mWasAtRest = isAtRest;
+    for (int i = 0; i < count; i++) {
+      mSprings.get(i).notifyDrivenUpdate(notifyActivate, isAtRest);
+    }
+    return !isAtRest;
+  }
+
+  /**
+   * the position a spring is pulled towards: the end value for the control spring and the
+   * position of the neighbour on the side of the control spring for every other spring
+   */
+  private double getAnchor(int i, double target) {
+    if (i == mControlSpringIndex) {
+      return target;
+    }
+    return mPositions[i < mControlSpringIndex ? i + 1 : i - 1];
+  }
+
+  private boolean isAtRest(double target, int count) {
+    for (int i = 0; i < count; i++) {
+      Spring spring = mSprings.get(i);
+      if (Math.abs(mVelocities[i]) > spring.getRestSpeedThreshold()) {
+        return false;
+      }
+      if (spring.getSpringConfig().tension != 0 &&
+          Math.abs(getAnchor(i, target) - mPositions[i]) > spring.getRestDisplacementThreshold()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Advance the whole chain by one Crank-Nicolson step. For a spring i attached to p with tension
+   * k and friction c, substituting the trapezoidal position update into the trapezoidal velocity
+   * update gives
+   *   (1 + h/2 c + h^2/4 k) v_i' - h^2/4 k v_p' = v_i + h/2 a_i + h/2 k ((x_p - x_i) + h/2 (v_p - v_i))
+   * where a_i is the current acceleration. The control spring is attached to the fixed end value,
+   * so its row has no neighbour term.
+   */
+  private void step(double h, double target, int count) {
+    double halfStep = h * 0.5;
+    double quarterStepSquared = h * h * 0.25;
+    for (int i = 0; i < count; i++) {
+      SpringConfig config = mSprings.get(i).getSpringConfig();
+      double tension = config.tension;
+      double friction = config.friction;
+      double anchorPosition;
+      double anchorVelocity;
+      mLower[i] = 0;
+      mUpper[i] = 0;
+      if (i == mControlSpringIndex) {
+        anchorPosition = target;
+        anchorVelocity = 0;
+      } else if (i < mControlSpringIndex) {
+        anchorPosition = mPositions[i + 1];
+        anchorVelocity = mVelocities[i + 1];
+        mUpper[i] = -quarterStepSquared * tension;
+      } else {
+        anchorPosition = mPositions[i - 1];
+        anchorVelocity = mVelocities[i - 1];
+        mLower[i] = -quarterStepSquared * tension;
+      }
+      double stretch = anchorPosition - mPositions[i];
+      double acceleration = tension * stretch - friction * mVelocities[i];
+      mDiagonal[i] = 1 + halfStep * friction + quarterStepSquared * tension;
+      mRhs[i] = mVelocities[i] + halfStep * acceleration +
+          halfStep * tension * (stretch + halfStep * (anchorVelocity - mVelocities[i]));
+    }
+
+    // Thomas algorithm, reusing the upper and rhs arrays for the modified coefficients.
+    mUpper[0] /= mDiagonal[0];
+    mRhs[0] /= mDiagonal[0];
+    for (int i = 1; i < count; i++) {
+      double m = mDiagonal[i] - mLower[i] * mUpper[i - 1];
+      mUpper[i] /= m;
+      mRhs[i] = (mRhs[i] - mLower[i] * mRhs[i - 1]) / m;
+    }
+    // mRhs now holds the new velocities once back substituted, update positions as we go.
+    double nextVelocity = mRhs[count - 1];
+    mPositions[count - 1] += halfStep * (mVelocities[count - 1] + nextVelocity);
+    mVelocities[count - 1] = nextVelocity;
+    for (int i = count - 2; i >= 0; i--) {
+      nextVelocity = mRhs[i] - mUpper[i] * mRhs[i + 1];
+      mRhs[i] = nextVelocity;
+      mPositions[i] += halfStep * (mVelocities[i] + nextVelocity);
+      mVelocities[i] = nextVelocity;
+    }
+  }
+}
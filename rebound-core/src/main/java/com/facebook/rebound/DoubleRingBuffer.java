@@ -0,0 +1,109 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+/**
+ * FIFO queue of primitive doubles backed by a ring buffer. The buffer only allocates when it has
+ * to grow, so values can be queued and dequeued every frame without boxing or garbage.
+ */
+class DoubleRingBuffer {
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private double[] mValues;
+  private int mHead;
+  private int mSize;
+
+  DoubleRingBuffer() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  DoubleRingBuffer(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+    mValues = new double[capacity];
+  }
+
+  /**
+   * add a value at the tail of the queue
+   * @param value the value to add
+   */
+  void add(double value) {
+    if (mSize == mValues.length) {
+      grow(mSize + 1);
+    }
+    mValues[(mHead + mSize) % mValues.length] = value;
+    mSize++;
+  }
+
+  /**
+   * add values at the tail of the queue in array order
+   * @param values the values to add
+   */
+  void addAll(double[] values) {
+    if (mSize + values.length > mValues.length) {
+      grow(mSize + values.length);
+    }
+    for (double value : values) {
+      mValues[(mHead + mSize) % mValues.length] = value;
+      mSize++;
+    }
+  }
+
+  /**
+   * remove the value at the head of the queue
+   * @return the removed value
+   */
+  double poll() {
+    if (mSize == 0) {
+      throw new IllegalStateException("the queue is empty");
+    }
+    double value = mValues[mHead];
+    mHead = (mHead + 1) % mValues.length;
+    mSize--;
+    return value;
+  }
+
+  /**
+   * get a value without removing it
+   * @param index position from the head of the queue
+   * @return the value at that position
+   */
+  double get(int index) {
+    if (index < 0 || index >= mSize) {
+      throw new IndexOutOfBoundsException("index " + index + " is out of the queue");
+    }
+    return mValues[(mHead + index) % mValues.length];
+  }
+
+  int size() {
+    return mSize;
+  }
+
+  boolean isEmpty() {
+    return mSize == 0;
+  }
+
+  void clear() {
+    mHead = 0;
+    mSize = 0;
+  }
+
+  private void grow(int minCapacity) {
+    double[] values = new double[Math.max(minCapacity, mValues.length * 2)];
+    for (int i = 0; i < mSize; i++) {
+      values[i] = mValues[(mHead + i) % mValues.length];
+    }
+    mValues = values;
+    mHead = 0;
+  }
+}
@@ -0,0 +1,30 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+/**
+ * FrameBudgetListener is notified when a loop of a {@link BaseSpringSystem} runs over the frame
+ * budget set with {@link BaseSpringSystem#setFrameBudget(double)}.
+ */
+public interface FrameBudgetListener {
+
+  /**
+   * called at the end of a loop that exceeded the frame budget
+   * @param springSystem the BaseSpringSystem that ran over budget
+   * @param loopTimeMillis the time spent in the loop in milliseconds
+   * @param degradedSpringCount the number of springs that were solved at reduced precision or
+   *                            deferred to a later frame during the loop
+   */
+  void onFrameBudgetExceeded(
+      BaseSpringSystem springSystem,
+      double loopTimeMillis,
+      int degradedSpringCount);
+}
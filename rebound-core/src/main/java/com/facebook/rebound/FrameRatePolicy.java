@@ -0,0 +1,30 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+/**
+ * FrameRatePolicy lets a {@link BaseSpringSystem} advance slow moving springs less often than once
+ * per frame. This is useful on high refresh rate displays where integrating every spring on every
+ * vsync costs more than the visible benefit for springs that are barely moving.
+ */
+public interface FrameRatePolicy {
+
+  /**
+   * Determine how many frames may pass between advances of the provided spring. A value of 1
+   * advances the spring every frame, 2 every other frame and so on. Skipped time is accumulated
+   * and simulated on the next advance so the spring settles at the same time regardless of its
+   * update rate.
+   * @param spring the active spring being considered
+   * @param frameDeltaMillis the duration of the current frame in milliseconds
+   * @return the number of frames per advance for this spring
+   */
+  int getFrameInterval(Spring spring, double frameDeltaMillis);
+}
@@ -0,0 +1,149 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+/**
+ * Histogram of non-negative long values with log-linear buckets, in the style of HdrHistogram.
+ * Values below 32 are counted exactly and larger values fall in buckets that are at most 1/16th
+ * of their value wide, so any value or percentile read back is within about 6% of what was
+ * recorded, across the whole long range. Recording a value is a few bit operations and an array
+ * increment, with no allocation.
+ */
+public class Histogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT / 2;
+  private static final int BUCKET_COUNT =
+      SUB_BUCKET_COUNT + (Long.SIZE - SUB_BUCKET_BITS) * HALF_SUB_BUCKET_COUNT;
+
+  private final long[] mCounts;
+  private long mCount;
+  private long mMin = Long.MAX_VALUE;
+  private long mMax;
+  private double mTotal;
+
+  public Histogram() {
+    mCounts = new long[BUCKET_COUNT];
+  }
+
+  /**
+   * create a copy of a histogram
+   * @param histogram the histogram to copy
+   */
+  public Histogram(Histogram histogram) {
+    mCounts = histogram.mCounts.clone();
+    mCount = histogram.mCount;
+    mMin = histogram.mMin;
+    mMax = histogram.mMax;
+    mTotal = histogram.mTotal;
+  }
+
+  /**
+   * record a value, negative values are recorded as 0
+   * @param value the value to record
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    mCounts[getBucketIndex(value)]++;
+    mCount++;
+    mTotal += value;
+    if (value < mMin) {
+      mMin = value;
+    }
+    if (value > mMax) {
+      mMax = value;
+    }
+  }
+
+  public void reset() {
+    for (int i = 0; i < mCounts.length; i++) {
+      mCounts[i] = 0;
+    }
+    mCount = 0;
+    mMin = Long.MAX_VALUE;
+    mMax = 0;
+    mTotal = 0;
+  }
+
+  public long getCount() {
+    return mCount;
+  }
+
+  public long getMin() {
+    return mCount == 0 ? 0 : mMin;
+  }
+
+  public long getMax() {
+    return mMax;
+  }
+
+  public double getMean() {
+    return mCount == 0 ? 0 : mTotal / mCount;
+  }
+
+  /**
+   * get the value below which a percentage of the recorded values fall
+   * @param percentile the percentage between 0 and 100
+   * @return the largest value of the bucket holding the percentile, or 0 if nothing was recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    if (mCount == 0) {
+      return 0;
+    }
+    if (percentile <= 0) {
+      return mMin;
+    }
+    long rank = (long) Math.ceil(Math.min(percentile, 100) / 100 * mCount);
+    rank = Math.max(rank, 1);
+    long seen = 0;
+    for (int i = 0; i < mCounts.length; i++) {
+      seen += mCounts[i];
+      if (seen >= rank) {
+        return Math.max(Math.min(getHighestValueInBucket(i), mMax), mMin);
+      }
+    }
+    return mMax;
+  }
+
+  @Override
+  public String toString() {
+    return "count=" + mCount +
+        " min=" + getMin() +
+        " mean=" + String.format("%.1f", getMean()) +
+        " p50=" + getValueAtPercentile(50) +
+        " p90=" + getValueAtPercentile(90) +
+        " p99=" + getValueAtPercentile(99) +
+        " max=" + mMax;
+  }
+
+  static int getBucketIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    // shift so that only the SUB_BUCKET_BITS highest bits of the value remain
+    int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+    return SUB_BUCKET_COUNT +
+        (shift - 1) * HALF_SUB_BUCKET_COUNT +
+        (int) (value >>> shift) - HALF_SUB_BUCKET_COUNT;
+  }
+
+  static long getHighestValueInBucket(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = (index - SUB_BUCKET_COUNT) / HALF_SUB_BUCKET_COUNT + 1;
+    long subBucket = (index - SUB_BUCKET_COUNT) % HALF_SUB_BUCKET_COUNT + HALF_SUB_BUCKET_COUNT;
+    return (subBucket << shift) + (1L << shift) - 1;
+  }
+}
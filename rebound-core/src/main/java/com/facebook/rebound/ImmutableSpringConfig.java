@@ -0,0 +1,140 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable spring configuration with the physical constants derived from tension and friction
+ * computed once. Instances are interned, so there is a single instance per tension and friction
+ * pair, they can be compared by identity and they are safe to share between threads and systems.
+ * The intern table is never pruned, so it is meant for the fixed set of configs of an app rather
+ * than for configs computed from continuous input.
+ *
+ * A {@link SpringConfig} converts with {@link SpringConfig#toImmutable()} and back with
+ * {@link #toSpringConfig()}. A spring given an ImmutableSpringConfig through
+ * {@link Spring#setSpringConfig(ImmutableSpringConfig)} uses the cached constants when its motion
+ * is solved in closed form. Springs whose config is tuned live keep their own uninterned copy of
+ * the constants instead, so tuning never grows the intern table.
+ */
+public final class ImmutableSpringConfig {
+
+  private static final ConcurrentHashMap<ImmutableSpringConfig, ImmutableSpringConfig> sInterned =
+      new ConcurrentHashMap<ImmutableSpringConfig, ImmutableSpringConfig>();
+
+  public static final ImmutableSpringConfig DEFAULT = fromOrigamiTensionAndFriction(40, 7);
+
+  public final double tension;
+  public final double friction;
+  /** friction relative to the friction of a critically damped spring, below 1 it oscillates */
+  public final double dampingRatio;
+  /** angular frequency the spring would oscillate at without friction, in radians per second */
+  public final double naturalFrequency;
+  /** angular frequency the spring oscillates at, 0 unless it is underdamped */
+  public final double dampedFrequency;
+
+  // closed form constants read by SpringSolution
+  final int regime;
+  final double decay;
+  final double frequency;
+
+  /**
+   * Create a config that is not interned. Only used inside the package for the constants a spring
+   * derives from its mutable config, and never handed out, so every public instance is interned.
+   */
+  ImmutableSpringConfig(double tension, double friction) {
+    this.tension = tension;
+    this.friction = friction;
+    naturalFrequency = tension > 0 ? Math.sqrt(tension) : 0;
+    dampingRatio = naturalFrequency > 0 ? friction / (2 * naturalFrequency) : 0;
+    regime = SpringSolution.getRegime(tension, friction);
+    decay = SpringSolution.getDecay(regime, tension, friction);
+    frequency = SpringSolution.getFrequency(regime, tension, friction);
+    dampedFrequency = regime == SpringSolution.UNDERDAMPED ? frequency : 0;
+  }
+
+  /**
+   * get the config for a tension and friction
+   * @param tension tension of the spring
+   * @param friction friction of the spring
+   * @return the interned config
+   */
+  public static ImmutableSpringConfig of(double tension, double friction) {
+    ImmutableSpringConfig config = new ImmutableSpringConfig(tension, friction);
+    ImmutableSpringConfig interned = sInterned.putIfAbsent(config, config);
+    return interned == null ? config : interned;
+  }
+
+  static int getInternedCount() {
+    return sInterned.size();
+  }
+
+  /**
+   * get the config for tension and friction values of Origami, see
+   * {@link SpringConfig#fromOrigamiTensionAndFriction(double, double)}
+   * @param qcTension tension as defined in the Quartz Composition
+   * @param qcFriction friction as defined in the Quartz Composition
+   * @return the interned config
+   */
+  public static ImmutableSpringConfig fromOrigamiTensionAndFriction(
+      double qcTension,
+      double qcFriction) {
+    return of(
+        OrigamiValueConverter.tensionFromOrigamiValue(qcTension),
+        OrigamiValueConverter.frictionFromOrigamiValue(qcFriction));
+  }
+
+  /**
+   * get the config for the bounciness and speed of the Origami POP Animation patch, see
+   * {@link SpringConfig#fromBouncinessAndSpeed(double, double)}
+   * @param bounciness bounciness of the POP Animation
+   * @param speed speed of the POP Animation
+   * @return the interned config
+   */
+  public static ImmutableSpringConfig fromBouncinessAndSpeed(double bounciness, double speed) {
+    BouncyConversion bouncyConversion = new BouncyConversion(speed, bounciness);
+    return fromOrigamiTensionAndFriction(
+        bouncyConversion.getBouncyTension(),
+        bouncyConversion.getBouncyFriction());
+  }
+
+  /**
+   * create a mutable copy of this config
+   * @return a new SpringConfig with the same tension and friction
+   */
+  public SpringConfig toSpringConfig() {
+    return new SpringConfig(tension, friction);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof ImmutableSpringConfig)) {
+      return false;
+    }
+    ImmutableSpringConfig config = (ImmutableSpringConfig) other;
+    return Double.doubleToLongBits(tension) == Double.doubleToLongBits(config.tension) &&
+        Double.doubleToLongBits(friction) == Double.doubleToLongBits(config.friction);
+  }
+
+  @Override
+  public int hashCode() {
+    long bits = Double.doubleToLongBits(tension) * 31 + Double.doubleToLongBits(friction);
+    return (int) (bits ^ (bits >>> 32));
+  }
+
+  @Override
+  public String toString() {
+    return "tension=" + tension + " friction=" + friction;
+  }
+}
@@ -0,0 +1,29 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+/**
+ * ListenerBudgetListener is notified when a single listener spends more of a loop than the budget
+ * set with {@link ListenerProfiler#setListenerBudget(double)}.
+ */
+public interface ListenerBudgetListener {
+
+  /**
+   * called at the end of a loop in which a listener exceeded the listener budget
+   * @param springSystem the BaseSpringSystem running the loop
+   * @param listener the {@link SpringListener} or {@link SpringSystemListener} that ran over
+   * @param listenerTimeMillis the time spent in all callbacks of the listener during the loop
+   */
+  void onListenerBudgetExceeded(
+      BaseSpringSystem springSystem,
+      Object listener,
+      double listenerTimeMillis);
+}
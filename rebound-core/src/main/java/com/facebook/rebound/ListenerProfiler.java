@@ -0,0 +1,242 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * ListenerProfiler times every {@link SpringListener} and {@link SpringSystemListener} callback
+ * made from the loop of a {@link BaseSpringSystem} it is installed on with
+ * {@link BaseSpringSystem#setListenerProfiler(ListenerProfiler)}.
+ *
+ * Costs are aggregated by listener class, so the listeners of many springs that share an
+ * implementation add up to one entry, and {@link #getTopListeners(int)} reports the most expensive
+ * classes. Independently, the time each listener instance spends in a loop is compared to the
+ * listener budget and the {@link ListenerBudgetListener}s are told about every listener that went
+ * over it.
+ *
+ * Without a profiler installed the dispatch loops pay a single null check. With one, each
+ * callback costs two clock reads and two map lookups, and nothing is allocated once every
+ * listener class has been seen.
+ */
+public class ListenerProfiler {
+
+  /**
+   * The accumulated cost of the listeners of one class.
+   */
+  public static class ListenerCost {
+    private final Class<?> mListenerClass;
+    private long mCallCount;
+    private long mTotalNanos;
+    private long mMaxCallNanos;
+
+    ListenerCost(Class<?> listenerClass) {
+      mListenerClass = listenerClass;
+    }
+
+    ListenerCost(ListenerCost cost) {
+      mListenerClass = cost.mListenerClass;
+      mCallCount = cost.mCallCount;
+      mTotalNanos = cost.mTotalNanos;
+      mMaxCallNanos = cost.mMaxCallNanos;
+    }
+
+    public Class<?> getListenerClass() {
+      return mListenerClass;
+    }
+
+    /**
+     * get the number of times a listener of this class was notified, a spring listener notified
+     * of an activation, an update and a rest in the same advance counts once
+     * @return the number of calls
+     */
+    public long getCallCount() {
+      return mCallCount;
+    }
+
+    public double getTotalMillis() {
+      return mTotalNanos / 1000000.0;
+    }
+
+    public double getMeanCallMillis() {
+      return mCallCount == 0 ? 0 : mTotalNanos / 1000000.0 / mCallCount;
+    }
+
+    public double getMaxCallMillis() {
+      return mMaxCallNanos / 1000000.0;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%s calls=%d total=%.3fms mean=%.4fms max=%.3fms",
+          mListenerClass.getName(),
+          mCallCount,
+          getTotalMillis(),
+          getMeanCallMillis(),
+          getMaxCallMillis());
+    }
+  }
+
+  private static final Comparator<ListenerCost> BY_TOTAL_TIME = new Comparator<ListenerCost>() {
+    @Override
+    public int compare(ListenerCost lhs, ListenerCost rhs) {
+      return lhs.mTotalNanos < rhs.mTotalNanos ? 1 : lhs.mTotalNanos > rhs.mTotalNanos ? -1 : 0;
+    }
+  };
+
+  private final Map<Class<?>, ListenerCost> mCosts = new HashMap<Class<?>, ListenerCost>();
+  // time spent by each listener instance during the loop in progress
+  private final IdentityHashMap<Object, long[]> mFrameNanos =
+      new IdentityHashMap<Object, long[]>();
+  private final List<Object> mFrameListeners = new ArrayList<Object>();
+  private final List<long[]> mFrameNanosPool = new ArrayList<long[]>();
+  private final CopyOnWriteArraySet<ListenerBudgetListener> mBudgetListeners =
+      new CopyOnWriteArraySet<ListenerBudgetListener>();
+  private long mListenerBudgetNanos;
+
+  /**
+   * Set the time a single listener may spend in a loop before the {@link ListenerBudgetListener}s
+   * are notified.
+   * @param budgetMillis the budget in milliseconds, or 0 to disable the budget
+   */
+  public void setListenerBudget(double budgetMillis) {
+    if (budgetMillis < 0) {
+      throw new IllegalArgumentException("budgetMillis must not be negative");
+    }
+    mListenerBudgetNanos = (long) (budgetMillis * 1000000.0);
+  }
+
+  /**
+   * get the time a single listener may spend in a loop
+   * @return the budget in milliseconds, 0 if disabled
+   */
+  public double getListenerBudget() {
+    return mListenerBudgetNanos / 1000000.0;
+  }
+
+  /**
+   * Add a listener to be notified when a listener exceeds the listener budget.
+   * @param newListener listener
+   */
+  public void addBudgetListener(ListenerBudgetListener newListener) {
+    if (newListener == null) {
+      throw new IllegalArgumentException("newListener is required");
+    }
+    mBudgetListeners.add(newListener);
+  }
+
+  /**
+   * Remove a listener budget listener.
+   * @param listenerToRemove listener
+   */
+  public void removeBudgetListener(ListenerBudgetListener listenerToRemove) {
+    if (listenerToRemove == null) {
+      throw new IllegalArgumentException("listenerToRemove is required");
+    }
+    mBudgetListeners.remove(listenerToRemove);
+  }
+
+  /**
+   * get the most expensive listener classes
+   * @param count the maximum number of classes to return
+   * @return copies of the costs, most expensive first
+   */
+  public List<ListenerCost> getTopListeners(int count) {
+    List<ListenerCost> costs = new ArrayList<ListenerCost>(mCosts.size());
+    for (ListenerCost cost : mCosts.values()) {
+      costs.add(new ListenerCost(cost));
+    }
+    Collections.sort(costs, BY_TOTAL_TIME);
+    return costs.size() > count ? costs.subList(0, count) : costs;
+  }
+
+  /**
+   * get the cost of the listeners of a class
+   * @param listenerClass the class of the listeners
+   * @return a copy of the cost or null if no listener of that class was timed
+   */
+  public ListenerCost getCost(Class<?> listenerClass) {
+    ListenerCost cost = mCosts.get(listenerClass);
+    return cost == null ? null : new ListenerCost(cost);
+  }
+
+  /**
+   * clear the costs collected so far
+   */
+  public void reset() {
+    mCosts.clear();
+  }
+
+  /**
+   * add the time spent in the callbacks of a listener
+   * @param listener the listener
+   * @param nanos the time spent
+   */
+  void record(Object listener, long nanos) {
+    Class<?> listenerClass = listener.getClass();
+    ListenerCost cost = mCosts.get(listenerClass);
+    if (cost == null) {
+      cost = new ListenerCost(listenerClass);
+      mCosts.put(listenerClass, cost);
+    }
+    cost.mCallCount++;
+    cost.mTotalNanos += nanos;
+    if (nanos > cost.mMaxCallNanos) {
+      cost.mMaxCallNanos = nanos;
+    }
+
+    if (mListenerBudgetNanos > 0) {
+      long[] frameNanos = mFrameNanos.get(listener);
+      if (frameNanos == null) {
+        frameNanos = mFrameNanosPool.isEmpty() ?
+            new long[1] :
+            mFrameNanosPool.remove(mFrameNanosPool.size() - 1);
+        frameNanos[0] = 0;
+        mFrameNanos.put(listener, frameNanos);
+        mFrameListeners.add(listener);
+      }
+      frameNanos[0] += nanos;
+    }
+  }
+
+  /**
+   * report the listeners that went over budget in the loop that just ended
+   * @param springSystem the system that ran the loop
+   */
+  void onLoopEnd(BaseSpringSystem springSystem) {
+    if (mFrameListeners.isEmpty()) {
+      return;
+    }
+    for (int i = 0; i < mFrameListeners.size(); i++) {
+      Object listener = mFrameListeners.get(i);
+      long[] frameNanos = mFrameNanos.get(listener);
+      if (frameNanos[0] > mListenerBudgetNanos) {
+        for (ListenerBudgetListener budgetListener : mBudgetListeners) {
+          budgetListener.onListenerBudgetExceeded(
+              springSystem,
+              listener,
+              frameNanos[0] / 1000000.0);
+        }
+      }
+      mFrameNanosPool.add(frameNanos);
+    }
+    mFrameListeners.clear();
+    mFrameNanos.clear();
+  }
+}
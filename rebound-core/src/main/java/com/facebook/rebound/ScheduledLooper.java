@@ -0,0 +1,227 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ScheduledLooper drives a spring system in real time from a dedicated scheduler thread, for
+ * Swing, JavaFX and server use where there is no platform frame callback.
+ *
+ * The scheduler thread ticks at the target frame rate. Deadlines are kept on a fixed timeline, so
+ * a late tick does not push back the ones after it, and ticks that fall more than a frame behind
+ * are skipped rather than run in a burst. The thread parks for most of the wait and spins for
+ * the last moment to hit the deadline closely, and parks without a timeout while the spring
+ * system is idle, so an idle looper costs nothing.
+ *
+ * Without an executor the spring system is looped on the scheduler thread. With one, such as
+ * {@code SwingUtilities::invokeLater} or {@code Platform::runLater}, each tick hands a frame to
+ * the executor and the loop and all listeners run there. A frame is only handed over when the
+ * previous one has started running, so a busy UI thread never accumulates queued frames; the
+ * frame that does run loops over all the time elapsed since the previous one.
+ *
+ * The scheduler thread comes from a {@link ThreadFactory}, which can create virtual threads on
+ * runtimes that have them.
+ *
+ * <pre>
+ *   ScheduledLooper looper = new ScheduledLooper(new Executor() {
+ *     public void execute(Runnable frame) {
+ *       SwingUtilities.invokeLater(frame);
+ *     }
+ *   });
+ *   BaseSpringSystem springSystem = new BaseSpringSystem(looper);
+ * </pre>
+ */
+public class ScheduledLooper extends SpringLooper {
+
+  private static final long NANOS_PER_SECOND = 1000000000L;
+  // park until this close to a deadline and spin the rest of the way
+  private static final long SPIN_NANOS = 100000L;
+
+  private static final ThreadFactory DAEMON_THREAD_FACTORY = new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "rebound-looper");
+      thread.setDaemon(true);
+      return thread;
+    }
+  };
+
+  private final ThreadFactory mThreadFactory;
+  private final Executor mFrameExecutor;
+  private final AtomicBoolean mFramePending = new AtomicBoolean();
+  private final Runnable mFrame = new Runnable() {
+    @Override
+    public void run() {
+      mFramePending.set(false);
+      loopFrame();
+    }
+  };
+  private final Runnable mScheduler = new Runnable() {
+    @Override
+    public void run() {
+      schedule();
+    }
+  };
+  private volatile long mFrameNanos;
+  private volatile boolean mRunning;
+  private volatile boolean mShutdown;
+  private volatile long mLastLoopNanos;
+  private volatile long mCoalescedFrameCount;
+  private Thread mThread;
+
+  /**
+   * create a looper that loops the spring system on a daemon scheduler thread
+   */
+  public ScheduledLooper() {
+    this(DAEMON_THREAD_FACTORY, null);
+  }
+
+  /**
+   * create a looper that hands frames to an executor from a daemon scheduler thread
+   * @param frameExecutor the executor running the loop, usually the UI thread
+   */
+  public ScheduledLooper(Executor frameExecutor) {
+    this(DAEMON_THREAD_FACTORY, frameExecutor);
+  }
+
+  /**
+   * constructor for the ScheduledLooper
+   * @param threadFactory creates the scheduler thread
+   * @param frameExecutor the executor running the loop, or null to loop on the scheduler thread
+   */
+  public ScheduledLooper(ThreadFactory threadFactory, Executor frameExecutor) {
+    if (threadFactory == null) {
+      throw new IllegalArgumentException("threadFactory is required");
+    }
+    mThreadFactory = threadFactory;
+    mFrameExecutor = frameExecutor;
+    setFrameRate(60);
+  }
+
+  /**
+   * Set the rate the scheduler thread ticks at.
+   * @param framesPerSecond the target frame rate, such as 60, 90 or 120
+   */
+  public void setFrameRate(double framesPerSecond) {
+    if (framesPerSecond <= 0) {
+      throw new IllegalArgumentException("framesPerSecond must be positive");
+    }
+    mFrameNanos = (long) (NANOS_PER_SECOND / framesPerSecond);
+  }
+
+  public double getFrameRate() {
+    return NANOS_PER_SECOND / (double) mFrameNanos;
+  }
+
+  /**
+   * get the number of ticks that were dropped because the previous frame had not started running
+   * on the executor yet
+   * @return the number of coalesced frames
+   */
+  public long getCoalescedFrameCount() {
+    return mCoalescedFrameCount;
+  }
+
+  @Override
+  public void start() {
+    Thread thread;
+    synchronized (this) {
+      if (mShutdown) {
+        return;
+      }
+      mLastLoopNanos = System.nanoTime();
+      mRunning = true;
+      if (mThread == null) {
+        mThread = mThreadFactory.newThread(mScheduler);
+        mThread.start();
+        return;
+      }
+      thread = mThread;
+    }
+    LockSupport.unpark(thread);
+  }
+
+  @Override
+  public void stop() {
+    mRunning = false;
+  }
+
+  /**
+   * Stop the scheduler thread for good. The looper cannot be started again.
+   */
+  public void shutdown() {
+    Thread thread;
+    synchronized (this) {
+      mShutdown = true;
+      mRunning = false;
+      thread = mThread;
+    }
+    if (thread != null) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  private void schedule() {
+    long deadline = 0;
+    while (!mShutdown) {
+      if (!mRunning) {
+        deadline = 0;
+        LockSupport.park(this);
+        continue;
+      }
+      long frameNanos = mFrameNanos;
+      long now = System.nanoTime();
+      if (deadline == 0) {
+        deadline = now + frameNanos;
+        continue;
+      }
+      long wait = deadline - now;
+      if (wait > SPIN_NANOS) {
+        LockSupport.parkNanos(this, wait - SPIN_NANOS);
+        continue;
+      }
+      if (wait > 0) {
+        Thread.yield();
+        continue;
+      }
+      // the next deadline is on the same timeline, unless the tick is over a frame late
+      deadline += frameNanos;
+      if (now - deadline > 0) {
+        deadline = now + frameNanos;
+      }
+      tick();
+    }
+  }
+
+  private void tick() {
+    if (mFrameExecutor == null) {
+      loopFrame();
+    } else if (mFramePending.compareAndSet(false, true)) {
+      mFrameExecutor.execute(mFrame);
+    } else {
+      mCoalescedFrameCount++;
+    }
+  }
+
+  private void loopFrame() {
+    if (!mRunning || mSpringSystem == null) {
+      return;
+    }
+    long now = System.nanoTime();
+    double elapsedMillis = (now - mLastLoopNanos) / 1000000.0;
+    mLastLoopNanos = now;
+    mSpringSystem.loop(elapsedMillis);
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+/**
+ * ScheduledSpringStart is a handle to a delayed {@link Spring#setEndValue(double)} created by
+ * {@link BaseSpringSystem#scheduleEndValue(Spring, double, double)}. It can be used to cancel the
+ * start before it happens.
+ */
+public class ScheduledSpringStart {
+
+  final Spring mSpring;
+  final double mEndValue;
+  // the timer wheel tick at which the start is due
+  long mDueTick;
+  // next start in the same timer wheel slot
+  ScheduledSpringStart mNext;
+  // the wheel holding the start while it is pending
+  SpringTimerWheel mWheel;
+  private boolean mCancelled;
+  private boolean mDone;
+
+  ScheduledSpringStart(Spring spring, double endValue) {
+    mSpring = spring;
+    mEndValue = endValue;
+  }
+
+  /**
+   * get the spring that will be started
+   * @return the spring
+   */
+  public Spring getSpring() {
+    return mSpring;
+  }
+
+  /**
+   * get the end value the spring will be set to when started
+   * @return the end value
+   */
+  public double getEndValue() {
+    return mEndValue;
+  }
+
+  /**
+   * Cancel the start. This has no effect if the spring has already been started. A pending start
+   * is removed from the system right away, so it no longer keeps the system from going idle.
+   */
+  public void cancel() {
+    if (mDone) {
+      return;
+    }
+    mCancelled = true;
+    if (mWheel != null) {
+      mWheel.remove(this);
+    }
+  }
+
+  /**
+   * check if the start was cancelled
+   * @return true if cancel was called
+   */
+  public boolean isCancelled() {
+    return mCancelled;
+  }
+
+  /**
+   * check if the spring has been started
+   * @return true if the end value has been applied to the spring
+   */
+  public boolean isDone() {
+    return mDone;
+  }
+
+  /**
+   * Called by the system when the start is due.
+   * @param springSystem the system running the start
+   */
+  final void run(BaseSpringSystem springSystem) {
+    mDone = true;
+    onStart(springSystem);
+  }
+
+  /**
+   * Apply the start. Subclasses can override this to run something other than a single end value
+   * change. Springs destroyed while the start was pending are ignored.
+   * @param springSystem the system running the start
+   */
+  void onStart(BaseSpringSystem springSystem) {
+    if (springSystem.isRegistered(mSpring)) {
+      mSpring.setEndValue(mEndValue);
+    }
+  }
+}
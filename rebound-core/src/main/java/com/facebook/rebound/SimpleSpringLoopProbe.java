@@ -0,0 +1,56 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+public class SimpleSpringLoopProbe implements SpringLoopProbe {
+  @Override
+  public void onLoopBegin(
+      BaseSpringSystem springSystem,
+      double elapsedMillis,
+      int activeSpringCount) {
+  }
+
+  @Override
+  public void onListenerDispatchBegin(BaseSpringSystem springSystem, boolean afterIntegrate) {
+  }
+
+  @Override
+  public void onListenerDispatchEnd(BaseSpringSystem springSystem, boolean afterIntegrate) {
+  }
+
+  @Override
+  public void onIntegrationBegin(BaseSpringSystem springSystem) {
+  }
+
+  @Override
+  public void onIntegrationEnd(BaseSpringSystem springSystem, int activeSpringCount) {
+  }
+
+  @Override
+  public void onSpringActivate(Spring spring) {
+  }
+
+  @Override
+  public void onSpringAtRest(Spring spring) {
+  }
+
+  @Override
+  public void onSpringListenersBegin(Spring spring) {
+  }
+
+  @Override
+  public void onSpringListenersEnd(Spring spring) {
+  }
+
+  @Override
+  public void onLoopEnd(BaseSpringSystem springSystem, int activeSpringCount) {
+  }
+}
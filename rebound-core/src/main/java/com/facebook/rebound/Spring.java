@@ -10,6 +10,7 @@
 
 package com.facebook.rebound;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
@@ -21,10 +22,25 @@ public class Spring {
   private static int ID = 0;
 
   // maximum amount of time to simulate per physics iteration in seconds (4 frames at 60 FPS)
-  private static final double MAX_DELTA_TIME_SEC = 0.064;
+  static final double MAX_DELTA_TIME_SEC = 0.064;
   // fixed timestep to use in the physics solver in seconds
-  private static final double SOLVER_TIMESTEP_SEC = 0.001;
+  static final double SOLVER_TIMESTEP_SEC = 0.001;
+  // coarser timestep used when the system degrades a spring to stay within its frame budget
+  static final double DEGRADED_SOLVER_TIMESTEP_SEC = 0.004;
+
+  // critical springs, such as one tracking a finger, are always solved at full precision
+  public static final int PRIORITY_CRITICAL = 2;
+  // normal springs are solved with fewer substeps when the frame budget is exceeded
+  public static final int PRIORITY_NORMAL = 1;
+  // low priority springs skip frames when the frame budget is exceeded
+  public static final int PRIORITY_LOW = 0;
+  // bytes written per spring by writeSnapshot
+  static final int SNAPSHOT_SIZE = 13 * 8 + 2;
+  private static final int SNAPSHOT_FLAG_OVERSHOOT_CLAMPING = 1;
+  private static final int SNAPSHOT_FLAG_WAS_AT_REST = 2;
   private SpringConfig mSpringConfig;
+  // constants derived from mSpringConfig as last resolved, for the closed form paths
+  private ImmutableSpringConfig mDerivedSpringConfig;
   private boolean mOvershootClampingEnabled;
 
   // storage for the current and prior physics state while integration is occurring
@@ -35,6 +51,8 @@ public class Spring {
 
   // unique id for the spring in the system
   private final String mId;
+  // numeric part of the id, used where a fixed size id is needed
+  private final int mNumericId;
   // all physics simulation objects are final and reused in each processing pass
   private final PhysicsState mCurrentState = new PhysicsState();
   private final PhysicsState mPreviousState = new PhysicsState();
@@ -46,6 +64,12 @@ public class Spring {
   private double mRestSpeedThreshold = 0.005;
   private double mDisplacementFromRestThreshold = 0.005;
   private double mTimeAccumulator = 0;
+  // frame time deferred by a FrameRatePolicy that has not been simulated yet
+  private double mDeferredDeltaTime = 0;
+  private int mDeferredFrames = 0;
+  private int mPriority = PRIORITY_NORMAL;
+  // simulation integrating this spring instead of the system, if any
+  private SpringSimulation mDriver;
   private final CopyOnWriteArraySet<SpringListener> mListeners =
     new CopyOnWriteArraySet<SpringListener>();
 
@@ -59,7 +83,8 @@ public class Spring {
       throw new IllegalArgumentException("Spring cannot be created outside of a BaseSpringSystem");
     }
     mSpringSystem = springSystem;
-    mId = "spring:" + ID++;
+    mNumericId = ID++;
+    mId = "spring:" + mNumericId;
     setSpringConfig(SpringConfig.defaultConfig);
   }
 
@@ -69,10 +94,131 @@ public class Spring {
    * doing so may just cause an exception to be thrown.
    */
   public void destroy() {
+    SpringRecorder recorder = mSpringSystem.getRecorder();
+    if (recorder != null) {
+      recorder.recordDestroy(this);
+    }
     mListeners.clear();
     mSpringSystem.deregisterSpring(this);
   }
 
+  /**
+   * Write the state of this spring to a snapshot: config, physics state including the integrator
+   * state carried between frames, thresholds and flags.
+   * @param buffer the buffer to write {@link #SNAPSHOT_SIZE} bytes to
+   */
+  void writeSnapshot(ByteBuffer buffer) {
+    buffer.putDouble(mSpringConfig.tension);
+    buffer.putDouble(mSpringConfig.friction);
+    buffer.putDouble(mCurrentState.position);
+    buffer.putDouble(mCurrentState.velocity);
+    buffer.putDouble(mStartValue);
+    buffer.putDouble(mEndValue);
+    buffer.putDouble(mRestSpeedThreshold);
+    buffer.putDouble(mDisplacementFromRestThreshold);
+    buffer.putDouble(mPreviousState.position);
+    buffer.putDouble(mPreviousState.velocity);
+    buffer.putDouble(mTempState.position);
+    buffer.putDouble(mTempState.velocity);
+    buffer.putDouble(mTimeAccumulator);
+    int flags = 0;
+    if (mOvershootClampingEnabled) {
+      flags |= SNAPSHOT_FLAG_OVERSHOOT_CLAMPING;
+    }
+    if (mWasAtRest) {
+      flags |= SNAPSHOT_FLAG_WAS_AT_REST;
+    }
+    buffer.put((byte) flags);
+    buffer.put((byte) mPriority);
+  }
+
+  /**
+   * Check the fields of a snapshot record that cannot be restored as is, without moving the
+   * position of the buffer.
+   * @param buffer the buffer holding the record
+   * @param position absolute position of the record in the buffer
+   */
+  static void checkSnapshot(ByteBuffer buffer, int position) {
+    int priority = buffer.get(position + SNAPSHOT_SIZE - 1);
+    if (priority < PRIORITY_LOW || priority > PRIORITY_CRITICAL) {
+      throw new IllegalArgumentException("snapshot holds an invalid spring priority " + priority);
+    }
+  }
+
+  /**
+   * Restore the state written by {@link #writeSnapshot(ByteBuffer)} without notifying listeners
+   * or activating the spring. The config is kept if it already has the snapshot tension and
+   * friction, so registered configs survive a restore.
+   * @param buffer the buffer to read {@link #SNAPSHOT_SIZE} bytes from
+   */
+  void readSnapshot(ByteBuffer buffer) {
+    checkSnapshot(buffer, buffer.position());
+    double tension = buffer.getDouble();
+    double friction = buffer.getDouble();
+    if (mSpringConfig.tension != tension || mSpringConfig.friction != friction) {
+      mSpringConfig = new SpringConfig(tension, friction);
+    }
+    mCurrentState.position = buffer.getDouble();
+    mCurrentState.velocity = buffer.getDouble();
+    mStartValue = buffer.getDouble();
+    mEndValue = buffer.getDouble();
+    mRestSpeedThreshold = buffer.getDouble();
+    mDisplacementFromRestThreshold = buffer.getDouble();
+    mPreviousState.position = buffer.getDouble();
+    mPreviousState.velocity = buffer.getDouble();
+    mTempState.position = buffer.getDouble();
+    mTempState.velocity = buffer.getDouble();
+    mTimeAccumulator = buffer.getDouble();
+    int flags = buffer.get();
+    mOvershootClampingEnabled = (flags & SNAPSHOT_FLAG_OVERSHOOT_CLAMPING) != 0;
+    mWasAtRest = (flags & SNAPSHOT_FLAG_WAS_AT_REST) != 0;
+    mPriority = buffer.get();
+    mDeferredDeltaTime = 0;
+    mDeferredFrames = 0;
+  }
+
+  /**
+   * Hand the integration of this spring over to a simulation. Activating the spring activates the
+   * simulation instead of adding the spring to the active springs of the system.
+   * @param driver the simulation driving this spring, or null to let the system advance it
+   */
+  void setDriver(SpringSimulation driver) {
+    mDriver = driver;
+  }
+
+  /**
+   * get the simulation driving this spring
+   * @return the simulation or null if the system advances this spring
+   */
+  SpringSimulation getDriver() {
+    return mDriver;
+  }
+
+  /**
+   * Write the state computed by the driving simulation without notifying listeners or activating
+   * the spring.
+   * @param position the new current value
+   * @param velocity the new velocity
+   * @param endValue the new end value
+   */
+  void setDrivenState(double position, double velocity, double endValue) {
+    mCurrentState.position = position;
+    mCurrentState.velocity = velocity;
+    mTempState.position = position;
+    mEndValue = endValue;
+  }
+
+  /**
+   * Notify the listeners of a spring advanced by its driving simulation, mirroring the callbacks
+   * fired at the end of {@link #advance(double)}.
+   * @param notifyActivate true if the simulation just left its resting state
+   * @param notifyAtRest true if the simulation just came to rest
+   */
+  void notifyDrivenUpdate(boolean notifyActivate, boolean notifyAtRest) {
+    mWasAtRest = notifyAtRest;
+    notifyAdvance(notifyActivate, notifyAtRest, mSpringSystem.getCollectingMetrics());
+  }
+
   /**
    * get the unique id for this spring
    * @return the unique id
@@ -81,6 +227,14 @@ public class Spring {
     return mId;
   }
 
+  /**
+   * get the number in the unique id of this spring
+   * @return the numeric id
+   */
+  int getNumericId() {
+    return mNumericId;
+  }
+
   /**
    * set the config class
    * @param springConfig config class for the spring
@@ -90,10 +244,27 @@ public class Spring {
     if (springConfig == null) {
       throw new IllegalArgumentException("springConfig is required");
     }
+    SpringRecorder recorder = mSpringSystem.getRecorder();
+    if (recorder != null) {
+      recorder.recordSpringConfig(this, springConfig);
+    }
     mSpringConfig = springConfig;
     return this;
   }
 
+  /**
+   * set a shared immutable config, the spring gets a mutable copy of it
+   * @param springConfig config for the spring
+   * @return this Spring instance for chaining
+   */
+  public Spring setSpringConfig(ImmutableSpringConfig springConfig) {
+    if (springConfig == null) {
+      throw new IllegalArgumentException("springConfig is required");
+    }
+    mDerivedSpringConfig = springConfig;
+    return setSpringConfig(springConfig.toSpringConfig());
+  }
+
   /**
    * retrieve the spring config for this spring
    * @return the SpringConfig applied to this spring
@@ -102,6 +273,25 @@ public class Spring {
     return mSpringConfig;
   }
 
+  /**
+   * Get the constants derived from the current tension and friction of the spring. They are
+   * derived again only when the mutable config has changed since the last call, into a config
+   * owned by this spring, so a spring tuned live does not intern a config per value it goes
+   * through. The config given to {@link #setSpringConfig(ImmutableSpringConfig)} is reused as
+   * long as it matches.
+   * @return the derived config, not interned unless it was set by the app
+   */
+  ImmutableSpringConfig getDerivedSpringConfig() {
+    ImmutableSpringConfig config = mDerivedSpringConfig;
+    if (config == null ||
+        config.tension != mSpringConfig.tension ||
+        config.friction != mSpringConfig.friction) {
+      config = new ImmutableSpringConfig(mSpringConfig.tension, mSpringConfig.friction);
+      mDerivedSpringConfig = config;
+    }
+    return config;
+  }
+
   /**
    * Set the displaced value to determine the displacement for the spring from the rest value.
    * This value is retained and used to calculate the displacement ratio.
@@ -126,6 +316,11 @@ public class Spring {
    * @return the spring for chaining
    */
   public Spring setCurrentValue(double currentValue, boolean setAtRest) {
+    SpringRecorder recorder = mSpringSystem.getRecorder();
+    if (recorder != null) {
+      // setAtRest records itself below, so only the value change is recorded here
+      recorder.recordMutation(this, SpringRecorder.OP_CURRENT_VALUE, currentValue);
+    }
     mStartValue = currentValue;
     mCurrentState.position = currentValue;
     mSpringSystem.activateSpring(this.getId());
@@ -177,6 +372,10 @@ public class Spring {
    * @return the spring for chaining
    */
   public Spring setEndValue(double endValue) {
+    SpringRecorder recorder = mSpringSystem.getRecorder();
+    if (recorder != null) {
+      recorder.recordMutation(this, SpringRecorder.OP_END_VALUE, endValue);
+    }
     if (mEndValue == endValue && isAtRest()) {
       return this;
     }
@@ -203,6 +402,10 @@ public class Spring {
    * @return the spring for chaining
    */
   public Spring setVelocity(double velocity) {
+    SpringRecorder recorder = mSpringSystem.getRecorder();
+    if (recorder != null) {
+      recorder.recordMutation(this, SpringRecorder.OP_VELOCITY, velocity);
+    }
     if (velocity == mCurrentState.velocity) {
       return this;
     }
@@ -225,6 +428,10 @@ public class Spring {
    * @return the spring for chaining
    */
   public Spring setRestSpeedThreshold(double restSpeedThreshold) {
+    SpringRecorder recorder = mSpringSystem.getRecorder();
+    if (recorder != null) {
+      recorder.recordMutation(this, SpringRecorder.OP_REST_SPEED_THRESHOLD, restSpeedThreshold);
+    }
     mRestSpeedThreshold = restSpeedThreshold;
     return this;
   }
@@ -243,6 +450,13 @@ public class Spring {
    * @return the spring for chaining
    */
   public Spring setRestDisplacementThreshold(double displacementFromRestThreshold) {
+    SpringRecorder recorder = mSpringSystem.getRecorder();
+    if (recorder != null) {
+      recorder.recordMutation(
+          this,
+          SpringRecorder.OP_REST_DISPLACEMENT_THRESHOLD,
+          displacementFromRestThreshold);
+    }
     mDisplacementFromRestThreshold = displacementFromRestThreshold;
     return this;
   }
@@ -261,6 +475,13 @@ public class Spring {
    * @return the spring for chaining
    */
   public Spring setOvershootClampingEnabled(boolean overshootClampingEnabled) {
+    SpringRecorder recorder = mSpringSystem.getRecorder();
+    if (recorder != null) {
+      recorder.recordMutation(
+          this,
+          SpringRecorder.OP_OVERSHOOT_CLAMPING,
+          overshootClampingEnabled ? 1 : 0);
+    }
     mOvershootClampingEnabled = overshootClampingEnabled;
     return this;
   }
@@ -273,6 +494,33 @@ public class Spring {
     return mOvershootClampingEnabled;
   }
 
+  /**
+   * Set the priority used by the system to decide which springs keep full precision when a loop
+   * exceeds its frame budget. See {@link BaseSpringSystem#setFrameBudget(double)}.
+   * @param priority one of {@link #PRIORITY_CRITICAL}, {@link #PRIORITY_NORMAL} or
+   *                 {@link #PRIORITY_LOW}
+   * @return the spring for chaining
+   */
+  public Spring setPriority(int priority) {
+    if (priority < PRIORITY_LOW || priority > PRIORITY_CRITICAL) {
+      throw new IllegalArgumentException("priority must be between PRIORITY_LOW and PRIORITY_CRITICAL");
+    }
+    SpringRecorder recorder = mSpringSystem.getRecorder();
+    if (recorder != null) {
+      recorder.recordMutation(this, SpringRecorder.OP_PRIORITY, priority);
+    }
+    mPriority = priority;
+    return this;
+  }
+
+  /**
+   * get the priority of the spring
+   * @return the priority of the spring
+   */
+  public int getPriority() {
+    return mPriority;
+  }
+
   /**
    * Check if the spring is overshooting beyond its target.
    * @return true if the spring is overshooting its target
@@ -291,6 +539,18 @@ public class Spring {
    * @param realDeltaTime clock drift
    */
   void advance(double realDeltaTime) {
+    advance(realDeltaTime, SOLVER_TIMESTEP_SEC);
+  }
+
+  /**
+   * advance the physics simulation using the provided solver timestep. Larger timesteps take fewer
+   * iterations at the cost of precision.
+   * @param realDeltaTime clock drift
+   * @param solverTimestep timestep of each physics iteration in seconds
+   */
+  void advance(double realDeltaTime, double solverTimestep) {
+    mDeferredDeltaTime = 0;
+    mDeferredFrames = 0;
 
     boolean isAtRest = isAtRest();
 
@@ -314,6 +574,7 @@ public class Spring {
     end debug */
 
     mTimeAccumulator += adjustedDeltaTime;
+    double accumulatedTime = mTimeAccumulator;
 
     double tension = mSpringConfig.tension;
     double friction = mSpringConfig.friction;
@@ -331,13 +592,13 @@ public class Spring {
     double dxdt, dvdt;
 
     // iterate over the true time
-    while (mTimeAccumulator >= SOLVER_TIMESTEP_SEC) {
+    while (mTimeAccumulator >= solverTimestep) {
       /* begin debug
       iterations++;
       end debug */
-      mTimeAccumulator -= SOLVER_TIMESTEP_SEC;
+      mTimeAccumulator -= solverTimestep;
 
-      if (mTimeAccumulator < SOLVER_TIMESTEP_SEC) {
+      if (mTimeAccumulator < solverTimestep) {
         // This will be the last iteration. Remember the previous state in case we need to
         // interpolate
         mPreviousState.position = position;
@@ -357,18 +618,18 @@ public class Spring {
 
       // Calculate the next derivatives starting with the last derivative and integrating over the
       // timestep
-      tempPosition = position + aVelocity * SOLVER_TIMESTEP_SEC * 0.5;
-      tempVelocity = velocity + aAcceleration * SOLVER_TIMESTEP_SEC * 0.5;
+      tempPosition = position + aVelocity * solverTimestep * 0.5;
+      tempVelocity = velocity + aAcceleration * solverTimestep * 0.5;
       bVelocity = tempVelocity;
       bAcceleration = (tension * (mEndValue - tempPosition)) - friction * tempVelocity;
 
-      tempPosition = position + bVelocity * SOLVER_TIMESTEP_SEC * 0.5;
-      tempVelocity = velocity + bAcceleration * SOLVER_TIMESTEP_SEC * 0.5;
+      tempPosition = position + bVelocity * solverTimestep * 0.5;
+      tempVelocity = velocity + bAcceleration * solverTimestep * 0.5;
       cVelocity = tempVelocity;
       cAcceleration = (tension * (mEndValue - tempPosition)) - friction * tempVelocity;
 
-      tempPosition = position + cVelocity * SOLVER_TIMESTEP_SEC;
-      tempVelocity = velocity + cAcceleration * SOLVER_TIMESTEP_SEC;
+      tempPosition = position + cVelocity * solverTimestep;
+      tempVelocity = velocity + cAcceleration * solverTimestep;
       dVelocity = tempVelocity;
       dAcceleration = (tension * (mEndValue - tempPosition)) - friction * tempVelocity;
 
@@ -376,8 +637,8 @@ public class Spring {
       dxdt = 1.0/6.0 * (aVelocity + 2.0 * (bVelocity + cVelocity) + dVelocity);
       dvdt = 1.0/6.0 * (aAcceleration + 2.0 * (bAcceleration + cAcceleration) + dAcceleration);
 
-      position += dxdt * SOLVER_TIMESTEP_SEC;
-      velocity += dvdt * SOLVER_TIMESTEP_SEC;
+      position += dxdt * solverTimestep;
+      velocity += dvdt * solverTimestep;
     }
 
     mTempState.position = tempPosition;
@@ -386,10 +647,99 @@ public class Spring {
     mCurrentState.position = position;
     mCurrentState.velocity = velocity;
 
+    SpringSystemMetrics metrics = mSpringSystem.getCollectingMetrics();
+    if (metrics != null) {
+      metrics.mFrameSolverIterations +=
+          Math.round((accumulatedTime - mTimeAccumulator) / solverTimestep);
+    }
+
     if (mTimeAccumulator > 0) {
-      interpolate(mTimeAccumulator / SOLVER_TIMESTEP_SEC);
+      interpolate(mTimeAccumulator / solverTimestep);
     }
 
+    /* begin debug
+    long endTime = System.currentTimeMillis();
+    long elapsedMillis = endTime - startTime;
+    Log.d(TAG,
+        "iterations:" + iterations +
+            " iterationTime:" + elapsedMillis +
+            " position:" + mCurrentState.position +
+            " velocity:" + mCurrentState.velocity +
+            " realDeltaTime:" + realDeltaTime +
+            " adjustedDeltaTime:" + adjustedDeltaTime +
+            " wasAtRest:" + mWasAtRest);
+    end debug */
+
+    completeAdvance(isAtRest, metrics);
+  }
+
+  /**
+   * Move the spring to its state after a period of time by evaluating the closed form solution of
+   * its motion instead of integrating it step by step. A spring that settles within the period ends
+   * at rest, and the listeners are notified once, just like after a single call to
+   * {@link #advance(double)}.
+   * @param time the time to move forward in seconds, on top of the time of any frames this spring
+   *             skipped under a {@link FrameRatePolicy} or the frame budget
+   * @param solution a reusable solution to evaluate the motion with
+   */
+  void fastForward(double time, SpringSolution solution) {
+    time += mDeferredDeltaTime;
+    mDeferredDeltaTime = 0;
+    mDeferredFrames = 0;
+
+    boolean isAtRest = isAtRest();
+    if (isAtRest && mWasAtRest) {
+      return;
+    }
+    mTimeAccumulator = 0;
+
+    solution.set(this);
+    double restTime = isAtRest ?
+        0 :
+        solution.getTimeToRest(mRestSpeedThreshold, mDisplacementFromRestThreshold);
+    if (mOvershootClampingEnabled && mSpringConfig.tension > 0) {
+      double reachTime = isOvershooting() ?
+          0 :
+          solution.getTimeToReach(mEndValue, restTime >= 0 ? Math.min(restTime, time) : time);
+      if (reachTime >= 0 && (restTime < 0 || reachTime < restTime)) {
+        restTime = reachTime;
+      }
+    }
+    if (restTime >= 0 && restTime <= time) {
+      mCurrentState.position = mSpringConfig.tension > 0 ?
+          mEndValue :
+          solution.getPosition(restTime);
+      mCurrentState.velocity = 0;
+    } else {
+      mCurrentState.position = solution.getPosition(time);
+      mCurrentState.velocity = solution.getVelocity(time);
+    }
+    mPreviousState.position = mCurrentState.position;
+    mPreviousState.velocity = mCurrentState.velocity;
+    mTempState.position = mCurrentState.position;
+    mTempState.velocity = mCurrentState.velocity;
+
+    completeAdvance(isAtRest, mSpringSystem.getCollectingMetrics());
+  }
+
+  /**
+   * get the time this spring needs to come to rest from its current state
+   * @param solution a reusable solution to evaluate the motion with
+   * @return the time in seconds, or -1 if the spring never comes to rest
+   */
+  double getTimeToRest(SpringSolution solution) {
+    solution.set(this);
+    return solution.getTimeToRest(mRestSpeedThreshold, mDisplacementFromRestThreshold);
+  }
+
+  /**
+   * snap the spring to rest if it settled and notify the listeners of the advance
+   * @param isAtRest true if the spring was at rest before advancing
+   * @param metrics the metrics being collected or null
+   */
+  private void completeAdvance(boolean isAtRest, SpringSystemMetrics metrics) {
+    double tension = mSpringConfig.tension;
+
     // End the spring immediately if it is overshooting and overshoot clamping is enabled.
     // Also make sure that if the spring was considered within a resting threshold that it's now
     // snapped to its end value.
@@ -406,20 +756,6 @@ public class Spring {
       isAtRest = true;
     }
 
-    /* begin debug
-    long endTime = System.currentTimeMillis();
-    long elapsedMillis = endTime - startTime;
-    Log.d(TAG,
-        "iterations:" + iterations +
-            " iterationTime:" + elapsedMillis +
-            " position:" + mCurrentState.position +
-            " velocity:" + mCurrentState.velocity +
-            " realDeltaTime:" + realDeltaTime +
-            " adjustedDeltaTime:" + adjustedDeltaTime +
-            " isAtRest:" + isAtRest +
-            " wasAtRest:" + mWasAtRest);
-    end debug */
-
     // NB: do these checks outside the loop so all listeners are properly notified of the state
     //     transition
     boolean notifyActivate = false;
@@ -432,7 +768,34 @@ public class Spring {
       mWasAtRest = true;
       notifyAtRest = true;
     }
+    notifyAdvance(notifyActivate, notifyAtRest, metrics);
+  }
+
+  /**
+   * notify the loop probe and the listeners that this spring was advanced
+   * @param notifyActivate true if the spring just started moving
+   * @param notifyAtRest true if the spring just came to rest
+   * @param metrics the metrics being collected or null
+   */
+  private void notifyAdvance(
+      boolean notifyActivate,
+      boolean notifyAtRest,
+      SpringSystemMetrics metrics) {
+    SpringLoopProbe probe = mSpringSystem.getLoopProbe();
+    if (probe != null) {
+      if (notifyActivate) {
+        probe.onSpringActivate(this);
+      }
+      if (notifyAtRest) {
+        probe.onSpringAtRest(this);
+      }
+      probe.onSpringListenersBegin(this);
+    }
+    long listenerStartNanos = metrics != null ? System.nanoTime() : 0;
+    ListenerProfiler profiler = mSpringSystem.getListenerProfiler();
     for (SpringListener listener : mListeners) {
+      long profileStartNanos = profiler != null ? System.nanoTime() : 0;
+
       // starting to move
       if (notifyActivate) {
         listener.onSpringActivate(this);
@@ -445,9 +808,37 @@ public class Spring {
       if (notifyAtRest) {
         listener.onSpringAtRest(this);
       }
+
+      if (profiler != null) {
+        profiler.record(listener, System.nanoTime() - profileStartNanos);
+      }
+    }
+    if (metrics != null) {
+      metrics.mFrameListenerNanos += System.nanoTime() - listenerStartNanos;
+    }
+    if (probe != null) {
+      probe.onSpringListenersEnd(this);
     }
   }
 
+  /**
+   * advance the spring only once every frameInterval frames, accumulating the time of the skipped
+   * frames so it is simulated on the next advance.
+   * @param realDeltaTime clock drift for this frame
+   * @param frameInterval number of frames between advances
+   * @param solverTimestep timestep of each physics iteration in seconds
+   * @return true if the spring was advanced, false if this frame was deferred
+   */
+  boolean advanceAtFrameInterval(double realDeltaTime, int frameInterval, double solverTimestep) {
+    mDeferredDeltaTime += realDeltaTime;
+    mDeferredFrames++;
+    if (mDeferredFrames < frameInterval) {
+      return false;
+    }
+    advance(mDeferredDeltaTime, solverTimestep);
+    return true;
+  }
+
   /**
    * Check if this spring should be advanced by the system.  * The rule is if the spring is
    * currently at rest and it was at rest in the previous advance, the system can skip this spring
@@ -482,6 +873,10 @@ public class Spring {
    * @return this object
    */
   public Spring setAtRest() {
+    SpringRecorder recorder = mSpringSystem.getRecorder();
+    if (recorder != null) {
+      recorder.recordMutation(this, SpringRecorder.OP_AT_REST, 0);
+    }
     mEndValue = mCurrentState.position;
     mTempState.position = mCurrentState.position;
     mCurrentState.velocity = 0;
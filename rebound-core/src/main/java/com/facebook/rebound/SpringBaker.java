@@ -0,0 +1,386 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * SpringBaker samples spring motion ahead of time into keyframe tracks, so platforms that do not
+ * run rebound can play back exactly the motion a rebound spring system produces. Every curve is
+ * run through a real {@link BaseSpringSystem} looped at the target frame rate, and the value of
+ * the spring after each frame is kept until the spring comes to rest.
+ *
+ * Tracks are written by {@link SpringTrackWriter} as JSON, CSS keyframes or a binary table.
+ * Large batches are split across threads, each with its own spring system.
+ *
+ * <pre>
+ *   java -cp rebound-core.jar com.facebook.rebound.SpringBaker curves.csv --format css
+ * </pre>
+ */
+public class SpringBaker {
+
+  public static final double DEFAULT_MAX_DURATION_MILLIS = 10000;
+
+  /**
+   * A spring motion to bake.
+   */
+  public static class Curve {
+    private final String mName;
+    private final SpringConfig mSpringConfig;
+    private final double mStartValue;
+    private final double mEndValue;
+    private final double mVelocity;
+
+    /**
+     * constructor for the Curve
+     * @param name name of the curve, used to name its track
+     * @param springConfig config of the spring
+     * @param startValue value the spring starts at
+     * @param endValue value the spring moves to
+     * @param velocity initial velocity of the spring in units per second
+     */
+    public Curve(
+        String name,
+        SpringConfig springConfig,
+        double startValue,
+        double endValue,
+        double velocity) {
+      if (name == null) {
+        throw new IllegalArgumentException("name is required");
+      }
+      if (springConfig == null) {
+        throw new IllegalArgumentException("springConfig is required");
+      }
+      mName = name;
+      mSpringConfig = springConfig;
+      mStartValue = startValue;
+      mEndValue = endValue;
+      mVelocity = velocity;
+    }
+
+    public String getName() {
+      return mName;
+    }
+
+    public SpringConfig getSpringConfig() {
+      return mSpringConfig;
+    }
+
+    public double getStartValue() {
+      return mStartValue;
+    }
+
+    public double getEndValue() {
+      return mEndValue;
+    }
+
+    public double getVelocity() {
+      return mVelocity;
+    }
+  }
+
+  /**
+   * The sampled values of a curve, one per frame, starting with the start value and ending with
+   * the end value unless the curve was cut off at the maximum duration.
+   */
+  public static class Track {
+    private final Curve mCurve;
+    private final double mFramesPerSecond;
+    private final float[] mValues;
+
+    Track(Curve curve, double framesPerSecond, float[] values) {
+      mCurve = curve;
+      mFramesPerSecond = framesPerSecond;
+      mValues = values;
+    }
+
+    public Curve getCurve() {
+      return mCurve;
+    }
+
+    public double getFramesPerSecond() {
+      return mFramesPerSecond;
+    }
+
+    public int getFrameCount() {
+      return mValues.length;
+    }
+
+    /**
+     * get the value of a frame
+     * @param frame index of the frame
+     * @return the value
+     */
+    public float getValue(int frame) {
+      return mValues[frame];
+    }
+
+    /**
+     * get the time from the first to the last frame
+     * @return the duration in milliseconds
+     */
+    public double getDurationMillis() {
+      return (mValues.length - 1) * 1000.0 / mFramesPerSecond;
+    }
+  }
+
+  private final double mFramesPerSecond;
+  private double mMaxDurationMillis = DEFAULT_MAX_DURATION_MILLIS;
+
+  /**
+   * constructor for the SpringBaker
+   * @param framesPerSecond the rate the curves are sampled at, such as 60 or 120
+   */
+  public SpringBaker(double framesPerSecond) {
+    if (framesPerSecond <= 0) {
+      throw new IllegalArgumentException("framesPerSecond must be positive");
+    }
+    mFramesPerSecond = framesPerSecond;
+  }
+
+  public double getFramesPerSecond() {
+    return mFramesPerSecond;
+  }
+
+  /**
+   * Set the longest time a curve is sampled for, so springs that never come to rest still end.
+   * @param maxDurationMillis the duration in milliseconds
+   */
+  public void setMaxDuration(double maxDurationMillis) {
+    if (maxDurationMillis <= 0) {
+      throw new IllegalArgumentException("maxDurationMillis must be positive");
+    }
+    mMaxDurationMillis = maxDurationMillis;
+  }
+
+  public double getMaxDuration() {
+    return mMaxDurationMillis;
+  }
+
+  /**
+   * bake a single curve
+   * @param curve the curve to bake
+   * @return the track of the curve
+   */
+  public Track bake(Curve curve) {
+    return bake(curve, new BaseSpringSystem(new SteppingLooper()), new float[64]);
+  }
+
+  /**
+   * Bake a batch of curves on a pool of threads.
+   * @param curves the curves to bake
+   * @param threadCount the number of threads to bake on
+   * @return the tracks in the order of the curves
+   */
+  public List<Track> bakeAll(List<Curve> curves, int threadCount) {
+    if (curves == null) {
+      throw new IllegalArgumentException("curves are required");
+    }
+    if (threadCount < 1) {
+      throw new IllegalArgumentException("threadCount must be positive");
+    }
+    final Curve[] input = curves.toArray(new Curve[curves.size()]);
+    final Track[] output = new Track[input.length];
+    int chunkCount = Math.min(threadCount, input.length);
+    if (chunkCount <= 1) {
+      bakeRange(input, output, 0, input.length);
+      return Arrays.asList(output);
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(chunkCount);
+    try {
+      List<Future<?>> futures = new ArrayList<Future<?>>(chunkCount);
+      for (int i = 0; i < chunkCount; i++) {
+        final int start = (int) ((long) input.length * i / chunkCount);
+        final int end = (int) ((long) input.length * (i + 1) / chunkCount);
+        futures.add(executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            bakeRange(input, output, start, end);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while baking", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("baking failed", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    return Arrays.asList(output);
+  }
+
+  private void bakeRange(Curve[] input, Track[] output, int start, int end) {
+    // a spring system is not thread safe, so each range gets its own
+    BaseSpringSystem springSystem = new BaseSpringSystem(new SteppingLooper());
+    float[] buffer = new float[64];
+    for (int i = start; i < end; i++) {
+      output[i] = bake(input[i], springSystem, buffer);
+    }
+  }
+
+  private Track bake(Curve curve, BaseSpringSystem springSystem, float[] buffer) {
+    if (curve == null) {
+      throw new IllegalArgumentException("curve is required");
+    }
+    double frameMillis = 1000.0 / mFramesPerSecond;
+    int maxFrames = (int) Math.ceil(mMaxDurationMillis / frameMillis) + 1;
+    Spring spring = springSystem.createSpring()
+        .setSpringConfig(curve.getSpringConfig())
+        .setCurrentValue(curve.getStartValue())
+        .setVelocity(curve.getVelocity())
+        .setEndValue(curve.getEndValue());
+    int count = 0;
+    buffer[count++] = (float) spring.getCurrentValue();
+    while (count < maxFrames && !(spring.isAtRest() && spring.wasAtRest())) {
+      springSystem.loop(frameMillis);
+      if (count == buffer.length) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+      buffer[count++] = (float) spring.getCurrentValue();
+    }
+    spring.destroy();
+    return new Track(curve, mFramesPerSecond, Arrays.copyOf(buffer, count));
+  }
+
+  /**
+   * read curves from csv lines of name,tension,friction,start,end,velocity with origami tension
+   * and friction, skipping blank lines and lines starting with #
+   * @param file the file to read
+   * @return the curves
+   * @throws IOException if the file cannot be read
+   */
+  static List<Curve> readCurves(File file) throws IOException {
+    List<Curve> curves = new ArrayList<Curve>();
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+    try {
+      String line;
+      int lineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        line = line.trim();
+        if (line.length() == 0 || line.startsWith("#")) {
+          continue;
+        }
+        String[] fields = line.split(",");
+        if (fields.length != 6) {
+          throw new IllegalArgumentException(
+              "line " + lineNumber + " must be name,tension,friction,start,end,velocity");
+        }
+        curves.add(new Curve(
+            fields[0].trim(),
+            SpringConfig.fromOrigamiTensionAndFriction(
+                Double.parseDouble(fields[1].trim()),
+                Double.parseDouble(fields[2].trim())),
+            Double.parseDouble(fields[3].trim()),
+            Double.parseDouble(fields[4].trim()),
+            Double.parseDouble(fields[5].trim())));
+      }
+    } finally {
+      reader.close();
+    }
+    return curves;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      usage();
+    }
+    double framesPerSecond = 60;
+    double maxDurationMillis = DEFAULT_MAX_DURATION_MILLIS;
+    String format = "json";
+    String output = null;
+    String cssDeclaration = SpringTrackWriter.DEFAULT_CSS_DECLARATION;
+    int decimals = SpringTrackWriter.DEFAULT_DECIMALS;
+    int threadCount = Runtime.getRuntime().availableProcessors();
+    for (int i = 1; i < args.length; i++) {
+      if (i + 1 >= args.length) {
+        usage();
+      } else if ("--fps".equals(args[i])) {
+        framesPerSecond = Double.parseDouble(args[++i]);
+      } else if ("--max-duration".equals(args[i])) {
+        maxDurationMillis = Double.parseDouble(args[++i]);
+      } else if ("--format".equals(args[i])) {
+        format = args[++i];
+      } else if ("--out".equals(args[i])) {
+        output = args[++i];
+      } else if ("--css-declaration".equals(args[i])) {
+        cssDeclaration = args[++i];
+      } else if ("--decimals".equals(args[i])) {
+        decimals = Integer.parseInt(args[++i]);
+        SpringTrackWriter.checkDecimals(decimals);
+      } else if ("--threads".equals(args[i])) {
+        threadCount = Integer.parseInt(args[++i]);
+      } else {
+        usage();
+      }
+    }
+
+    SpringBaker baker = new SpringBaker(framesPerSecond);
+    baker.setMaxDuration(maxDurationMillis);
+    List<Track> tracks = baker.bakeAll(readCurves(new File(args[0])), threadCount);
+
+    OutputStream out = output == null ?
+        System.out :
+        new BufferedOutputStream(new FileOutputStream(output));
+    try {
+      if ("binary".equals(format)) {
+        SpringTrackWriter.writeBinary(tracks, out);
+      } else {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+        if ("json".equals(format)) {
+          SpringTrackWriter.writeJson(tracks, decimals, writer);
+        } else if ("css".equals(format)) {
+          SpringTrackWriter.writeCss(tracks, cssDeclaration, decimals, writer);
+        } else {
+          throw new IllegalArgumentException("unknown format " + format);
+        }
+        writer.flush();
+      }
+      out.flush();
+    } finally {
+      if (output != null) {
+        out.close();
+      }
+    }
+  }
+
+  private static void usage() {
+    System.err.println(
+        "usage: SpringBaker <curves.csv> [--fps rate] [--max-duration millis]\n" +
+        "    [--format json|css|binary] [--out file] [--css-declaration format]\n" +
+        "    [--decimals count] [--threads count]\n" +
+        "curves.csv holds name,tension,friction,start,end,velocity lines with origami tension\n" +
+        "and friction");
+    System.exit(1);
+  }
+}
@@ -17,6 +17,10 @@ public class SpringConfig {
   public double friction;
   public double tension;
 
+  /**
+   * mutable and shared by every spring created without a config, prefer
+   * {@link ImmutableSpringConfig#DEFAULT} where the config is only read
+   */
   public static SpringConfig defaultConfig = SpringConfig.fromOrigamiTensionAndFriction(40, 7);
 
   /**
@@ -55,4 +59,12 @@ public class SpringConfig {
         bouncyConversion.getBouncyTension(),
         bouncyConversion.getBouncyFriction());
   }
+
+  /**
+   * get the immutable config with the current tension and friction of this config
+   * @return the interned ImmutableSpringConfig
+   */
+  public ImmutableSpringConfig toImmutable() {
+    return ImmutableSpringConfig.of(tension, friction);
+  }
 }
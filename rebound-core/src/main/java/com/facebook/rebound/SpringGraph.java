@@ -0,0 +1,360 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SpringGraph links springs into an arbitrary directed acyclic graph. A spring without parents is
+ * a root and is pulled towards its own end value like any other spring. A spring attached to one
+ * or more parents trails them: its end value is the average position of its parents. This covers
+ * fan-out hierarchies such as a card with nested children as well as grids of tiles that each
+ * trail the tile to their left and the tile above them.
+ *
+ * The graph is advanced as a single {@link SpringSimulation}. Springs are integrated in
+ * topological order, so every spring sees the already updated positions of its parents, and each
+ * spring is evaluated and notified once per loop instead of through cascading listener calls.
+ *
+ * <pre>
+ *   SpringGraph graph = new SpringGraph(springSystem);
+ *   Spring card = graph.addSpring(cardConfig);
+ *   Spring title = graph.addSpring(childConfig);
+ *   Spring image = graph.addSpring(childConfig);
+ *   graph.attach(title, card).attach(image, card);
+ *   card.setEndValue(1);
+ * </pre>
+ */
+public class SpringGraph implements SpringSimulation {
+
+  private final BaseSpringSystem mSpringSystem;
+  private final ArrayList<Spring> mSprings = new ArrayList<Spring>();
+  private final ArrayList<int[]> mParents = new ArrayList<int[]>();
+  private final Map<Spring, Integer> mIndices = new HashMap<Spring, Integer>();
+  private double mTimeAccumulator;
+  private boolean mWasAtRest = true;
+
+  // springs in topological order, rebuilt when the graph changes
+  private int[] mOrder = new int[0];
+  private boolean mOrderIsDirty;
+
+  // physics state of each spring by index, grown as springs are added
+  private double[] mPositions = new double[0];
+  private double[] mVelocities = new double[0];
+
+  /**
+   * constructor for the SpringGraph
+   * @param springSystem the system the springs of the graph are created in
+   */
+  public SpringGraph(BaseSpringSystem springSystem) {
+    if (springSystem == null) {
+      throw new IllegalArgumentException("springSystem is required");
+    }
+    mSpringSystem = springSystem;
+  }
+
+  /**
+   * Add a spring with the default config to the graph.
+   * @return the new spring
+   */
+  public Spring addSpring() {
+    return addSpring(SpringConfig.defaultConfig);
+  }
+
+  /**
+   * Add a spring to the graph. The spring is a root until it is attached to a parent.
+   * @param springConfig the config of the spring
+   * @return the new spring
+   */
+  public Spring addSpring(SpringConfig springConfig) {
+    if (springConfig == null) {
+      throw new IllegalArgumentException("springConfig is required");
+    }
+    Spring spring = mSpringSystem.createDrivenSpring(this).setSpringConfig(springConfig);
+    mIndices.put(spring, mSprings.size());
+    mSprings.add(spring);
+    mParents.add(new int[0]);
+    if (mPositions.length < mSprings.size()) {
+      int capacity = Math.max(8, mPositions.length * 2);
+      mPositions = new double[capacity];
+      mVelocities = new double[capacity];
+    }
+    mOrderIsDirty = true;
+    return spring;
+  }
+
+  /**
+   * Make a spring trail a parent. A spring with several parents trails their average position.
+   * @param child the spring that follows
+   * @param parent the spring to follow
+   * @return this SpringGraph for chaining
+   */
+  public SpringGraph attach(Spring child, Spring parent) {
+    int childIndex = getIndex(child);
+    int parentIndex = getIndex(parent);
+    if (childIndex == parentIndex || dependsOn(parentIndex, childIndex)) {
+      throw new IllegalArgumentException("attaching " + child.getId() + " to " + parent.getId() +
+          " would create a cycle");
+    }
+    int[] parents = mParents.get(childIndex);
+    for (int p : parents) {
+      if (p == parentIndex) {
+        return this;
+      }
+    }
+    int[] grown = new int[parents.length + 1];
+    System.arraycopy(parents, 0, grown, 0, parents.length);
+    grown[parents.length] = parentIndex;
+    mParents.set(childIndex, grown);
+    mOrderIsDirty = true;
+    mSpringSystem.activateSimulation(this);
+    return this;
+  }
+
+  /**
+   * Stop a spring from trailing a parent.
+   * @param child the spring that follows
+   * @param parent the spring it should no longer follow
+   * @return this SpringGraph for chaining
+   */
+  public SpringGraph detach(Spring child, Spring parent) {
+    int childIndex = getIndex(child);
+    int parentIndex = getIndex(parent);
+    int[] parents = mParents.get(childIndex);
+    for (int i = 0; i < parents.length; i++) {
+      if (parents[i] == parentIndex) {
+        int[] shrunk = new int[parents.length - 1];
+        System.arraycopy(parents, 0, shrunk, 0, i);
+        System.arraycopy(parents, i + 1, shrunk, i, parents.length - i - 1);
+        mParents.set(childIndex, shrunk);
+        mOrderIsDirty = true;
+        // the child may now be pulled towards a different average
+        mSpringSystem.activateSimulation(this);
+        break;
+      }
+    }
+    return this;
+  }
+
+  /**
+   * get the parents a spring trails
+   * @param spring a spring of the graph
+   * @return the parents of the spring, empty for a root
+   */
+  public List<Spring> getParents(Spring spring) {
+    int[] parents = mParents.get(getIndex(spring));
+    List<Spring> springs = new ArrayList<Spring>(parents.length);
+    for (int p : parents) {
+      springs.add(mSprings.get(p));
+    }
+    return springs;
+  }
+
+  /**
+   * Retrieve the list of springs in the graph in the order they were added.
+   * @return the list of springs
+   */
+  public List<Spring> getAllSprings() {
+    return Collections.unmodifiableList(mSprings);
+  }
+
+  private int getIndex(Spring spring) {
+    Integer index = mIndices.get(spring);
+    if (index == null) {
+      throw new IllegalArgumentException("spring is not part of this graph");
+    }
+    return index;
+  }
+
+  /**
+   * check if a spring trails another one, directly or through other springs
+   */
+  private boolean dependsOn(int from, int ancestor) {
+    boolean[] visited = new boolean[mSprings.size()];
+    int[] stack = new int[mSprings.size()];
+    int size = 0;
+    stack[size++] = from;
+    visited[from] = true;
+    while (size > 0) {
+      int index = stack[--size];
+      for (int p : mParents.get(index)) {
+        if (p == ancestor) {
+          return true;
+        }
+        if (!visited[p]) {
+          visited[p] = true;
+          stack[size++] = p;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Order the springs so every spring comes after all of its parents. Roots keep the order they
+   * were added in and springs are queued breadth first once their last parent is placed.
+   */
+  private void sortTopologically() {
+    int count = mSprings.size();
+    int[] pendingParents = new int[count];
+    int[][] children = new int[count][];
+    int[] childCounts = new int[count];
+    for (int i = 0; i < count; i++) {
+      pendingParents[i] = mParents.get(i).length;
+      for (int p : mParents.get(i)) {
+        childCounts[p]++;
+      }
+    }
+    for (int i = 0; i < count; i++) {
+      children[i] = new int[childCounts[i]];
+      childCounts[i] = 0;
+    }
+    for (int i = 0; i < count; i++) {
+      for (int p : mParents.get(i)) {
+        children[p][childCounts[p]++] = i;
+      }
+    }
+    if (mOrder.length != count) {
+      mOrder = new int[count];
+    }
+    int head = 0;
+    int tail = 0;
+    for (int i = 0; i < count; i++) {
+      if (pendingParents[i] == 0) {
+        mOrder[tail++] = i;
+      }
+    }
+    while (head < tail) {
+      int index = mOrder[head++];
+      for (int child : children[index]) {
+        if (--pendingParents[child] == 0) {
+          mOrder[tail++] = child;
+        }
+      }
+    }
+    mOrderIsDirty = false;
+  }
+
+  /**
+   * get the position a spring is pulled towards
+   */
+  private double getTarget(int index) {
+    int[] parents = mParents.get(index);
+    if (parents.length == 0) {
+      return mSprings.get(index).getEndValue();
+    }
+    double sum = 0;
+    for (int p : parents) {
+      sum += mPositions[p];
+    }
+    return sum / parents.length;
+  }
+
+  @Override
+  public boolean advance(double deltaTime) {
+    int count = mSprings.size();
+    if (count == 0) {
+      return false;
+    }
+    if (mOrderIsDirty) {
+      sortTopologically();
+    }
+
+    // Springs are the source of truth for anything set from outside the graph, such as a root
+    // being dragged, so the state is read back from them on every loop.
+    for (int i = 0; i < count; i++) {
+      Spring spring = mSprings.get(i);
+      mPositions[i] = spring.getCurrentValue();
+      mVelocities[i] = spring.getVelocity();
+    }
+
+    mTimeAccumulator += Math.min(deltaTime, Spring.MAX_DELTA_TIME_SEC);
+    while (mTimeAccumulator >= Spring.SOLVER_TIMESTEP_SEC) {
+      mTimeAccumulator -= Spring.SOLVER_TIMESTEP_SEC;
+      for (int i = 0; i < count; i++) {
+        int index = mOrder[i];
+        step(index, getTarget(index), Spring.SOLVER_TIMESTEP_SEC);
+      }
+    }
+
+    boolean isAtRest = isAtRest(count);
+    if (isAtRest) {
+      // snapping in topological order lets every child land on the snapped position of its parents
+      for (int i = 0; i < count; i++) {
+        int index = mOrder[i];
+        if (mSprings.get(index).getSpringConfig().tension != 0) {
+          mPositions[index] = getTarget(index);
+        }
+        mVelocities[index] = 0;
+      }
+      mTimeAccumulator = 0;
+    }
+
+    for (int i = 0; i < count; i++) {
+      int index = mOrder[i];
+      mSprings.get(index).setDrivenState(mPositions[index], mVelocities[index], getTarget(index));
+    }
+    boolean notifyActivate = mWasAtRest;
+    mWasAtRest = isAtRest;
+    for (int i = 0; i < count; i++) {
+      mSprings.get(mOrder[i]).notifyDrivenUpdate(notifyActivate, isAtRest);
+    }
+    return !isAtRest;
+  }
+
+  private boolean isAtRest(int count) {
+    for (int i = 0; i < count; i++) {
+      Spring spring = mSprings.get(i);
+      if (Math.abs(mVelocities[i]) > spring.getRestSpeedThreshold()) {
+        return false;
+      }
+      if (spring.getSpringConfig().tension != 0 &&
+          Math.abs(getTarget(i) - mPositions[i]) > spring.getRestDisplacementThreshold()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Advance one spring by a solver step with the same RK4 integration {@link Spring} uses, holding
+   * the target fixed for the duration of the step.
+   */
+  private void step(int index, double target, double h) {
+    SpringConfig config = mSprings.get(index).getSpringConfig();
+    double tension = config.tension;
+    double friction = config.friction;
+    double position = mPositions[index];
+    double velocity = mVelocities[index];
+
+    double aVelocity = velocity;
+    double aAcceleration = tension * (target - position) - friction * velocity;
+
+    double bVelocity = velocity + aAcceleration * h * 0.5;
+    double bAcceleration =
+        tension * (target - (position + aVelocity * h * 0.5)) - friction * bVelocity;
+
+    double cVelocity = velocity + bAcceleration * h * 0.5;
+    double cAcceleration =
+        tension * (target - (position + bVelocity * h * 0.5)) - friction * cVelocity;
+
+    double dVelocity = velocity + cAcceleration * h;
+    double dAcceleration = tension * (target - (position + cVelocity * h)) - friction * dVelocity;
+
+    mPositions[index] = position +
+        1.0 / 6.0 * (aVelocity + 2.0 * (bVelocity + cVelocity) + dVelocity) * h;
+    mVelocities[index] = velocity +
+        1.0 / 6.0 * (aAcceleration + 2.0 * (bAcceleration + cAcceleration) + dAcceleration) * h;
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+/**
+ * A SpringLoopProbe is told where each loop of a {@link BaseSpringSystem} is, so profilers and
+ * tracers can mark its phases on their own timeline. A probe is installed with
+ * {@link BaseSpringSystem#setLoopProbe(SpringLoopProbe)}; without one the loop pays a single null
+ * check per phase.
+ *
+ * Every loop calls onLoopBegin, then a listener dispatch for the
+ * {@link SpringSystemListener#onBeforeIntegrate(BaseSpringSystem)} callbacks, then the
+ * integration of springs and simulations, then a listener dispatch for the
+ * {@link SpringSystemListener#onAfterIntegrate(BaseSpringSystem)} callbacks and finally
+ * onLoopEnd. Spring transitions and the notification of spring listeners are reported from
+ * within the integration phase.
+ */
+public interface SpringLoopProbe {
+
+  /**
+   * Called when a loop starts.
+   * @param springSystem the system running the loop
+   * @param elapsedMillis the elapsed time being integrated
+   * @param activeSpringCount the number of active springs
+   */
+  void onLoopBegin(BaseSpringSystem springSystem, double elapsedMillis, int activeSpringCount);
+
+  /**
+   * Called before the system listeners are notified.
+   * @param springSystem the system running the loop
+   * @param afterIntegrate true for the dispatch that follows integration
+   */
+  void onListenerDispatchBegin(BaseSpringSystem springSystem, boolean afterIntegrate);
+
+  /**
+   * Called after the system listeners were notified.
+   * @param springSystem the system running the loop
+   * @param afterIntegrate true for the dispatch that follows integration
+   */
+  void onListenerDispatchEnd(BaseSpringSystem springSystem, boolean afterIntegrate);
+
+  /**
+   * Called before springs and simulations are advanced.
+   * @param springSystem the system running the loop
+   */
+  void onIntegrationBegin(BaseSpringSystem springSystem);
+
+  /**
+   * Called after springs and simulations were advanced.
+   * @param springSystem the system running the loop
+   * @param activeSpringCount the number of springs still active
+   */
+  void onIntegrationEnd(BaseSpringSystem springSystem, int activeSpringCount);
+
+  /**
+   * Called when a spring starts moving, right before its listeners are told.
+   * @param spring the spring
+   */
+  void onSpringActivate(Spring spring);
+
+  /**
+   * Called when a spring comes to rest, right before its listeners are told.
+   * @param spring the spring
+   */
+  void onSpringAtRest(Spring spring);
+
+  /**
+   * Called before the listeners of a spring are told it was advanced.
+   * @param spring the spring
+   */
+  void onSpringListenersBegin(Spring spring);
+
+  /**
+   * Called after the listeners of a spring were told it was advanced.
+   * @param spring the spring
+   */
+  void onSpringListenersEnd(Spring spring);
+
+  /**
+   * Called when a loop is done.
+   * @param springSystem the system running the loop
+   * @param activeSpringCount the number of springs still active
+   */
+  void onLoopEnd(BaseSpringSystem springSystem, int activeSpringCount);
+}
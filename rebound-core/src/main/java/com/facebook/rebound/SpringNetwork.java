@@ -0,0 +1,411 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * SpringNetwork is a mass-spring network for effects such as wobbly grids of tiles or cloth-like
+ * surfaces, where hundreds of values are coupled to their neighbours. Nodes are not {@link Spring}
+ * objects, their state lives in primitive arrays indexed by the node id returned from
+ * {@link #addNode(double, SpringConfig)}, and links are kept in a compressed sparse adjacency list.
+ *
+ * Every node has a rest value it is optionally anchored to with a {@link SpringConfig}, and links
+ * pull the displacements of two nodes from their rest values towards each other using the tension
+ * and friction of their own SpringConfig. Poking one node of an anchored grid therefore ripples
+ * through its neighbours and settles back. All nodes are integrated together on each solver step,
+ * so coupling never lags a frame behind, and listeners are notified once per loop for the whole
+ * network.
+ *
+ * Node values are scalars like the values of a Spring. For a 2D effect, use one network per axis
+ * with the same links: the links are linear, so the two axes are independent.
+ */
+public class SpringNetwork implements SpringSimulation {
+
+  private static final double DEFAULT_REST_THRESHOLD = 0.005;
+
+  private final BaseSpringSystem mSpringSystem;
+  private final CopyOnWriteArraySet<SpringNetworkListener> mListeners =
+      new CopyOnWriteArraySet<SpringNetworkListener>();
+  private double mRestDisplacementThreshold = DEFAULT_REST_THRESHOLD;
+  private double mRestSpeedThreshold = DEFAULT_REST_THRESHOLD;
+  private double mTimeAccumulator;
+  private boolean mActive;
+
+  // node state, valid up to mNodeCount
+  private int mNodeCount;
+  private double[] mPositions = new double[0];
+  private double[] mVelocities = new double[0];
+  private double[] mRestValues = new double[0];
+  private double[] mInverseMasses = new double[0];
+  private double[] mAnchorTensions = new double[0];
+  private double[] mAnchorFrictions = new double[0];
+  private double[] mForces = new double[0];
+
+  // links as an edge list, valid up to mLinkCount
+  private int mLinkCount;
+  private int[] mLinkFrom = new int[0];
+  private int[] mLinkTo = new int[0];
+  private double[] mLinkTensions = new double[0];
+  private double[] mLinkFrictions = new double[0];
+
+  // compressed adjacency rebuilt from the edge list when links change: the neighbours of node i
+  // are mNeighbours[mAdjacencyStart[i]] to mNeighbours[mAdjacencyStart[i + 1] - 1], each with the
+  // index of the link joining them at the same position in mNeighbourLinks
+  private int[] mAdjacencyStart = new int[1];
+  private int[] mNeighbours = new int[0];
+  private int[] mNeighbourLinks = new int[0];
+  private boolean mAdjacencyIsDirty;
+
+  /**
+   * constructor for the SpringNetwork
+   * @param springSystem the system that advances the network
+   */
+  public SpringNetwork(BaseSpringSystem springSystem) {
+    if (springSystem == null) {
+      throw new IllegalArgumentException("springSystem is required");
+    }
+    mSpringSystem = springSystem;
+  }
+
+  /**
+   * Add a node that is only held in place by its links.
+   * @param restValue the value of the node when the network is at rest
+   * @return the id of the node
+   */
+  public int addNode(double restValue) {
+    return addNode(restValue, null);
+  }
+
+  /**
+   * Add a node anchored to its rest value.
+   * @param restValue the value of the node when the network is at rest
+   * @param anchorConfig the spring pulling the node back to its rest value, or null for a node
+   *                     that is only held in place by its links
+   * @return the id of the node
+   */
+  public int addNode(double restValue, SpringConfig anchorConfig) {
+    if (mNodeCount == mPositions.length) {
+      int capacity = Math.max(16, mNodeCount * 2);
+      mPositions = grow(mPositions, capacity);
+      mVelocities = grow(mVelocities, capacity);
+      mRestValues = grow(mRestValues, capacity);
+      mInverseMasses = grow(mInverseMasses, capacity);
+      mAnchorTensions = grow(mAnchorTensions, capacity);
+      mAnchorFrictions = grow(mAnchorFrictions, capacity);
+      mForces = new double[capacity];
+    }
+    int node = mNodeCount++;
+    mPositions[node] = restValue;
+    mVelocities[node] = 0;
+    mRestValues[node] = restValue;
+    mInverseMasses[node] = 1;
+    mAnchorTensions[node] = anchorConfig == null ? 0 : anchorConfig.tension;
+    mAnchorFrictions[node] = anchorConfig == null ? 0 : anchorConfig.friction;
+    mAdjacencyIsDirty = true;
+    return node;
+  }
+
+  /**
+   * Link two nodes so their displacements from rest pull towards each other.
+   * @param a the id of the first node
+   * @param b the id of the second node
+   * @param springConfig the tension and friction of the link
+   * @return this SpringNetwork for chaining
+   */
+  public SpringNetwork link(int a, int b, SpringConfig springConfig) {
+    checkNode(a);
+    checkNode(b);
+    if (a == b) {
+      throw new IllegalArgumentException("a node cannot be linked to itself");
+    }
+    if (springConfig == null) {
+      throw new IllegalArgumentException("springConfig is required");
+    }
+    if (mLinkCount == mLinkFrom.length) {
+      int capacity = Math.max(16, mLinkCount * 2);
+      mLinkFrom = grow(mLinkFrom, capacity);
+      mLinkTo = grow(mLinkTo, capacity);
+      mLinkTensions = grow(mLinkTensions, capacity);
+      mLinkFrictions = grow(mLinkFrictions, capacity);
+    }
+    mLinkFrom[mLinkCount] = a;
+    mLinkTo[mLinkCount] = b;
+    mLinkTensions[mLinkCount] = springConfig.tension;
+    mLinkFrictions[mLinkCount] = springConfig.friction;
+    mLinkCount++;
+    mAdjacencyIsDirty = true;
+    return this;
+  }
+
+  public int getNodeCount() {
+    return mNodeCount;
+  }
+
+  public int getLinkCount() {
+    return mLinkCount;
+  }
+
+  public double getValue(int node) {
+    checkNode(node);
+    return mPositions[node];
+  }
+
+  /**
+   * Move a node and wake the network.
+   * @param node the id of the node
+   * @param value the new value
+   * @return this SpringNetwork for chaining
+   */
+  public SpringNetwork setValue(int node, double value) {
+    checkNode(node);
+    mPositions[node] = value;
+    activate();
+    return this;
+  }
+
+  public double getVelocity(int node) {
+    checkNode(node);
+    return mVelocities[node];
+  }
+
+  /**
+   * Set the velocity of a node and wake the network, for example to fling it on release.
+   * @param node the id of the node
+   * @param velocity the velocity in units per second
+   * @return this SpringNetwork for chaining
+   */
+  public SpringNetwork setVelocity(int node, double velocity) {
+    checkNode(node);
+    mVelocities[node] = velocity;
+    activate();
+    return this;
+  }
+
+  public double getRestValue(int node) {
+    checkNode(node);
+    return mRestValues[node];
+  }
+
+  /**
+   * Change the rest value of a node and wake the network.
+   * @param node the id of the node
+   * @param restValue the value of the node when the network is at rest
+   * @return this SpringNetwork for chaining
+   */
+  public SpringNetwork setRestValue(int node, double restValue) {
+    checkNode(node);
+    mRestValues[node] = restValue;
+    activate();
+    return this;
+  }
+
+  /**
+   * Set the mass of a node. Heavier nodes respond more slowly to their links and anchor.
+   * @param node the id of the node
+   * @param mass the mass, 1 by default
+   * @return this SpringNetwork for chaining
+   */
+  public SpringNetwork setMass(int node, double mass) {
+    checkNode(node);
+    if (mass <= 0) {
+      throw new IllegalArgumentException("mass must be positive");
+    }
+    mInverseMasses[node] = 1 / mass;
+    return this;
+  }
+
+  /**
+   * Set the thresholds under which every node has to be for the network to come to rest.
+   * @param displacementThreshold largest distance of a node from rest, and of a link from its
+   *                              relaxed state
+   * @param speedThreshold largest speed of a node
+   * @return this SpringNetwork for chaining
+   */
+  public SpringNetwork setRestThresholds(double displacementThreshold, double speedThreshold) {
+    mRestDisplacementThreshold = displacementThreshold;
+    mRestSpeedThreshold = speedThreshold;
+    return this;
+  }
+
+  /**
+   * check if the network is advanced by the system
+   * @return true while the network is moving
+   */
+  public boolean isActive() {
+    return mActive;
+  }
+
+  /**
+   * add a listener
+   * @param newListener to add
+   * @return this SpringNetwork for chaining
+   */
+  public SpringNetwork addListener(SpringNetworkListener newListener) {
+    if (newListener == null) {
+      throw new IllegalArgumentException("newListener is required");
+    }
+    mListeners.add(newListener);
+    return this;
+  }
+
+  /**
+   * remove a listener
+   * @param listenerToRemove to remove
+   * @return this SpringNetwork for chaining
+   */
+  public SpringNetwork removeListener(SpringNetworkListener listenerToRemove) {
+    if (listenerToRemove == null) {
+      throw new IllegalArgumentException("listenerToRemove is required");
+    }
+    mListeners.remove(listenerToRemove);
+    return this;
+  }
+
+  private void activate() {
+    if (!mActive) {
+      mActive = true;
+      mSpringSystem.activateSimulation(this);
+    }
+  }
+
+  private void checkNode(int node) {
+    if (node < 0 || node >= mNodeCount) {
+      throw new IndexOutOfBoundsException("node " + node + " is not part of the network");
+    }
+  }
+
+  private void buildAdjacency() {
+    if (mAdjacencyStart.length < mNodeCount + 1) {
+      mAdjacencyStart = new int[mPositions.length + 1];
+    }
+    if (mNeighbours.length < mLinkCount * 2) {
+      mNeighbours = new int[mLinkFrom.length * 2];
+      mNeighbourLinks = new int[mLinkFrom.length * 2];
+    }
+    // count the degree of every node, then turn the counts into start offsets
+    for (int i = 0; i <= mNodeCount; i++) {
+      mAdjacencyStart[i] = 0;
+    }
+    for (int l = 0; l < mLinkCount; l++) {
+      mAdjacencyStart[mLinkFrom[l] + 1]++;
+      mAdjacencyStart[mLinkTo[l] + 1]++;
+    }
+    for (int i = 0; i < mNodeCount; i++) {
+      mAdjacencyStart[i + 1] += mAdjacencyStart[i];
+    }
+    // fill the range of each node, this only runs when the topology changes
+    int[] cursors = new int[mNodeCount];
+    System.arraycopy(mAdjacencyStart, 0, cursors, 0, mNodeCount);
+    for (int l = 0; l < mLinkCount; l++) {
+      int a = mLinkFrom[l];
+      int b = mLinkTo[l];
+      int slot = cursors[a]++;
+      mNeighbours[slot] = b;
+      mNeighbourLinks[slot] = l;
+      slot = cursors[b]++;
+      mNeighbours[slot] = a;
+      mNeighbourLinks[slot] = l;
+    }
+    mAdjacencyIsDirty = false;
+  }
+
+  @Override
+  public boolean advance(double deltaTime) {
+    if (mNodeCount == 0) {
+      mActive = false;
+      return false;
+    }
+    if (mAdjacencyIsDirty) {
+      buildAdjacency();
+    }
+    mTimeAccumulator += Math.min(deltaTime, Spring.MAX_DELTA_TIME_SEC);
+    while (mTimeAccumulator >= Spring.SOLVER_TIMESTEP_SEC) {
+      mTimeAccumulator -= Spring.SOLVER_TIMESTEP_SEC;
+      step(Spring.SOLVER_TIMESTEP_SEC);
+    }
+
+    boolean isAtRest = isAtRest();
+    if (isAtRest) {
+      for (int i = 0; i < mNodeCount; i++) {
+        if (mAnchorTensions[i] != 0) {
+          mPositions[i] = mRestValues[i];
+        }
+        mVelocities[i] = 0;
+      }
+      mTimeAccumulator = 0;
+      mActive = false;
+    }
+    for (SpringNetworkListener listener : mListeners) {
+      listener.onNetworkUpdate(this);
+      if (isAtRest) {
+        listener.onNetworkAtRest(this);
+      }
+    }
+    return !isAtRest;
+  }
+
+  /**
+   * Advance every node by one semi-implicit Euler step: forces are gathered for all nodes from
+   * the state at the start of the step, then velocities and positions are updated together.
+   */
+  private void step(double h) {
+    for (int i = 0; i < mNodeCount; i++) {
+      double displacement = mPositions[i] - mRestValues[i];
+      double velocity = mVelocities[i];
+      double force = -mAnchorTensions[i] * displacement - mAnchorFrictions[i] * velocity;
+      for (int n = mAdjacencyStart[i], end = mAdjacencyStart[i + 1]; n < end; n++) {
+        int j = mNeighbours[n];
+        int l = mNeighbourLinks[n];
+        force += mLinkTensions[l] * (mPositions[j] - mRestValues[j] - displacement) +
+            mLinkFrictions[l] * (mVelocities[j] - velocity);
+      }
+      mForces[i] = force;
+    }
+    for (int i = 0; i < mNodeCount; i++) {
+      mVelocities[i] += mForces[i] * mInverseMasses[i] * h;
+      mPositions[i] += mVelocities[i] * h;
+    }
+  }
+
+  private boolean isAtRest() {
+    for (int i = 0; i < mNodeCount; i++) {
+      if (Math.abs(mVelocities[i]) > mRestSpeedThreshold) {
+        return false;
+      }
+      if (mAnchorTensions[i] != 0 &&
+          Math.abs(mPositions[i] - mRestValues[i]) > mRestDisplacementThreshold) {
+        return false;
+      }
+    }
+    for (int l = 0; l < mLinkCount; l++) {
+      int a = mLinkFrom[l];
+      int b = mLinkTo[l];
+      double stretch = (mPositions[a] - mRestValues[a]) - (mPositions[b] - mRestValues[b]);
+      if (Math.abs(stretch) > mRestDisplacementThreshold) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static double[] grow(double[] array, int capacity) {
+    double[] grown = new double[capacity];
+    System.arraycopy(array, 0, grown, 0, array.length);
+    return grown;
+  }
+
+  private static int[] grow(int[] array, int capacity) {
+    int[] grown = new int[capacity];
+    System.arraycopy(array, 0, grown, 0, array.length);
+    return grown;
+  }
+}
@@ -0,0 +1,30 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+/**
+ * SpringNetworkListener is notified once per loop for a whole {@link SpringNetwork} rather than
+ * once per node.
+ */
+public interface SpringNetworkListener {
+
+  /**
+   * called after every node of the network has been advanced for the loop
+   * @param network the SpringNetwork that was advanced
+   */
+  void onNetworkUpdate(SpringNetwork network);
+
+  /**
+   * called when every node of the network has come to rest
+   * @param network the SpringNetwork that came to rest
+   */
+  void onNetworkAtRest(SpringNetwork network);
+}
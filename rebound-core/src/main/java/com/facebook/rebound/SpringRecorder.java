@@ -0,0 +1,269 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SpringRecorder captures the inputs that determine how the springs of a {@link BaseSpringSystem}
+ * move: the elapsed time of every loop and every call that changes the state, config or priority
+ * of a spring. The log is written to a compact binary stream that
+ * {@link SpringReplayer} can re-run headless, at full speed and with the exact same frame
+ * timing, to reproduce an animation glitch or profile a recorded workload.
+ *
+ * Each mutation is tagged with the point of the loop it happened at, for example from the
+ * update listener of another spring, so the replay applies it at the same point. Springs are
+ * numbered in the order they were created, starting with the springs that existed when recording
+ * started.
+ *
+ * The configuration of the system itself is not recorded. Springs driven by a
+ * {@link SpringSimulation} are skipped, and neither the {@link FrameRatePolicy} nor the frame
+ * budget set with {@link BaseSpringSystem#setFrameBudget(double)} is part of the log; frame budget
+ * decisions depend on the wall clock and cannot be reproduced anyway. A recording made while
+ * either of them was installed only replays faithfully once the same policy is installed on
+ * {@link SpringReplayer#getSpringSystem()} before replaying.
+ *
+ * Recording never throws into the animation loop. If the stream fails, recording stops and the
+ * error is available from {@link #getError()}.
+ */
+public class SpringRecorder {
+
+  static final int MAGIC = 0x52425243; // RBRC
+  static final int VERSION = 2;
+
+  static final int OP_END = 0;
+  static final int OP_LOOP = 1;
+  static final int OP_CREATE = 2;
+  static final int OP_DESTROY = 3;
+  static final int OP_SPRING_CONFIG = 4;
+  static final int OP_CURRENT_VALUE = 5;
+  static final int OP_END_VALUE = 6;
+  static final int OP_VELOCITY = 7;
+  static final int OP_AT_REST = 8;
+  static final int OP_REST_SPEED_THRESHOLD = 9;
+  static final int OP_REST_DISPLACEMENT_THRESHOLD = 10;
+  static final int OP_OVERSHOOT_CLAMPING = 11;
+  static final int OP_PRIORITY = 12;
+
+  // contexts of a mutation, a context of CONTEXT_SPRING + n means while spring n was advanced
+  static final int CONTEXT_OUTSIDE_LOOP = 0;
+  static final int CONTEXT_BEFORE_ADVANCE = 1;
+  static final int CONTEXT_AFTER_ADVANCE = 2;
+  static final int CONTEXT_SPRING = 3;
+
+  private final BaseSpringSystem mSpringSystem;
+  private final DataOutputStream mOutput;
+  private final Map<Spring, Integer> mIndices = new HashMap<Spring, Integer>();
+  private int mNextIndex;
+  private boolean mRecording;
+  private long mLoopCount;
+  private IOException mError;
+
+  /**
+   * constructor for the SpringRecorder
+   * @param springSystem the system to record
+   * @param output the stream the log is written to, it is flushed but not closed by
+   *               {@link #stop()}
+   */
+  public SpringRecorder(BaseSpringSystem springSystem, OutputStream output) {
+    if (springSystem == null) {
+      throw new IllegalArgumentException("springSystem is required");
+    }
+    if (output == null) {
+      throw new IllegalArgumentException("output is required");
+    }
+    mSpringSystem = springSystem;
+    mOutput = new DataOutputStream(output);
+  }
+
+  /**
+   * Start recording. The springs that already exist are written to the log with their current
+   * state first.
+   */
+  public void start() {
+    if (mRecording) {
+      return;
+    }
+    if (mSpringSystem.getRecorder() != null) {
+      throw new IllegalStateException("the spring system is already being recorded");
+    }
+    try {
+      mOutput.writeInt(MAGIC);
+      mOutput.writeByte(VERSION);
+    } catch (IOException e) {
+      fail(e);
+      return;
+    }
+    mRecording = true;
+    mSpringSystem.setRecorder(this);
+    for (Spring spring : mSpringSystem.getAllSprings()) {
+      if (spring.getDriver() != null) {
+        continue;
+      }
+      recordCreate(spring);
+      recordSpringConfig(spring, spring.getSpringConfig());
+      recordMutation(spring, OP_REST_SPEED_THRESHOLD, spring.getRestSpeedThreshold());
+      recordMutation(
+          spring,
+          OP_REST_DISPLACEMENT_THRESHOLD,
+          spring.getRestDisplacementThreshold());
+      recordMutation(spring, OP_OVERSHOOT_CLAMPING, spring.isOvershootClampingEnabled() ? 1 : 0);
+      recordMutation(spring, OP_PRIORITY, spring.getPriority());
+      recordMutation(spring, OP_CURRENT_VALUE, spring.getCurrentValue());
+      recordMutation(spring, OP_AT_REST, 0);
+      recordMutation(spring, OP_END_VALUE, spring.getEndValue());
+      recordMutation(spring, OP_VELOCITY, spring.getVelocity());
+    }
+  }
+
+  /**
+   * Stop recording and flush the log.
+   */
+  public void stop() {
+    if (!mRecording) {
+      return;
+    }
+    try {
+      mOutput.writeByte(OP_END);
+      mOutput.flush();
+    } catch (IOException e) {
+      fail(e);
+      return;
+    }
+    mRecording = false;
+    mSpringSystem.setRecorder(null);
+  }
+
+  public boolean isRecording() {
+    return mRecording;
+  }
+
+  /**
+   * get the number of loops recorded
+   * @return the number of loops
+   */
+  public long getLoopCount() {
+    return mLoopCount;
+  }
+
+  /**
+   * get the error that stopped the recording
+   * @return the error or null if writing the log has not failed
+   */
+  public IOException getError() {
+    return mError;
+  }
+
+  void recordLoop(double elapsedMillis) {
+    try {
+      mOutput.writeByte(OP_LOOP);
+      mOutput.writeDouble(elapsedMillis);
+      mLoopCount++;
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  void recordCreate(Spring spring) {
+    int index = mNextIndex++;
+    mIndices.put(spring, index);
+    writeHeader(OP_CREATE, index);
+  }
+
+  void recordDestroy(Spring spring) {
+    Integer index = mIndices.remove(spring);
+    if (index != null) {
+      writeHeader(OP_DESTROY, index);
+    }
+  }
+
+  void recordSpringConfig(Spring spring, SpringConfig springConfig) {
+    Integer index = mIndices.get(spring);
+    if (index == null || !writeHeader(OP_SPRING_CONFIG, index)) {
+      return;
+    }
+    try {
+      mOutput.writeDouble(springConfig.tension);
+      mOutput.writeDouble(springConfig.friction);
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  void recordMutation(Spring spring, int op, double value) {
+    Integer index = mIndices.get(spring);
+    if (index == null || !writeHeader(op, index)) {
+      return;
+    }
+    try {
+      if (op == OP_OVERSHOOT_CLAMPING || op == OP_PRIORITY) {
+        mOutput.writeByte((int) value);
+      } else if (op != OP_AT_REST) {
+        mOutput.writeDouble(value);
+      }
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  /**
+   * write the opcode, the context and the spring index of a mutation
+   * @return false if the recording failed
+   */
+  private boolean writeHeader(int op, int index) {
+    try {
+      mOutput.writeByte(op);
+      writeVarInt(getContext());
+      writeVarInt(index);
+      return true;
+    } catch (IOException e) {
+      fail(e);
+      return false;
+    }
+  }
+
+  private int getContext() {
+    switch (mSpringSystem.getLoopStage()) {
+      case BaseSpringSystem.LOOP_STAGE_BEFORE_ADVANCE:
+        return CONTEXT_BEFORE_ADVANCE;
+      case BaseSpringSystem.LOOP_STAGE_ADVANCING: {
+        Integer index = mIndices.get(mSpringSystem.getAdvancingSpring());
+        return index == null ? CONTEXT_AFTER_ADVANCE : CONTEXT_SPRING + index;
+      }
+      case BaseSpringSystem.LOOP_STAGE_AFTER_ADVANCE:
+        return CONTEXT_AFTER_ADVANCE;
+      default:
+        return CONTEXT_OUTSIDE_LOOP;
+    }
+  }
+
+  private void writeVarInt(int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      mOutput.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    mOutput.writeByte(value);
+  }
+
+  private void fail(IOException e) {
+    if (mError == null) {
+      mError = e;
+    }
+    mRecording = false;
+    if (mSpringSystem.getRecorder() == this) {
+      mSpringSystem.setRecorder(null);
+    }
+  }
+}
@@ -0,0 +1,306 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SpringReplayer re-runs a log written by {@link SpringRecorder} on a fresh
+ * {@link BaseSpringSystem} driven by a {@link SteppingLooper}. Nothing waits for frames, so a
+ * replay runs as fast as the springs can be integrated, with the exact loop deltas that were
+ * recorded. Mutations that were made from inside a loop are applied at the same point of the
+ * replayed loop: before the springs are advanced, right after the spring whose listener made
+ * them, or after the springs are advanced.
+ *
+ * <pre>
+ *   SpringReplayer replayer = new SpringReplayer(new FileInputStream(log));
+ *   replayer.replay();
+ *   double value = replayer.getSpring(0).getCurrentValue();
+ * </pre>
+ */
+public class SpringReplayer {
+
+  private final DataInputStream mInput;
+  private final BaseSpringSystem mSpringSystem;
+  private final List<Spring> mSprings = new ArrayList<Spring>();
+  // records of the loop being replayed that were made from inside the loop, in recorded order
+  private final List<Record> mPendingRecords = new ArrayList<Record>();
+  private int mPendingHead;
+  private Record mPeekedRecord;
+  private boolean mFinished;
+  private long mLoopCount;
+  private long mUnmatchedRecordCount;
+
+  /**
+   * constructor for the SpringReplayer
+   * @param input the stream to read the log from
+   * @throws IOException if the stream does not start with a valid log header
+   */
+  public SpringReplayer(InputStream input) throws IOException {
+    if (input == null) {
+      throw new IllegalArgumentException("input is required");
+    }
+    mInput = new DataInputStream(input);
+    if (mInput.readInt() != SpringRecorder.MAGIC) {
+      throw new IOException("not a spring recording");
+    }
+    int version = mInput.readUnsignedByte();
+    // version 1 logs are the same without priority records
+    if (version != 1 && version != SpringRecorder.VERSION) {
+      throw new IOException("unsupported spring recording version " + version);
+    }
+    mSpringSystem = new BaseSpringSystem(new SteppingLooper());
+    mSpringSystem.addListener(new SpringSystemListener() {
+      @Override
+      public void onBeforeIntegrate(BaseSpringSystem springSystem) {
+        applyPendingRecords(SpringRecorder.CONTEXT_BEFORE_ADVANCE);
+      }
+
+      @Override
+      public void onAfterIntegrate(BaseSpringSystem springSystem) {
+        applyPendingRecords(SpringRecorder.CONTEXT_AFTER_ADVANCE);
+      }
+    });
+  }
+
+  /**
+   * get the system the log is replayed on
+   * @return the BaseSpringSystem
+   */
+  public BaseSpringSystem getSpringSystem() {
+    return mSpringSystem;
+  }
+
+  /**
+   * get a replayed spring
+   * @param index the index of the spring in the recording, springs are numbered in creation order
+   * @return the spring or null if it has not been created yet
+   */
+  public Spring getSpring(int index) {
+    return index < mSprings.size() ? mSprings.get(index) : null;
+  }
+
+  /**
+   * get the number of loops replayed so far
+   * @return the number of loops
+   */
+  public long getLoopCount() {
+    return mLoopCount;
+  }
+
+  /**
+   * Get the number of in-loop records that could not be applied at their recorded point, which
+   * means the replay diverged from the recording. They are applied at the end of their loop.
+   * @return the number of unmatched records
+   */
+  public long getUnmatchedRecordCount() {
+    return mUnmatchedRecordCount;
+  }
+
+  public boolean isFinished() {
+    return mFinished;
+  }
+
+  /**
+   * Replay the log up to and including the next loop.
+   * @return true if a loop was replayed, false once the end of the log has been reached
+   * @throws IOException if the log cannot be read
+   */
+  public boolean replayLoop() throws IOException {
+    while (!mFinished) {
+      Record record = nextRecord();
+      if (record.mOp == SpringRecorder.OP_END) {
+        mFinished = true;
+        return false;
+      }
+      if (record.mOp != SpringRecorder.OP_LOOP) {
+        apply(record);
+        continue;
+      }
+      // gather what the listeners did during the recorded loop before running it
+      mPendingRecords.clear();
+      mPendingHead = 0;
+      while (peekRecord().mOp != SpringRecorder.OP_LOOP &&
+          peekRecord().mOp != SpringRecorder.OP_END &&
+          peekRecord().mContext != SpringRecorder.CONTEXT_OUTSIDE_LOOP) {
+        mPendingRecords.add(nextRecord());
+      }
+      mSpringSystem.loop(record.mValue);
+      mLoopCount++;
+      while (mPendingHead < mPendingRecords.size()) {
+        mUnmatchedRecordCount++;
+        apply(mPendingRecords.get(mPendingHead++));
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Replay the whole log.
+   * @return the number of loops replayed
+   * @throws IOException if the log cannot be read
+   */
+  public long replay() throws IOException {
+    while (replayLoop()) {
+      // keep going until the end of the log
+    }
+    return mLoopCount;
+  }
+
+  private void applyPendingRecords(int context) {
+    while (mPendingHead < mPendingRecords.size() &&
+        mPendingRecords.get(mPendingHead).mContext == context) {
+      apply(mPendingRecords.get(mPendingHead++));
+    }
+  }
+
+  private void apply(Record record) {
+    if (record.mOp == SpringRecorder.OP_CREATE) {
+      while (mSprings.size() < record.mSpring) {
+        mSprings.add(null);
+      }
+      final int index = record.mSpring;
+      Spring spring = mSpringSystem.createSpring();
+      spring.addListener(new SimpleSpringListener() {
+        @Override
+        public void onSpringUpdate(Spring spring) {
+          if (mSpringSystem.getAdvancingSpring() == spring) {
+            applyPendingRecords(SpringRecorder.CONTEXT_SPRING + index);
+          }
+        }
+      });
+      mSprings.add(spring);
+      return;
+    }
+    Spring spring = getSpring(record.mSpring);
+    if (spring == null) {
+      return;
+    }
+    switch (record.mOp) {
+      case SpringRecorder.OP_DESTROY:
+        spring.destroy();
+        mSprings.set(record.mSpring, null);
+        break;
+      case SpringRecorder.OP_SPRING_CONFIG:
+        spring.setSpringConfig(new SpringConfig(record.mValue, record.mSecondValue));
+        break;
+      case SpringRecorder.OP_CURRENT_VALUE:
+        spring.setCurrentValue(record.mValue, false);
+        break;
+      case SpringRecorder.OP_END_VALUE:
+        spring.setEndValue(record.mValue);
+        break;
+      case SpringRecorder.OP_VELOCITY:
+        spring.setVelocity(record.mValue);
+        break;
+      case SpringRecorder.OP_AT_REST:
+        spring.setAtRest();
+        break;
+      case SpringRecorder.OP_REST_SPEED_THRESHOLD:
+        spring.setRestSpeedThreshold(record.mValue);
+        break;
+      case SpringRecorder.OP_REST_DISPLACEMENT_THRESHOLD:
+        spring.setRestDisplacementThreshold(record.mValue);
+        break;
+      case SpringRecorder.OP_OVERSHOOT_CLAMPING:
+        spring.setOvershootClampingEnabled(record.mValue != 0);
+        break;
+      case SpringRecorder.OP_PRIORITY:
+        spring.setPriority((int) record.mValue);
+        break;
+    }
+  }
+
+  private Record peekRecord() throws IOException {
+    if (mPeekedRecord == null) {
+      mPeekedRecord = readRecord();
+    }
+    return mPeekedRecord;
+  }
+
+  private Record nextRecord() throws IOException {
+    Record record = peekRecord();
+    mPeekedRecord = null;
+    return record;
+  }
+
+  private Record readRecord() throws IOException {
+    Record record = new Record();
+    try {
+      record.mOp = mInput.readUnsignedByte();
+    } catch (EOFException e) {
+      // a log that was not stopped properly ends where the stream ends
+      record.mOp = SpringRecorder.OP_END;
+      return record;
+    }
+    switch (record.mOp) {
+      case SpringRecorder.OP_END:
+        return record;
+      case SpringRecorder.OP_LOOP:
+        record.mValue = mInput.readDouble();
+        return record;
+      default:
+        if (record.mOp > SpringRecorder.OP_PRIORITY) {
+          throw new IOException("unknown spring recording op " + record.mOp);
+        }
+        record.mContext = readVarInt();
+        record.mSpring = readVarInt();
+        break;
+    }
+    switch (record.mOp) {
+      case SpringRecorder.OP_SPRING_CONFIG:
+        record.mValue = mInput.readDouble();
+        record.mSecondValue = mInput.readDouble();
+        break;
+      case SpringRecorder.OP_OVERSHOOT_CLAMPING:
+      case SpringRecorder.OP_PRIORITY:
+        record.mValue = mInput.readUnsignedByte();
+        break;
+      case SpringRecorder.OP_CURRENT_VALUE:
+      case SpringRecorder.OP_END_VALUE:
+      case SpringRecorder.OP_VELOCITY:
+      case SpringRecorder.OP_REST_SPEED_THRESHOLD:
+      case SpringRecorder.OP_REST_DISPLACEMENT_THRESHOLD:
+        record.mValue = mInput.readDouble();
+        break;
+    }
+    return record;
+  }
+
+  private int readVarInt() throws IOException {
+    int value = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = mInput.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  /**
+   * A single entry of the log.
+   */
+  private static class Record {
+    int mOp;
+    int mContext;
+    int mSpring;
+    double mValue;
+    double mSecondValue;
+  }
+}
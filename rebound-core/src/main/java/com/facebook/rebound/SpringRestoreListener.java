@@ -0,0 +1,28 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import java.util.List;
+
+/**
+ * SpringRestoreListener is notified once when a {@link BaseSpringSystem} restores a snapshot with
+ * {@link BaseSpringSystem#restore(java.nio.ByteBuffer)}, instead of every restored spring notifying
+ * its own listeners.
+ */
+public interface SpringRestoreListener {
+
+  /**
+   * called after every spring of the snapshot has its state back
+   * @param springSystem the BaseSpringSystem that was restored
+   * @param springs the restored springs in snapshot order
+   */
+  void onSpringsRestored(BaseSpringSystem springSystem, List<Spring> springs);
+}
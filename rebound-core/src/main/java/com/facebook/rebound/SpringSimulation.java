@@ -0,0 +1,28 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+/**
+ * A SpringSimulation integrates a group of springs jointly instead of letting the
+ * {@link BaseSpringSystem} advance each of them on its own. Springs created for a simulation are
+ * driven by it: activating one of them activates the simulation, which is then advanced once per
+ * loop until it reports that it has come to rest.
+ */
+public interface SpringSimulation {
+
+  /**
+   * advance the simulation and notify the listeners of the springs it drives
+   * @param deltaTime time since the last advance in seconds
+   * @return true if the simulation needs to be advanced again on the next loop, false once it is
+   *     at rest
+   */
+  boolean advance(double deltaTime);
+}
@@ -0,0 +1,345 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+/**
+ * Closed form solution of the damped harmonic oscillator that {@link Spring} integrates
+ * numerically. Given a config and an initial state it can evaluate the position and velocity of
+ * the spring at any time without stepping through the intermediate frames, which makes it useful
+ * for predicting when a spring will cross a value.
+ *
+ * A SpringSolution is mutable so a single instance can be reused through {@link #set}.
+ */
+public class SpringSolution {
+
+  // spacing of the samples used to bracket a crossing before refining it by bisection
+  private static final double MAX_SCAN_STEP_SEC = 0.004;
+  private static final int BISECTION_ITERATIONS = 48;
+
+  static final int NO_TENSION = 0;
+  static final int UNDERDAMPED = 1;
+  static final int CRITICALLY_DAMPED = 2;
+  static final int OVERDAMPED = 3;
+
+  private double mFriction;
+  private double mStartPosition;
+  private double mStartVelocity;
+  private double mEndValue;
+
+  private int mRegime;
+  // coefficients of the displacement from the end value, meaning depends on the regime
+  private double mDecay;
+  private double mFrequency;
+  private double mA;
+  private double mB;
+
+  /**
+   * Set the config and initial state to solve for.
+   * @param tension tension of the spring
+   * @param friction friction of the spring
+   * @param position position at time 0
+   * @param velocity velocity at time 0 in units per second
+   * @param endValue the end value the spring is pulled towards
+   * @return this SpringSolution for chaining
+   */
+  public SpringSolution set(
+      double tension,
+      double friction,
+      double position,
+      double velocity,
+      double endValue) {
+    mRegime = getRegime(tension, friction);
+    mDecay = getDecay(mRegime, tension, friction);
+    mFrequency = getFrequency(mRegime, tension, friction);
+    return setState(friction, position, velocity, endValue);
+  }
+
+  /**
+   * Set the config and initial state to solve for, reusing the constants cached by the config.
+   * @param springConfig config of the spring
+   * @param position position at time 0
+   * @param velocity velocity at time 0 in units per second
+   * @param endValue the end value the spring is pulled towards
+   * @return this SpringSolution for chaining
+   */
+  public SpringSolution set(
+      ImmutableSpringConfig springConfig,
+      double position,
+      double velocity,
+      double endValue) {
+    mRegime = springConfig.regime;
+    mDecay = springConfig.decay;
+    mFrequency = springConfig.frequency;
+    return setState(springConfig.friction, position, velocity, endValue);
+  }
+
+  private SpringSolution setState(
+      double friction,
+      double position,
+      double velocity,
+      double endValue) {
+    mFriction = friction;
+    mStartPosition = position;
+    mStartVelocity = velocity;
+    mEndValue = endValue;
+
+    double displacement = position - endValue;
+    switch (mRegime) {
+      case NO_TENSION:
+        break;
+      case CRITICALLY_DAMPED:
+        mA = displacement;
+        mB = velocity + mDecay * displacement;
+        break;
+      case UNDERDAMPED:
+        mA = displacement;
+        mB = (velocity + mDecay * displacement) / mFrequency;
+        break;
+      default:
+        mB = (velocity - mDecay * displacement) / (mFrequency - mDecay);
+        mA = displacement - mB;
+        break;
+    }
+    return this;
+  }
+
+  static int getRegime(double tension, double friction) {
+    if (tension == 0) {
+      return NO_TENSION;
+    }
+    double halfFriction = friction / 2.0;
+    double discriminant = halfFriction * halfFriction - tension;
+    if (Math.abs(discriminant) <= 1e-9 * tension) {
+      return CRITICALLY_DAMPED;
+    }
+    return discriminant < 0 ? UNDERDAMPED : OVERDAMPED;
+  }
+
+  /**
+   * get the decay rate of a regime, the slower of the two real exponents when overdamped
+   */
+  static double getDecay(int regime, double tension, double friction) {
+    switch (regime) {
+      case NO_TENSION:
+        return friction;
+      case OVERDAMPED:
+        return -friction / 2.0 + Math.sqrt(friction * friction / 4.0 - tension);
+      default:
+        return friction / 2.0;
+    }
+  }
+
+  /**
+   * get the angular frequency of a regime, the faster of the two real exponents when overdamped
+   */
+  static double getFrequency(int regime, double tension, double friction) {
+    switch (regime) {
+      case UNDERDAMPED:
+        return Math.sqrt(tension - friction * friction / 4.0);
+      case OVERDAMPED:
+        return -friction / 2.0 - Math.sqrt(friction * friction / 4.0 - tension);
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * Set the config and initial state from a spring.
+   * @param spring the spring to read the config and state from
+   * @return this SpringSolution for chaining
+   */
+  public SpringSolution set(Spring spring) {
+    return set(
+        spring.getDerivedSpringConfig(),
+        spring.getCurrentValue(),
+        spring.getVelocity(),
+        spring.getEndValue());
+  }
+
+  public double getEndValue() {
+    return mEndValue;
+  }
+
+  /**
+   * get the position of the spring
+   * @param time seconds since time 0
+   * @return the position at that time
+   */
+  public double getPosition(double time) {
+    switch (mRegime) {
+      case NO_TENSION:
+        if (mFriction == 0) {
+          return mStartPosition + mStartVelocity * time;
+        }
+        return mStartPosition + mStartVelocity / mFriction * (1 - Math.exp(-mFriction * time));
+      case UNDERDAMPED:
+        return mEndValue + Math.exp(-mDecay * time) *
+            (mA * Math.cos(mFrequency * time) + mB * Math.sin(mFrequency * time));
+      case CRITICALLY_DAMPED:
+        return mEndValue + (mA + mB * time) * Math.exp(-mDecay * time);
+      default:
+        return mEndValue + mA * Math.exp(mDecay * time) + mB * Math.exp(mFrequency * time);
+    }
+  }
+
+  /**
+   * get the velocity of the spring
+   * @param time seconds since time 0
+   * @return the velocity at that time in units per second
+   */
+  public double getVelocity(double time) {
+    switch (mRegime) {
+      case NO_TENSION:
+        return mStartVelocity * Math.exp(-mFriction * time);
+      case UNDERDAMPED: {
+        double cos = Math.cos(mFrequency * time);
+        double sin = Math.sin(mFrequency * time);
+        return Math.exp(-mDecay * time) * (
+            (mB * mFrequency - mDecay * mA) * cos - (mA * mFrequency + mDecay * mB) * sin);
+      }
+      case CRITICALLY_DAMPED:
+        return (mB - mDecay * (mA + mB * time)) * Math.exp(-mDecay * time);
+      default:
+        return mA * mDecay * Math.exp(mDecay * time) +
+            mB * mFrequency * Math.exp(mFrequency * time);
+    }
+  }
+
+  /**
+   * Find the first time the spring reaches the provided value.
+   * @param value the value to reach
+   * @param maxTime the latest time to search up to in seconds
+   * @return the time in seconds, 0 if the spring starts at the value, or -1 if the value is not
+   *     reached before maxTime
+   */
+  public double getTimeToReach(double value, double maxTime) {
+    double previousDelta = mStartPosition - value;
+    if (previousDelta == 0) {
+      return 0;
+    }
+    double step = MAX_SCAN_STEP_SEC;
+    if (mRegime == UNDERDAMPED) {
+      // sample at least eight times per oscillation so no crossing falls between two samples
+      step = Math.min(step, Math.PI / (4 * mFrequency));
+    }
+    double previousTime = 0;
+    while (previousTime < maxTime) {
+      double time = Math.min(previousTime + step, maxTime);
+      double delta = getPosition(time) - value;
+      if (delta == 0) {
+        return time;
+      }
+      if ((delta < 0) != (previousDelta < 0)) {
+        return bisect(value, previousTime, time);
+      }
+      previousDelta = delta;
+      previousTime = time;
+    }
+    return -1;
+  }
+
+  /**
+   * Find a time after which the spring stays within the rest thresholds. The time is solved from
+   * the envelope of the motion, so it is never earlier than the first time the spring would be
+   * found at rest and usually only slightly later.
+   * @param restSpeedThreshold speed below which the spring is at rest, in units per second
+   * @param restDisplacementThreshold distance from the end value below which the spring is at
+   *     rest, ignored when there is no tension
+   * @return the time in seconds, 0 if the spring starts at rest, or -1 if it never comes to rest
+   */
+  public double getTimeToRest(double restSpeedThreshold, double restDisplacementThreshold) {
+    double displacement = mStartPosition - mEndValue;
+    if (Math.abs(mStartVelocity) <= restSpeedThreshold &&
+        (mRegime == NO_TENSION || Math.abs(displacement) <= restDisplacementThreshold)) {
+      return 0;
+    }
+    switch (mRegime) {
+      case NO_TENSION:
+        return getTimeToDecay(Math.abs(mStartVelocity), 0, mFriction, restSpeedThreshold);
+      case UNDERDAMPED:
+        return latest(
+            getTimeToDecay(Math.hypot(mA, mB), 0, mDecay, restDisplacementThreshold),
+            getTimeToDecay(
+                Math.hypot(mB * mFrequency - mDecay * mA, mA * mFrequency + mDecay * mB),
+                0,
+                mDecay,
+                restSpeedThreshold));
+      case CRITICALLY_DAMPED:
+        return latest(
+            getTimeToDecay(Math.abs(mA), Math.abs(mB), mDecay, restDisplacementThreshold),
+            getTimeToDecay(
+                Math.abs(mB - mDecay * mA),
+                Math.abs(mDecay * mB),
+                mDecay,
+                restSpeedThreshold));
+      default:
+        // both exponents are negative and the slower one, held in mDecay, bounds the motion
+        return latest(
+            getTimeToDecay(Math.abs(mA) + Math.abs(mB), 0, -mDecay, restDisplacementThreshold),
+            getTimeToDecay(
+                Math.abs(mA * mDecay) + Math.abs(mB * mFrequency),
+                0,
+                -mDecay,
+                restSpeedThreshold));
+    }
+  }
+
+  /**
+   * find the time after which the envelope (a + b * t) * e^(-rate * t) stays below a threshold
+   * @return the time in seconds, or -1 if the envelope never gets below the threshold
+   */
+  private static double getTimeToDecay(double a, double b, double rate, double threshold) {
+    if (b == 0 && a <= threshold) {
+      return 0;
+    }
+    if (rate <= 0 || threshold <= 0) {
+      return -1;
+    }
+    if (b == 0) {
+      return Math.log(a / threshold) / rate;
+    }
+    // the envelope peaks at 1 / rate - a / b and only decreases after that
+    double low = Math.max(0, 1 / rate - a / b);
+    if ((a + b * low) * Math.exp(-rate * low) <= threshold) {
+      return 0;
+    }
+    double high = low + 1 / rate;
+    while ((a + b * high) * Math.exp(-rate * high) > threshold) {
+      high += high - low;
+    }
+    for (int i = 0; i < BISECTION_ITERATIONS; i++) {
+      double mid = (low + high) / 2;
+      if ((a + b * mid) * Math.exp(-rate * mid) > threshold) {
+        low = mid;
+      } else {
+        high = mid;
+      }
+    }
+    return high;
+  }
+
+  private static double latest(double first, double second) {
+    return first < 0 || second < 0 ? -1 : Math.max(first, second);
+  }
+
+  private double bisect(double value, double low, double high) {
+    boolean lowIsBelow = getPosition(low) < value;
+    for (int i = 0; i < BISECTION_ITERATIONS; i++) {
+      double mid = (low + high) / 2;
+      if ((getPosition(mid) < value) == lowIsBelow) {
+        low = mid;
+      } else {
+        high = mid;
+      }
+    }
+    return high;
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SpringStartSequence describes a choreography of delayed spring starts made of steps. Each step
+ * is a parallel group of springs started together, and each step starts a given delay after the
+ * previous one. The sequence is handed to
+ * {@link BaseSpringSystem#scheduleEndValue(Spring, double, double)} when scheduled, so staggering
+ * hundreds of springs costs a single timer wheel entry each.
+ */
+public class SpringStartSequence {
+
+  private final List<Spring> mSprings = new ArrayList<Spring>();
+  private final List<Double> mEndValues = new ArrayList<Double>();
+  private final List<Double> mStartTimes = new ArrayList<Double>();
+  private double mCurrentStepTime;
+
+  /**
+   * Create a sequence that starts each spring staggerMillis after the previous one.
+   * @param springs the springs to start in order
+   * @param endValue the end value to set on every spring
+   * @param staggerMillis delay between two consecutive springs in milliseconds
+   * @return the sequence
+   */
+  public static SpringStartSequence staggered(
+      List<Spring> springs,
+      double endValue,
+      double staggerMillis) {
+    SpringStartSequence sequence = new SpringStartSequence();
+    for (int i = 0; i < springs.size(); i++) {
+      sequence.then(springs.get(i), endValue, i == 0 ? 0 : staggerMillis);
+    }
+    return sequence;
+  }
+
+  /**
+   * Add a new step to the sequence starting delayMillis after the previous step.
+   * @param spring the spring started by the step
+   * @param endValue the end value to set on the spring
+   * @param delayMillis delay after the start of the previous step in milliseconds
+   * @return this SpringStartSequence for chaining
+   */
+  public SpringStartSequence then(Spring spring, double endValue, double delayMillis) {
+    if (delayMillis < 0) {
+      throw new IllegalArgumentException("delayMillis must not be negative");
+    }
+    if (!mSprings.isEmpty()) {
+      mCurrentStepTime += delayMillis;
+    } else {
+      mCurrentStepTime = delayMillis;
+    }
+    return add(spring, endValue);
+  }
+
+  /**
+   * Add a spring to the current step so it starts in parallel with the other springs of the step.
+   * @param spring the spring to start
+   * @param endValue the end value to set on the spring
+   * @return this SpringStartSequence for chaining
+   */
+  public SpringStartSequence with(Spring spring, double endValue) {
+    return add(spring, endValue);
+  }
+
+  private SpringStartSequence add(Spring spring, double endValue) {
+    if (spring == null) {
+      throw new IllegalArgumentException("spring is required");
+    }
+    mSprings.add(spring);
+    mEndValues.add(endValue);
+    mStartTimes.add(mCurrentStepTime);
+    return this;
+  }
+
+  /**
+   * get the time from the start of the sequence to its last step
+   * @return the duration in milliseconds
+   */
+  public double getDuration() {
+    return mCurrentStepTime;
+  }
+
+  /**
+   * Schedule every start of the sequence on the provided system.
+   * @param springSystem the system owning the springs
+   * @param delayMillis delay before the first step in milliseconds
+   * @return handles for each start, in the order they were added
+   */
+  public List<ScheduledSpringStart> schedule(BaseSpringSystem springSystem, double delayMillis) {
+    List<ScheduledSpringStart> starts = new ArrayList<ScheduledSpringStart>(mSprings.size());
+    for (int i = 0; i < mSprings.size(); i++) {
+      starts.add(springSystem.scheduleEndValue(
+          mSprings.get(i),
+          mEndValues.get(i),
+          delayMillis + mStartTimes.get(i)));
+    }
+    return starts;
+  }
+}
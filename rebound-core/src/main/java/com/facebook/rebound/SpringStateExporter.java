@@ -0,0 +1,194 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * SpringStateExporter publishes the state of the active springs of a {@link BaseSpringSystem}
+ * to a memory-mapped file once per loop, so an external process such as
+ * {@link SpringStateReader} can watch springs move live. Writing a frame is a handful of stores
+ * into mapped memory, with no system call, allocation or formatting on the frame thread.
+ *
+ * The file holds a header followed by a ring of frame slots. Frame n is written to slot
+ * n % slotCount, and each slot is guarded by a seqlock: its sequence number is odd while the slot
+ * is being written and even once it is complete. A reader copies a slot and accepts it only if
+ * the sequence was even and unchanged across the copy, otherwise it retries, so the writer never
+ * waits for readers.
+ *
+ * The seqlock needs the sequence and data accesses to mapped memory to stay ordered on both
+ * sides, which plain buffer accesses do not guarantee: the JIT or the CPU, notably on ARM, may
+ * publish the even sequence before the data, or load the data after re-checking the sequence.
+ * Both sides therefore separate the sequence from the data with a full fence. The Java memory
+ * model says nothing about memory shared with another process, so the format relies on the
+ * runtime: the fence is a volatile store and load, which HotSpot and ART compile to barriers that
+ * order the plain accesses on either side of them.
+ *
+ * <pre>
+ * header, {@link #HEADER_SIZE} bytes
+ *   int magic, int version, int slotCount, int springsPerFrame, long latestFrame
+ * slot, {@link #SLOT_HEADER_SIZE} + springsPerFrame * {@link #ENTRY_SIZE} bytes
+ *   long sequence, long frame, double timeMillis since the exporter was created,
+ *   int springCount, int droppedSpringCount
+ *   springCount times: int springId, double position, double velocity, double endValue
+ * </pre>
+ */
+public class SpringStateExporter implements SpringSystemListener, Closeable {
+
+  static final int MAGIC = 0x52424558; // RBEX
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 32;
+  static final int SLOT_HEADER_SIZE = 32;
+  static final int ENTRY_SIZE = 4 + 3 * 8;
+
+  static final int HEADER_SLOT_COUNT = 8;
+  static final int HEADER_SPRINGS_PER_FRAME = 12;
+  static final int HEADER_LATEST_FRAME = 16;
+  static final int SLOT_SEQUENCE = 0;
+  static final int SLOT_FRAME = 8;
+  static final int SLOT_TIME = 16;
+  static final int SLOT_SPRING_COUNT = 24;
+  static final int SLOT_DROPPED_SPRING_COUNT = 28;
+
+  private final BaseSpringSystem mSpringSystem;
+  private final RandomAccessFile mFile;
+  private final MappedByteBuffer mBuffer;
+  private final int mSlotCount;
+  private final int mSpringsPerFrame;
+  private final int mSlotSize;
+  private final long mStartNanos = System.nanoTime();
+  private long mFrame;
+
+  // written and read by fullFence only
+  private static volatile int sFence;
+
+  /**
+   * Create an exporter and start publishing the loops of a system.
+   * @param springSystem the system to export
+   * @param file the file to map, created or truncated to the exported size
+   * @param slotCount the number of frames kept in the ring
+   * @param springsPerFrame the largest number of springs written per frame, further springs are
+   *                        counted as dropped
+   * @throws IOException if the file cannot be mapped
+   */
+  public SpringStateExporter(
+      BaseSpringSystem springSystem,
+      File file,
+      int slotCount,
+      int springsPerFrame) throws IOException {
+    if (springSystem == null) {
+      throw new IllegalArgumentException("springSystem is required");
+    }
+    if (file == null) {
+      throw new IllegalArgumentException("file is required");
+    }
+    if (slotCount < 1 || springsPerFrame < 1) {
+      throw new IllegalArgumentException("slotCount and springsPerFrame must be positive");
+    }
+    mSpringSystem = springSystem;
+    mSlotCount = slotCount;
+    mSpringsPerFrame = springsPerFrame;
+    mSlotSize = SLOT_HEADER_SIZE + springsPerFrame * ENTRY_SIZE;
+    long size = HEADER_SIZE + (long) slotCount * mSlotSize;
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("exported file would exceed 2GB");
+    }
+    mFile = new RandomAccessFile(file, "rw");
+    try {
+      mFile.setLength(0);
+      mFile.setLength(size);
+      mBuffer = mFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    } catch (IOException e) {
+      mFile.close();
+      throw e;
+    }
+    mBuffer.putLong(HEADER_LATEST_FRAME, -1);
+    mBuffer.putInt(HEADER_SLOT_COUNT, slotCount);
+    mBuffer.putInt(HEADER_SPRINGS_PER_FRAME, springsPerFrame);
+    mBuffer.putInt(4, VERSION);
+    // the magic goes last so a reader never sees a valid magic with an incomplete header
+    fullFence();
+    mBuffer.putInt(0, MAGIC);
+    springSystem.addListener(this);
+  }
+
+  /**
+   * get the number of frames published so far
+   * @return the number of frames
+   */
+  public long getFrameCount() {
+    return mFrame;
+  }
+
+  @Override
+  public void onBeforeIntegrate(BaseSpringSystem springSystem) {
+  }
+
+  @Override
+  public void onAfterIntegrate(BaseSpringSystem springSystem) {
+    int slot = HEADER_SIZE + (int) (mFrame % mSlotCount) * mSlotSize;
+    long sequence = mBuffer.getLong(slot + SLOT_SEQUENCE);
+    mBuffer.putLong(slot + SLOT_SEQUENCE, sequence + 1);
+    fullFence();
+
+    int count = 0;
+    int dropped = 0;
+    int entry = slot + SLOT_HEADER_SIZE;
+    for (Spring spring : springSystem.getActiveSprings()) {
+      if (count == mSpringsPerFrame) {
+        dropped++;
+        continue;
+      }
+      mBuffer.putInt(entry, spring.getNumericId());
+      mBuffer.putDouble(entry + 4, spring.getCurrentValue());
+      mBuffer.putDouble(entry + 12, spring.getVelocity());
+      mBuffer.putDouble(entry + 20, spring.getEndValue());
+      entry += ENTRY_SIZE;
+      count++;
+    }
+    mBuffer.putLong(slot + SLOT_FRAME, mFrame);
+    mBuffer.putDouble(slot + SLOT_TIME, (System.nanoTime() - mStartNanos) / 1000000.0);
+    mBuffer.putInt(slot + SLOT_SPRING_COUNT, count);
+    mBuffer.putInt(slot + SLOT_DROPPED_SPRING_COUNT, dropped);
+
+    fullFence();
+    mBuffer.putLong(slot + SLOT_SEQUENCE, sequence + 2);
+    mBuffer.putLong(HEADER_LATEST_FRAME, mFrame);
+    mFrame++;
+  }
+
+  /**
+   * Keep the mapped memory accesses before the call ordered before the ones after it. On ARMv8
+   * this is a store release followed by a load acquire, which together order plain accesses on
+   * either side.
+   * @return the value of the fence field, callers ignore it
+   */
+  static int fullFence() {
+    sFence = 0;
+    return sFence;
+  }
+
+  /**
+   * Stop exporting and release the file. Readers keep seeing the last published frame.
+   * @throws IOException if the file cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    mSpringSystem.removeListener(this);
+    mBuffer.force();
+    mFile.close();
+  }
+}
@@ -0,0 +1,297 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * SpringStateReader samples the frames published by a {@link SpringStateExporter} from another
+ * process. Reads never block the exporting process: a slot that is being rewritten while it is
+ * copied is simply read again.
+ *
+ * It can also be run from the command line to watch a running app:
+ * <pre>
+ *   java -cp rebound-core.jar com.facebook.rebound.SpringStateReader springs.bin [--plot]
+ *       [--interval millis] [--frames count]
+ * </pre>
+ */
+public class SpringStateReader implements Closeable {
+
+  private static final int MAX_READ_ATTEMPTS = 8;
+  private static final int PLOT_WIDTH = 60;
+
+  /**
+   * The state of the springs published for one loop. A Frame is reused across reads so sampling
+   * does not allocate.
+   */
+  public static class Frame {
+    private long mFrame = -1;
+    private double mTimeMillis;
+    private int mSpringCount;
+    private int mDroppedSpringCount;
+    private final int[] mSpringIds;
+    private final double[] mPositions;
+    private final double[] mVelocities;
+    private final double[] mEndValues;
+
+    Frame(int capacity) {
+      mSpringIds = new int[capacity];
+      mPositions = new double[capacity];
+      mVelocities = new double[capacity];
+      mEndValues = new double[capacity];
+    }
+
+    public long getFrame() {
+      return mFrame;
+    }
+
+    public double getTimeMillis() {
+      return mTimeMillis;
+    }
+
+    public int getSpringCount() {
+      return mSpringCount;
+    }
+
+    public int getDroppedSpringCount() {
+      return mDroppedSpringCount;
+    }
+
+    public int getSpringId(int i) {
+      return mSpringIds[i];
+    }
+
+    public double getPosition(int i) {
+      return mPositions[i];
+    }
+
+    public double getVelocity(int i) {
+      return mVelocities[i];
+    }
+
+    public double getEndValue(int i) {
+      return mEndValues[i];
+    }
+  }
+
+  private final RandomAccessFile mFile;
+  private final MappedByteBuffer mBuffer;
+  private final int mSlotCount;
+  private final int mSpringsPerFrame;
+  private final int mSlotSize;
+
+  /**
+   * Map a file written by a {@link SpringStateExporter}.
+   * @param file the exported file
+   * @throws IOException if the file cannot be mapped or was not written by an exporter
+   */
+  public SpringStateReader(File file) throws IOException {
+    if (file == null) {
+      throw new IllegalArgumentException("file is required");
+    }
+    mFile = new RandomAccessFile(file, "r");
+    try {
+      mBuffer = mFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, mFile.length());
+      if (mBuffer.capacity() < SpringStateExporter.HEADER_SIZE ||
+          mBuffer.getInt(0) != SpringStateExporter.MAGIC) {
+        throw new IOException("not a spring state export");
+      }
+      // pairs with the fence the exporter puts before the magic
+      SpringStateExporter.fullFence();
+      if (mBuffer.getInt(4) != SpringStateExporter.VERSION) {
+        throw new IOException("unsupported spring state export version " + mBuffer.getInt(4));
+      }
+      int slotCount = mBuffer.getInt(SpringStateExporter.HEADER_SLOT_COUNT);
+      int springsPerFrame = mBuffer.getInt(SpringStateExporter.HEADER_SPRINGS_PER_FRAME);
+      // a corrupt header must not make reads index outside of the mapped file
+      long slotSize = SpringStateExporter.SLOT_HEADER_SIZE +
+          (long) springsPerFrame * SpringStateExporter.ENTRY_SIZE;
+      if (slotCount <= 0 ||
+          springsPerFrame <= 0 ||
+          slotCount > (mBuffer.capacity() - SpringStateExporter.HEADER_SIZE) / slotSize) {
+        throw new IOException("not a spring state export");
+      }
+      mSlotCount = slotCount;
+      mSpringsPerFrame = springsPerFrame;
+      mSlotSize = (int) slotSize;
+    } catch (IOException e) {
+      mFile.close();
+      throw e;
+    }
+  }
+
+  /**
+   * create a frame large enough for any frame of this export
+   * @return a new Frame
+   */
+  public Frame createFrame() {
+    return new Frame(mSpringsPerFrame);
+  }
+
+  /**
+   * get the most recent frame published by the exporter
+   * @return the frame number or -1 if nothing was published yet
+   */
+  public long getLatestFrame() {
+    return mBuffer.getLong(SpringStateExporter.HEADER_LATEST_FRAME);
+  }
+
+  /**
+   * Read the most recent frame.
+   * @param out the frame to read into
+   * @return false if nothing was published yet or the frame could not be read consistently
+   */
+  public boolean readLatest(Frame out) {
+    long latest = getLatestFrame();
+    return latest >= 0 && read(latest, out);
+  }
+
+  /**
+   * Read a frame if it is still in the ring.
+   * @param frame the frame number
+   * @param out the frame to read into
+   * @return false if the frame has been overwritten or could not be read consistently
+   */
+  public boolean read(long frame, Frame out) {
+    int slot = SpringStateExporter.HEADER_SIZE + (int) (frame % mSlotCount) * mSlotSize;
+    for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+      long sequence = mBuffer.getLong(slot + SpringStateExporter.SLOT_SEQUENCE);
+      if ((sequence & 1) != 0) {
+        continue;
+      }
+      SpringStateExporter.fullFence();
+      long slotFrame = mBuffer.getLong(slot + SpringStateExporter.SLOT_FRAME);
+      int count = mBuffer.getInt(slot + SpringStateExporter.SLOT_SPRING_COUNT);
+      if (count < 0 || count > mSpringsPerFrame) {
+        continue;
+      }
+      out.mTimeMillis = mBuffer.getDouble(slot + SpringStateExporter.SLOT_TIME);
+      out.mDroppedSpringCount =
+          mBuffer.getInt(slot + SpringStateExporter.SLOT_DROPPED_SPRING_COUNT);
+      int entry = slot + SpringStateExporter.SLOT_HEADER_SIZE;
+      for (int i = 0; i < count; i++) {
+        out.mSpringIds[i] = mBuffer.getInt(entry);
+        out.mPositions[i] = mBuffer.getDouble(entry + 4);
+        out.mVelocities[i] = mBuffer.getDouble(entry + 12);
+        out.mEndValues[i] = mBuffer.getDouble(entry + 20);
+        entry += SpringStateExporter.ENTRY_SIZE;
+      }
+      SpringStateExporter.fullFence();
+      if (mBuffer.getLong(slot + SpringStateExporter.SLOT_SEQUENCE) != sequence) {
+        continue;
+      }
+      if (slotFrame != frame) {
+        return false;
+      }
+      out.mFrame = slotFrame;
+      out.mSpringCount = count;
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public void close() throws IOException {
+    mFile.close();
+  }
+
+  /**
+   * Print a frame, either as a table of values or as one bar per spring showing the position and
+   * the end value relative to the range of the frame.
+   * @param frame the frame to print
+   * @param plot true to draw bars instead of printing values
+   * @param out the stream to print to
+   */
+  public static void print(Frame frame, boolean plot, PrintStream out) {
+    out.printf(
+        "frame %d  %.1fms  %d springs%s%n",
+        frame.getFrame(),
+        frame.getTimeMillis(),
+        frame.getSpringCount(),
+        frame.getDroppedSpringCount() > 0 ?
+            "  (" + frame.getDroppedSpringCount() + " dropped)" : "");
+    if (!plot) {
+      for (int i = 0; i < frame.getSpringCount(); i++) {
+        out.printf(
+            "  spring:%-6d position %12.4f  velocity %12.4f  end %12.4f%n",
+            frame.getSpringId(i),
+            frame.getPosition(i),
+            frame.getVelocity(i),
+            frame.getEndValue(i));
+      }
+      return;
+    }
+    double min = Double.MAX_VALUE;
+    double max = -Double.MAX_VALUE;
+    for (int i = 0; i < frame.getSpringCount(); i++) {
+      min = Math.min(min, Math.min(frame.getPosition(i), frame.getEndValue(i)));
+      max = Math.max(max, Math.max(frame.getPosition(i), frame.getEndValue(i)));
+    }
+    double range = max > min ? max - min : 1;
+    char[] bar = new char[PLOT_WIDTH];
+    for (int i = 0; i < frame.getSpringCount(); i++) {
+      Arrays.fill(bar, ' ');
+      bar[(int) ((frame.getEndValue(i) - min) / range * (PLOT_WIDTH - 1))] = '|';
+      bar[(int) ((frame.getPosition(i) - min) / range * (PLOT_WIDTH - 1))] = '*';
+      out.printf("  spring:%-6d [%s]%n", frame.getSpringId(i), new String(bar));
+    }
+  }
+
+  /**
+   * Watch an exported file and print every new frame.
+   * @param args the file followed by the optional --plot, --interval millis and --frames count
+   * @throws Exception if the file cannot be read
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println(
+          "usage: SpringStateReader <file> [--plot] [--interval millis] [--frames count]");
+      System.exit(1);
+    }
+    boolean plot = false;
+    long intervalMillis = 16;
+    long maxFrames = Long.MAX_VALUE;
+    for (int i = 1; i < args.length; i++) {
+      if ("--plot".equals(args[i])) {
+        plot = true;
+      } else if ("--interval".equals(args[i]) && i + 1 < args.length) {
+        intervalMillis = Long.parseLong(args[++i]);
+      } else if ("--frames".equals(args[i]) && i + 1 < args.length) {
+        maxFrames = Long.parseLong(args[++i]);
+      } else {
+        throw new IllegalArgumentException("unknown argument " + args[i]);
+      }
+    }
+    SpringStateReader reader = new SpringStateReader(new File(args[0]));
+    try {
+      Frame frame = reader.createFrame();
+      long lastFrame = -1;
+      long printed = 0;
+      while (printed < maxFrames) {
+        if (reader.getLatestFrame() != lastFrame && reader.readLatest(frame)) {
+          lastFrame = frame.getFrame();
+          print(frame, plot, System.out);
+          printed++;
+        }
+        Thread.sleep(intervalMillis);
+      }
+    } finally {
+      reader.close();
+    }
+  }
+}
@@ -0,0 +1,447 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * SpringStressTool runs a synthetic spring workload on a {@link BaseSpringSystem} to find out how
+ * many concurrent springs a machine can sustain within a frame budget.
+ *
+ * Every spring is given a config from the config mix in turn and a random end value, then each
+ * frame every spring is retargeted with a probability that gives the requested retarget rate.
+ * A listener on every spring burns the requested listener cost on each update. Frames are paced
+ * on the wall clock, sleeping and then spinning to each frame deadline and passing the real
+ * elapsed time to the loop, unless pacing is turned off to run frames back to back.
+ *
+ * The time spent in {@link BaseSpringSystem#loop(double)} is measured for every frame, and the
+ * bytes allocated by the running thread are read from the JVM when it supports it.
+ *
+ * <pre>
+ *   java -cp rebound-core.jar com.facebook.rebound.SpringStressTool --springs 2000 --frames 600
+ * </pre>
+ */
+public class SpringStressTool {
+
+  private static final long NANOS_PER_MILLI = 1000000L;
+  // sleep until this close to a frame deadline and spin the rest of the way
+  private static final long SPIN_NANOS = 2 * NANOS_PER_MILLI;
+  private static final double FIT_PERCENTILE = 95;
+  private static final int MAX_SEARCH_SPRINGS = 1 << 20;
+  private static final int SEARCH_FRAMES = 120;
+  private static final int SEARCH_WARMUP_FRAMES = 60;
+
+  /**
+   * The workload to run.
+   */
+  public static class Workload {
+    public int springCount = 500;
+    public SpringConfig[] configs = {
+        SpringConfig.fromOrigamiTensionAndFriction(40, 7),
+        SpringConfig.fromOrigamiTensionAndFriction(90, 12),
+        SpringConfig.fromOrigamiTensionAndFriction(230, 22),
+    };
+    /** end value changes per spring per second */
+    public double retargetsPerSecond = 1;
+    /** time burnt by the listener of a spring on every update */
+    public double listenerCostMicros = 0;
+    public double frameMillis = SynchronousLooper.SIXTY_FPS;
+    /** frames that take longer to loop are counted as over budget */
+    public double budgetMillis = SynchronousLooper.SIXTY_FPS;
+    public int frames = 600;
+    public int warmupFrames = 120;
+    public boolean paced = true;
+    public long seed = 0;
+  }
+
+  /**
+   * The measurements of a run.
+   */
+  public static class Result {
+    private final int mSpringCount;
+    private final double mBudgetMillis;
+    private final Histogram mFrameNanos = new Histogram();
+    private long mFramesOverBudget;
+    private long mAllocatedBytes = -1;
+    private long mElapsedNanos;
+
+    Result(int springCount, double budgetMillis) {
+      mSpringCount = springCount;
+      mBudgetMillis = budgetMillis;
+    }
+
+    public int getSpringCount() {
+      return mSpringCount;
+    }
+
+    /**
+     * get the time spent looping the spring system in each measured frame
+     * @return the frame times in nanoseconds
+     */
+    public Histogram getFrameNanos() {
+      return mFrameNanos;
+    }
+
+    /**
+     * get the bytes allocated by the thread running the measured frames
+     * @return the allocated bytes, or -1 if the JVM does not report allocations
+     */
+    public long getAllocatedBytes() {
+      return mAllocatedBytes;
+    }
+
+    /**
+     * get the allocation rate over the measured frames
+     * @return the bytes allocated per second of wall clock time, or -1 if unknown
+     */
+    public double getAllocatedBytesPerSecond() {
+      if (mAllocatedBytes < 0 || mElapsedNanos == 0) {
+        return -1;
+      }
+      return mAllocatedBytes * 1e9 / mElapsedNanos;
+    }
+
+    /**
+     * get the frame time at a percentile
+     * @param percentile the percentage between 0 and 100
+     * @return the frame time in milliseconds
+     */
+    public double getFrameMillis(double percentile) {
+      return mFrameNanos.getValueAtPercentile(percentile) / (double) NANOS_PER_MILLI;
+    }
+
+    public double getBudgetMillis() {
+      return mBudgetMillis;
+    }
+
+    /**
+     * count the measured frames that took longer than the budget of the workload
+     * @return the number of frames over budget
+     */
+    public long getFramesOverBudget() {
+      return mFramesOverBudget;
+    }
+  }
+
+  /**
+   * Burns a fixed amount of time on every update of the spring it listens to.
+   */
+  private static class CostlyListener extends SimpleSpringListener {
+    private final long mCostNanos;
+
+    CostlyListener(long costNanos) {
+      mCostNanos = costNanos;
+    }
+
+    @Override
+    public void onSpringUpdate(Spring spring) {
+      long end = System.nanoTime() + mCostNanos;
+      while (end - System.nanoTime() > 0) {
+        // busy wait to model listener work
+      }
+    }
+  }
+
+  private static Object sThreadBean;
+  private static Method sThreadAllocatedBytes;
+
+  static {
+    // com.sun.management.ThreadMXBean is looked up reflectively as it does not exist on Android
+    try {
+      Object threadBean = Class.forName("java.lang.management.ManagementFactory")
+          .getMethod("getThreadMXBean")
+          .invoke(null);
+      Class<?> beanClass = Class.forName("com.sun.management.ThreadMXBean");
+      if (beanClass.isInstance(threadBean)) {
+        Method method = beanClass.getMethod("getThreadAllocatedBytes", long.class);
+        method.invoke(threadBean, Thread.currentThread().getId());
+        sThreadBean = threadBean;
+        sThreadAllocatedBytes = method;
+      }
+    } catch (Exception e) {
+      sThreadBean = null;
+      sThreadAllocatedBytes = null;
+    }
+  }
+
+  /**
+   * run a workload and measure its frames
+   * @param workload the workload to run
+   * @return the measurements
+   */
+  public static Result run(Workload workload) {
+    if (workload == null) {
+      throw new IllegalArgumentException("workload is required");
+    }
+    if (workload.configs == null || workload.configs.length == 0) {
+      throw new IllegalArgumentException("configs are required");
+    }
+    if (workload.frameMillis <= 0) {
+      throw new IllegalArgumentException("frameMillis must be positive");
+    }
+    BaseSpringSystem springSystem = new BaseSpringSystem(new SteppingLooper());
+    Random random = new Random(workload.seed);
+    SpringListener listener = workload.listenerCostMicros > 0 ?
+        new CostlyListener((long) (workload.listenerCostMicros * 1000)) :
+        null;
+    Spring[] springs = new Spring[workload.springCount];
+    for (int i = 0; i < springs.length; i++) {
+      springs[i] = springSystem.createSpring()
+          .setSpringConfig(workload.configs[i % workload.configs.length])
+          .setEndValue(random.nextDouble());
+      if (listener != null) {
+        springs[i].addListener(listener);
+      }
+    }
+
+    Result result = new Result(springs.length, workload.budgetMillis);
+    long frameNanos = (long) (workload.frameMillis * NANOS_PER_MILLI);
+    long budgetNanos = (long) (workload.budgetMillis * NANOS_PER_MILLI);
+    double retargetChance = workload.retargetsPerSecond * workload.frameMillis / 1000;
+    long allocatedBefore = 0;
+    long measureStart = 0;
+    long deadline = System.nanoTime();
+    long previousFrame = deadline - frameNanos;
+    for (int frame = 0; frame < workload.warmupFrames + workload.frames; frame++) {
+      if (frame == workload.warmupFrames) {
+        allocatedBefore = getAllocatedBytes();
+        measureStart = System.nanoTime();
+      }
+      for (int i = 0; i < springs.length; i++) {
+        if (random.nextDouble() < retargetChance) {
+          springs[i].setEndValue(random.nextDouble());
+        }
+      }
+      double elapsedMillis = workload.frameMillis;
+      if (workload.paced) {
+        deadline += frameNanos;
+        long now = waitUntil(deadline);
+        if (now - deadline > frameNanos) {
+          // more than a frame late, skip the missed deadlines like a display would
+          deadline = now;
+        }
+        elapsedMillis = (now - previousFrame) / (double) NANOS_PER_MILLI;
+        previousFrame = now;
+      }
+      long start = System.nanoTime();
+      springSystem.loop(elapsedMillis);
+      long loopNanos = System.nanoTime() - start;
+      if (frame >= workload.warmupFrames) {
+        result.mFrameNanos.record(loopNanos);
+        if (loopNanos > budgetNanos) {
+          result.mFramesOverBudget++;
+        }
+      }
+    }
+    result.mElapsedNanos = System.nanoTime() - measureStart;
+    long allocatedAfter = getAllocatedBytes();
+    if (allocatedBefore >= 0 && allocatedAfter >= 0) {
+      result.mAllocatedBytes = allocatedAfter - allocatedBefore;
+    }
+    return result;
+  }
+
+  /**
+   * Find the largest number of springs whose frame time stays within the budget of a workload at
+   * the 95th percentile, by doubling the spring count until the budget is exceeded and then
+   * bisecting. Each trial runs a shorter version of the workload with frames back to back.
+   * @param workload the workload to scale, its spring count is ignored
+   * @return the largest spring count that fits, 0 if even a single spring does not
+   */
+  public static int findMaxSpringCount(Workload workload) {
+    Workload trial = copy(workload);
+    trial.paced = false;
+    trial.frames = Math.min(workload.frames, SEARCH_FRAMES);
+    trial.warmupFrames = Math.min(workload.warmupFrames, SEARCH_WARMUP_FRAMES);
+    int fits = 0;
+    int fails = 0;
+    for (int count = 1; count <= MAX_SEARCH_SPRINGS; count *= 2) {
+      if (!fits(trial, count)) {
+        fails = count;
+        break;
+      }
+      fits = count;
+    }
+    if (fails == 0) {
+      return fits;
+    }
+    // stop once the answer is known to within 2%
+    while (fails - fits > Math.max(1, fits / 50)) {
+      int count = fits + (fails - fits) / 2;
+      if (fits(trial, count)) {
+        fits = count;
+      } else {
+        fails = count;
+      }
+    }
+    return fits;
+  }
+
+  /**
+   * print the measurements of a run
+   * @param result the measurements
+   * @param out where to print
+   */
+  public static void print(Result result, PrintStream out) {
+    Histogram frames = result.getFrameNanos();
+    out.println(String.format(
+        "springs=%d frames=%d",
+        result.getSpringCount(),
+        frames.getCount()));
+    out.println(String.format(
+        "frame time p50=%.3fms p95=%.3fms p99=%.3fms max=%.3fms",
+        result.getFrameMillis(50),
+        result.getFrameMillis(95),
+        result.getFrameMillis(99),
+        frames.getMax() / (double) NANOS_PER_MILLI));
+    long overBudget = result.getFramesOverBudget();
+    out.println(String.format(
+        "over %.3fms budget: %d frames (%.1f%%)",
+        result.getBudgetMillis(),
+        overBudget,
+        frames.getCount() == 0 ? 0 : overBudget * 100.0 / frames.getCount()));
+    if (result.getAllocatedBytes() < 0) {
+      out.println("allocation: not reported by this JVM");
+    } else {
+      out.println(String.format(
+          "allocation: %d bytes/frame %.0f bytes/s",
+          frames.getCount() == 0 ? 0 : result.getAllocatedBytes() / frames.getCount(),
+          result.getAllocatedBytesPerSecond()));
+    }
+  }
+
+  public static void main(String[] args) {
+    Workload workload = new Workload();
+    double budgetMillis = -1;
+    boolean search = true;
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if ("--unpaced".equals(arg)) {
+        workload.paced = false;
+      } else if ("--no-search".equals(arg)) {
+        search = false;
+      } else if (i + 1 >= args.length) {
+        usage("unknown argument " + arg);
+      } else if ("--springs".equals(arg)) {
+        workload.springCount = Integer.parseInt(args[++i]);
+      } else if ("--configs".equals(arg)) {
+        workload.configs = parseConfigs(args[++i]);
+      } else if ("--retarget-rate".equals(arg)) {
+        workload.retargetsPerSecond = Double.parseDouble(args[++i]);
+      } else if ("--listener-cost".equals(arg)) {
+        workload.listenerCostMicros = Double.parseDouble(args[++i]);
+      } else if ("--frame".equals(arg)) {
+        workload.frameMillis = Double.parseDouble(args[++i]);
+      } else if ("--frames".equals(arg)) {
+        workload.frames = Integer.parseInt(args[++i]);
+      } else if ("--warmup".equals(arg)) {
+        workload.warmupFrames = Integer.parseInt(args[++i]);
+      } else if ("--budget".equals(arg)) {
+        budgetMillis = Double.parseDouble(args[++i]);
+      } else if ("--seed".equals(arg)) {
+        workload.seed = Long.parseLong(args[++i]);
+      } else {
+        usage("unknown argument " + arg);
+      }
+    }
+    workload.budgetMillis = budgetMillis < 0 ? workload.frameMillis : budgetMillis;
+    print(run(workload), System.out);
+    if (search) {
+      System.out.println(String.format(
+          "max springs within %.3fms at p%.0f: %d",
+          workload.budgetMillis,
+          FIT_PERCENTILE,
+          findMaxSpringCount(workload)));
+    }
+  }
+
+  /**
+   * parse a config mix
+   * @param configs comma separated origami tension:friction pairs, such as "40:7,230:22"
+   * @return the configs
+   */
+  static SpringConfig[] parseConfigs(String configs) {
+    List<SpringConfig> parsed = new ArrayList<SpringConfig>();
+    for (String pair : configs.split(",")) {
+      String[] values = pair.trim().split(":");
+      if (values.length != 2) {
+        throw new IllegalArgumentException("config must be tension:friction, got " + pair);
+      }
+      parsed.add(SpringConfig.fromOrigamiTensionAndFriction(
+          Double.parseDouble(values[0]),
+          Double.parseDouble(values[1])));
+    }
+    return parsed.toArray(new SpringConfig[parsed.size()]);
+  }
+
+  private static boolean fits(Workload trial, int springCount) {
+    trial.springCount = springCount;
+    return run(trial).getFrameMillis(FIT_PERCENTILE) <= trial.budgetMillis;
+  }
+
+  private static Workload copy(Workload workload) {
+    Workload copy = new Workload();
+    copy.springCount = workload.springCount;
+    copy.configs = workload.configs;
+    copy.retargetsPerSecond = workload.retargetsPerSecond;
+    copy.listenerCostMicros = workload.listenerCostMicros;
+    copy.frameMillis = workload.frameMillis;
+    copy.budgetMillis = workload.budgetMillis;
+    copy.frames = workload.frames;
+    copy.warmupFrames = workload.warmupFrames;
+    copy.paced = workload.paced;
+    copy.seed = workload.seed;
+    return copy;
+  }
+
+  private static long waitUntil(long deadline) {
+    long now = System.nanoTime();
+    while (deadline - now > SPIN_NANOS) {
+      try {
+        Thread.sleep((deadline - now - SPIN_NANOS) / NANOS_PER_MILLI);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return System.nanoTime();
+      }
+      now = System.nanoTime();
+    }
+    while (deadline - now > 0) {
+      Thread.yield();
+      now = System.nanoTime();
+    }
+    return now;
+  }
+
+  private static long getAllocatedBytes() {
+    if (sThreadAllocatedBytes == null) {
+      return -1;
+    }
+    try {
+      return (Long) sThreadAllocatedBytes.invoke(sThreadBean, Thread.currentThread().getId());
+    } catch (Exception e) {
+      return -1;
+    }
+  }
+
+  private static void usage(String error) {
+    System.err.println(error);
+    System.err.println(
+        "usage: SpringStressTool [--springs count] [--configs tension:friction,...]\n" +
+        "    [--retarget-rate perSecond] [--listener-cost micros] [--frame millis]\n" +
+        "    [--frames count] [--warmup count] [--budget millis] [--seed seed]\n" +
+        "    [--unpaced] [--no-search]");
+    System.exit(1);
+  }
+}
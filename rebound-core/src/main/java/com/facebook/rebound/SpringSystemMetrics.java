@@ -0,0 +1,180 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+/**
+ * Per loop timings and counters of a {@link BaseSpringSystem}, collected while metrics are
+ * enabled with {@link BaseSpringSystem#setMetricsEnabled(boolean)}. The instances returned by
+ * {@link BaseSpringSystem#getMetrics()} are snapshots that are not updated by later loops.
+ *
+ * Every histogram gets one value per loop:
+ * <ul>
+ *   <li>loop: nanoseconds spent in {@link BaseSpringSystem#loop(double)}</li>
+ *   <li>integration: nanoseconds spent advancing springs and simulations, excluding their
+ *   listeners</li>
+ *   <li>listener: nanoseconds spent in system listeners and spring listeners</li>
+ *   <li>solver iterations: integration steps taken by all springs</li>
+ *   <li>active springs: springs still active at the end of the loop</li>
+ *   <li>activation churn: springs activated or deactivated since the previous loop</li>
+ * </ul>
+ */
+public class SpringSystemMetrics {
+
+  private final Histogram mLoopNanos;
+  private final Histogram mIntegrationNanos;
+  private final Histogram mListenerNanos;
+  private final Histogram mSolverIterations;
+  private final Histogram mActiveSpringCount;
+  private final Histogram mActivationChurn;
+  private long mActivationCount;
+  private long mDeactivationCount;
+  private long mSolverIterationCount;
+
+  // accumulated over the loop in progress
+  long mFrameListenerNanos;
+  long mFrameSolverIterations;
+  int mFrameActivations;
+  int mFrameDeactivations;
+
+  SpringSystemMetrics() {
+    mLoopNanos = new Histogram();
+    mIntegrationNanos = new Histogram();
+    mListenerNanos = new Histogram();
+    mSolverIterations = new Histogram();
+    mActiveSpringCount = new Histogram();
+    mActivationChurn = new Histogram();
+  }
+
+  SpringSystemMetrics(SpringSystemMetrics metrics) {
+    mLoopNanos = new Histogram(metrics.mLoopNanos);
+    mIntegrationNanos = new Histogram(metrics.mIntegrationNanos);
+    mListenerNanos = new Histogram(metrics.mListenerNanos);
+    mSolverIterations = new Histogram(metrics.mSolverIterations);
+    mActiveSpringCount = new Histogram(metrics.mActiveSpringCount);
+    mActivationChurn = new Histogram(metrics.mActivationChurn);
+    mActivationCount = metrics.mActivationCount;
+    mDeactivationCount = metrics.mDeactivationCount;
+    mSolverIterationCount = metrics.mSolverIterationCount;
+  }
+
+  /**
+   * get the number of loops measured
+   * @return the number of loops
+   */
+  public long getLoopCount() {
+    return mLoopNanos.getCount();
+  }
+
+  public Histogram getLoopNanos() {
+    return mLoopNanos;
+  }
+
+  public Histogram getIntegrationNanos() {
+    return mIntegrationNanos;
+  }
+
+  public Histogram getListenerNanos() {
+    return mListenerNanos;
+  }
+
+  public Histogram getSolverIterations() {
+    return mSolverIterations;
+  }
+
+  public Histogram getActiveSpringCount() {
+    return mActiveSpringCount;
+  }
+
+  public Histogram getActivationChurn() {
+    return mActivationChurn;
+  }
+
+  /**
+   * get the number of times a spring was added to the active springs
+   * @return the number of activations
+   */
+  public long getActivationCount() {
+    return mActivationCount;
+  }
+
+  /**
+   * get the number of times a spring was removed from the active springs
+   * @return the number of deactivations
+   */
+  public long getDeactivationCount() {
+    return mDeactivationCount;
+  }
+
+  /**
+   * get the number of integration steps taken by all springs
+   * @return the number of solver iterations
+   */
+  public long getSolverIterationCount() {
+    return mSolverIterationCount;
+  }
+
+  void reset() {
+    mLoopNanos.reset();
+    mIntegrationNanos.reset();
+    mListenerNanos.reset();
+    mSolverIterations.reset();
+    mActiveSpringCount.reset();
+    mActivationChurn.reset();
+    mActivationCount = 0;
+    mDeactivationCount = 0;
+    mSolverIterationCount = 0;
+    mFrameListenerNanos = 0;
+    mFrameSolverIterations = 0;
+    mFrameActivations = 0;
+    mFrameDeactivations = 0;
+  }
+
+  /**
+   * fold the values accumulated over a loop into the histograms
+   * @param loopNanos duration of the loop
+   * @param integrationNanos time spent integrating, including listeners called while integrating
+   * @param integrationListenerNanos time spent in the listeners called while integrating
+   * @param activeSpringCount springs active at the end of the loop
+   */
+  void recordLoop(
+      long loopNanos,
+      long integrationNanos,
+      long integrationListenerNanos,
+      int activeSpringCount) {
+    mLoopNanos.record(loopNanos);
+    mIntegrationNanos.record(integrationNanos - integrationListenerNanos);
+    mListenerNanos.record(mFrameListenerNanos);
+    mSolverIterations.record(mFrameSolverIterations);
+    mActiveSpringCount.record(activeSpringCount);
+    mActivationChurn.record(mFrameActivations + mFrameDeactivations);
+    mActivationCount += mFrameActivations;
+    mDeactivationCount += mFrameDeactivations;
+    mSolverIterationCount += mFrameSolverIterations;
+    mFrameListenerNanos = 0;
+    mFrameSolverIterations = 0;
+    mFrameActivations = 0;
+    mFrameDeactivations = 0;
+  }
+
+  @Override
+  public String toString() {
+    return "loops=" + getLoopCount() +
+        " activations=" + mActivationCount +
+        " deactivations=" + mDeactivationCount +
+        " solverIterations=" + mSolverIterationCount +
+        "\nloopNanos " + mLoopNanos +
+        "\nintegrationNanos " + mIntegrationNanos +
+        "\nlistenerNanos " + mListenerNanos +
+        "\nsolverIterations " + mSolverIterations +
+        "\nactiveSpringCount " + mActiveSpringCount +
+        "\nactivationChurn " + mActivationChurn;
+  }
+}
@@ -0,0 +1,379 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SpringTimeline choreographs springs of a {@link BaseSpringSystem} declaratively. A timeline is
+ * made of steps, each one setting the end value of a group of springs in parallel. A step starts
+ * when the timeline plays, a delay after another step started, when the springs of another step
+ * come to rest, or when the first spring of another step has covered a fraction of its travel.
+ *
+ * Progress triggers are not checked on every spring update. When the source step starts, the
+ * crossing time is solved once with a {@link SpringSolution} and the dependent step is put on the
+ * timer wheel of the system for that time. The trigger is only solved again if the end value of
+ * the source spring changes.
+ *
+ * <pre>
+ *   SpringTimeline timeline = new SpringTimeline(springSystem);
+ *   SpringTimeline.Step card = timeline.step(cardSpring, 1);
+ *   SpringTimeline.Step title = timeline.step(titleSpring, 1).afterProgress(card, 0.8);
+ *   timeline.step(chainSpring, 1).afterRest(title);
+ *   timeline.play();
+ * </pre>
+ */
+public class SpringTimeline {
+
+  // longest time a progress trigger is solved for before falling back to waiting for rest
+  private static final double MAX_TRIGGER_TIME_SEC = 10;
+
+  private static final int TRIGGER_PLAY = 0;
+  private static final int TRIGGER_START = 1;
+  private static final int TRIGGER_REST = 2;
+  private static final int TRIGGER_PROGRESS = 3;
+
+  private final BaseSpringSystem mSpringSystem;
+  private final List<Step> mSteps = new ArrayList<Step>();
+  private final SpringSolution mSolution = new SpringSolution();
+  private boolean mPlaying;
+  private int mStartedStepCount;
+
+  /**
+   * constructor for the SpringTimeline
+   * @param springSystem the system owning every spring of the timeline
+   */
+  public SpringTimeline(BaseSpringSystem springSystem) {
+    if (springSystem == null) {
+      throw new IllegalArgumentException("springSystem is required");
+    }
+    mSpringSystem = springSystem;
+  }
+
+  /**
+   * Add a step to the timeline. The step starts when the timeline plays unless one of the after
+   * methods of the returned step is called.
+   * @param spring the first spring of the step
+   * @param endValue the end value to set on the spring
+   * @return the new step
+   */
+  public Step step(Spring spring, double endValue) {
+    if (mPlaying) {
+      throw new IllegalStateException("steps cannot be added while the timeline is playing");
+    }
+    Step step = new Step(mSteps.size());
+    mSteps.add(step);
+    return step.with(spring, endValue);
+  }
+
+  /**
+   * Start every step that is triggered by the timeline playing.
+   */
+  public void play() {
+    if (mPlaying) {
+      return;
+    }
+    mPlaying = true;
+    mStartedStepCount = 0;
+    for (Step step : mSteps) {
+      step.reset();
+    }
+    for (Step step : mSteps) {
+      if (step.mTrigger == TRIGGER_PLAY) {
+        step.start();
+      }
+    }
+  }
+
+  /**
+   * Stop the timeline. Springs that were started keep moving but no further steps are started.
+   */
+  public void cancel() {
+    mPlaying = false;
+    for (Step step : mSteps) {
+      step.disarm();
+    }
+  }
+
+  /**
+   * check if the timeline is playing
+   * @return true between play and cancel or the start of the last step
+   */
+  public boolean isPlaying() {
+    return mPlaying;
+  }
+
+  /**
+   * get the number of steps started since the timeline last played
+   * @return the number of started steps
+   */
+  public int getStartedStepCount() {
+    return mStartedStepCount;
+  }
+
+  /**
+   * A group of springs started together by a {@link SpringTimeline}.
+   */
+  public class Step {
+
+    private final int mIndex;
+    private final List<Spring> mSprings = new ArrayList<Spring>();
+    private final List<Double> mEndValues = new ArrayList<Double>();
+    private final List<Step> mDependents = new ArrayList<Step>();
+    private int mTrigger = TRIGGER_PLAY;
+    private Step mSource;
+    private double mDelayMillis;
+    private double mProgress;
+    private boolean mStarted;
+    // start of this step waiting on the timer wheel
+    private StepStart mPendingStart;
+    // progress triggers waiting on this step, kept armed while the step is moving
+    private final List<Step> mArmedProgressSteps = new ArrayList<Step>();
+    // value of the first spring when the step started, progress is measured from there
+    private double mProgressOrigin;
+    // kept private so the listener callbacks are not part of the api of the step
+    private final SpringListener mSpringListener = new SimpleSpringListener() {
+      @Override
+      public void onSpringAtRest(Spring spring) {
+        if (areAllSpringsAtRest()) {
+          onAllSpringsAtRest();
+        }
+      }
+
+      @Override
+      public void onSpringEndStateChange(Spring spring) {
+        if (spring == mSprings.get(0)) {
+          armProgressTriggers();
+        }
+      }
+    };
+
+    private Step(int index) {
+      mIndex = index;
+    }
+
+    /**
+     * Add a spring started in parallel with the rest of the step.
+     * @param spring the spring to start
+     * @param endValue the end value to set on the spring
+     * @return this Step for chaining
+     */
+    public Step with(Spring spring, double endValue) {
+      if (spring == null) {
+        throw new IllegalArgumentException("spring is required");
+      }
+      mSprings.add(spring);
+      mEndValues.add(endValue);
+      return this;
+    }
+
+    /**
+     * Start this step a delay after another step starts. A delay of 0 runs the two steps in
+     * parallel.
+     * @param source the step to follow
+     * @param delayMillis delay after the start of the source step in milliseconds
+     * @return this Step for chaining
+     */
+    public Step afterStart(Step source, double delayMillis) {
+      if (delayMillis < 0) {
+        throw new IllegalArgumentException("delayMillis must not be negative");
+      }
+      setTrigger(source, TRIGGER_START);
+      mDelayMillis = delayMillis;
+      return this;
+    }
+
+    /**
+     * Start this step when every spring of another step has come to rest.
+     * @param source the step to follow
+     * @return this Step for chaining
+     */
+    public Step afterRest(Step source) {
+      setTrigger(source, TRIGGER_REST);
+      return this;
+    }
+
+    /**
+     * Start this step when the first spring of another step has covered a fraction of the travel
+     * from where it was when the source step started to its end value.
+     * @param source the step to follow
+     * @param progress fraction of the travel, 0.8 starts this step when the source is 80% of the
+     *                 way to its end value
+     * @return this Step for chaining
+     */
+    public Step afterProgress(Step source, double progress) {
+      setTrigger(source, TRIGGER_PROGRESS);
+      mProgress = progress;
+      return this;
+    }
+
+    /**
+     * check if the step has started since the timeline last played
+     * @return true if the step started
+     */
+    public boolean isStarted() {
+      return mStarted;
+    }
+
+    private void setTrigger(Step source, int trigger) {
+      if (source == null) {
+        throw new IllegalArgumentException("source is required");
+      }
+      if (source.getTimeline() != SpringTimeline.this || source.mIndex >= mIndex) {
+        throw new IllegalArgumentException("source must be an earlier step of the same timeline");
+      }
+      if (mSource != null) {
+        mSource.mDependents.remove(this);
+      }
+      mSource = source;
+      mTrigger = trigger;
+      source.mDependents.add(this);
+    }
+
+    private SpringTimeline getTimeline() {
+      return SpringTimeline.this;
+    }
+
+    private void reset() {
+      mStarted = false;
+      mPendingStart = null;
+      mArmedProgressSteps.clear();
+    }
+
+    private void disarm() {
+      if (mPendingStart != null) {
+        mPendingStart.cancel();
+        mPendingStart = null;
+      }
+      for (Spring spring : mSprings) {
+        spring.removeListener(mSpringListener);
+      }
+      mArmedProgressSteps.clear();
+    }
+
+    private void start() {
+      if (!mPlaying || mStarted) {
+        return;
+      }
+      mStarted = true;
+      mPendingStart = null;
+      mStartedStepCount++;
+      if (mStartedStepCount == mSteps.size()) {
+        mPlaying = false;
+      }
+
+      mProgressOrigin = mSprings.get(0).getCurrentValue();
+      for (int i = 0; i < mSprings.size(); i++) {
+        mSprings.get(i).setEndValue(mEndValues.get(i));
+      }
+
+      boolean waitForSprings = false;
+      for (Step dependent : mDependents) {
+        switch (dependent.mTrigger) {
+          case TRIGGER_START:
+            dependent.schedule(dependent.mDelayMillis);
+            break;
+          case TRIGGER_PROGRESS:
+            mArmedProgressSteps.add(dependent);
+            waitForSprings = true;
+            break;
+          case TRIGGER_REST:
+            waitForSprings = true;
+            break;
+        }
+      }
+      if (!waitForSprings) {
+        return;
+      }
+      for (Spring spring : mSprings) {
+        spring.addListener(mSpringListener);
+      }
+      armProgressTriggers();
+      if (areAllSpringsAtRest()) {
+        onAllSpringsAtRest();
+      }
+    }
+
+    private boolean areAllSpringsAtRest() {
+      for (Spring spring : mSprings) {
+        if (spring.systemShouldAdvance()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void schedule(double delayMillis) {
+      mPendingStart = new StepStart(this);
+      mSpringSystem.schedule(mPendingStart, delayMillis);
+    }
+
+    /**
+     * Solve the crossing time of each armed progress trigger from the current state of the first
+     * spring of this step and put the dependent step on the timer wheel for that time.
+     */
+    private void armProgressTriggers() {
+      if (mArmedProgressSteps.isEmpty()) {
+        return;
+      }
+      Spring spring = mSprings.get(0);
+      mSolution.set(spring);
+      double travel = spring.getEndValue() - mProgressOrigin;
+      for (Step dependent : mArmedProgressSteps) {
+        if (dependent.mPendingStart != null) {
+          dependent.mPendingStart.cancel();
+          dependent.mPendingStart = null;
+        }
+        double time = mSolution.getTimeToReach(
+            mProgressOrigin + travel * dependent.mProgress,
+            MAX_TRIGGER_TIME_SEC);
+        if (time >= 0) {
+          double lag = mSpringSystem.getStartLagMillis();
+          dependent.schedule(Math.max(time * 1000.0 - lag, 0));
+        }
+        // otherwise the threshold is never crossed and the step starts when this one rests
+      }
+    }
+
+    private void onAllSpringsAtRest() {
+      for (Spring spring : mSprings) {
+        spring.removeListener(mSpringListener);
+      }
+      List<Step> dependents = new ArrayList<Step>(mDependents);
+      for (Step dependent : dependents) {
+        if (dependent.mTrigger == TRIGGER_REST ||
+            (dependent.mTrigger == TRIGGER_PROGRESS && dependent.mPendingStart == null)) {
+          dependent.start();
+        }
+      }
+      mArmedProgressSteps.clear();
+    }
+  }
+
+  /**
+   * Timer wheel entry starting a step.
+   */
+  private static class StepStart extends ScheduledSpringStart {
+
+    private final Step mStep;
+
+    StepStart(Step step) {
+      super(step.mSprings.get(0), step.mEndValues.get(0));
+      mStep = step;
+    }
+
+    @Override
+    void onStart(BaseSpringSystem springSystem) {
+      mStep.start();
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+/**
+ * Hashed timer wheel used by {@link BaseSpringSystem} to run delayed spring starts. Starts are
+ * hashed into one of a fixed number of slots by the tick they are due at, so scheduling is O(1)
+ * and each loop only visits the slots for the ticks that elapsed since the previous loop, no
+ * matter how many starts are pending. Starts that are due more than one revolution away simply
+ * stay in their slot until their tick comes around.
+ */
+class SpringTimerWheel {
+
+  // number of slots in the wheel, must be a power of two
+  private static final int WHEEL_SIZE = 1024;
+  private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+  // resolution of the wheel in milliseconds
+  static final double TICK_MILLIS = 1.0;
+
+  private final ScheduledSpringStart[] mSlots = new ScheduledSpringStart[WHEEL_SIZE];
+  private double mTimeMillis;
+  private long mCurrentTick;
+  private int mPendingCount;
+
+  /**
+   * add a start to the wheel
+   * @param start the start to run
+   * @param delayMillis delay from the current wheel time in milliseconds
+   * @return false if the start is already due and should be run immediately by the caller, which
+   *     is always the case without a delay
+   */
+  boolean schedule(ScheduledSpringStart start, double delayMillis) {
+    long dueTick = (long) Math.ceil((mTimeMillis + delayMillis) / TICK_MILLIS);
+    if (delayMillis <= 0 || dueTick <= mCurrentTick) {
+      return false;
+    }
+    int slot = (int) (dueTick & WHEEL_MASK);
+    start.mDueTick = dueTick;
+    start.mWheel = this;
+    start.mNext = mSlots[slot];
+    mSlots[slot] = start;
+    mPendingCount++;
+    return true;
+  }
+
+  /**
+   * unlink a cancelled start from its slot so it no longer keeps the system busy
+   * @param start the start to remove
+   */
+  void remove(ScheduledSpringStart start) {
+    int slot = (int) (start.mDueTick & WHEEL_MASK);
+    ScheduledSpringStart previous = null;
+    for (ScheduledSpringStart current = mSlots[slot]; current != null; current = current.mNext) {
+      if (current == start) {
+        if (previous == null) {
+          mSlots[slot] = start.mNext;
+        } else {
+          previous.mNext = start.mNext;
+        }
+        start.mNext = null;
+        start.mWheel = null;
+        mPendingCount--;
+        return;
+      }
+      previous = current;
+    }
+  }
+
+  /**
+   * check if any starts are waiting in the wheel
+   * @return true if the wheel has pending starts
+   */
+  boolean hasPending() {
+    return mPendingCount > 0;
+  }
+
+  int getPendingCount() {
+    return mPendingCount;
+  }
+
+  /**
+   * get the time until the earliest pending start is due, visiting every slot
+   * @return the delay in milliseconds, or -1 if nothing is pending
+   */
+  double getMillisUntilNextStart() {
+    if (mPendingCount == 0) {
+      return -1;
+    }
+    long nextTick = Long.MAX_VALUE;
+    for (int i = 0; i < WHEEL_SIZE; i++) {
+      for (ScheduledSpringStart start = mSlots[i]; start != null; start = start.mNext) {
+        nextTick = Math.min(nextTick, start.mDueTick);
+      }
+    }
+    return Math.max(0, nextTick * TICK_MILLIS - mTimeMillis);
+  }
+
+  /**
+   * advance the wheel time and run every start that became due
+   * @param elapsedMillis time since the last advance in milliseconds
+   * @param springSystem the system owning the springs to start
+   */
+  void advance(double elapsedMillis, BaseSpringSystem springSystem) {
+    mTimeMillis += elapsedMillis;
+    long targetTick = (long) Math.floor(mTimeMillis / TICK_MILLIS);
+    if (mPendingCount == 0) {
+      mCurrentTick = targetTick;
+      return;
+    }
+    // A full revolution visits every slot, so there is no need to go back further than that. The
+    // current tick follows the slot being drained, so a start scheduled by a running start lands
+    // either in a slot still ahead in this pass or is due and run right away, never in a slot
+    // that was already drained.
+    mCurrentTick = Math.max(mCurrentTick, targetTick - WHEEL_SIZE);
+    while (mCurrentTick < targetTick && mPendingCount > 0) {
+      mCurrentTick++;
+      runDueStarts((int) (mCurrentTick & WHEEL_MASK), targetTick, springSystem);
+    }
+    mCurrentTick = targetTick;
+  }
+
+  private void runDueStarts(int slot, long targetTick, BaseSpringSystem springSystem) {
+    // detach the slot first so starts scheduled while running the due ones are not lost
+    ScheduledSpringStart start = mSlots[slot];
+    mSlots[slot] = null;
+    while (start != null) {
+      ScheduledSpringStart next = start.mNext;
+      // a start cancelled by an earlier start of the slot is no longer linked from the slot
+      if (start.mDueTick <= targetTick || start.isCancelled()) {
+        start.mNext = null;
+        start.mWheel = null;
+        mPendingCount--;
+        if (!start.isCancelled()) {
+          start.run(springSystem);
+        }
+      } else {
+        start.mNext = mSlots[slot];
+        mSlots[slot] = start;
+      }
+      start = next;
+    }
+  }
+}
@@ -0,0 +1,409 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SpringTraceAnalyzer streams a trace written by {@link SpringTraceWriter} and summarises it per
+ * spring, per spring config and per frame. Frames are folded into running statistics as they are
+ * read, so memory depends on the number of springs and configs in the trace, not on its length.
+ *
+ * A move starts when the end value of a spring changes, or when a resting spring starts moving,
+ * and ends when the spring comes to rest. Its settle time runs from the start of the frame the
+ * move started in to the end of the frame the spring came to rest in, and its overshoot is the
+ * farthest the spring went past its end value, as a fraction of the distance it had to travel.
+ * The distance is measured from the position the writer saw just before the move, or from the
+ * last sample for version 1 traces, which do not record it.
+ *
+ * <pre>
+ *   java -cp rebound-core.jar com.facebook.rebound.SpringTraceAnalyzer soak.trace
+ * </pre>
+ */
+public class SpringTraceAnalyzer {
+
+  // upper bounds of the frame delta histogram buckets in millis, the last bucket is unbounded
+  private static final double[] FRAME_DELTA_BUCKETS_MILLIS = {8.5, 17, 34, 51};
+
+  /**
+   * Running statistics over a set of moves.
+   */
+  public static class Stats {
+    private final String mName;
+    private long mSampleCount;
+    private long mMoveCount;
+    private long mSettledMoveCount;
+    private double mTotalSettleMillis;
+    private double mMaxSettleMillis;
+    private double mMaxOvershoot;
+    private long mOvershootingMoveCount;
+
+    Stats(String name) {
+      mName = name;
+    }
+
+    public String getName() {
+      return mName;
+    }
+
+    public long getSampleCount() {
+      return mSampleCount;
+    }
+
+    public long getMoveCount() {
+      return mMoveCount;
+    }
+
+    /**
+     * get the number of moves that came to rest, moves that were retargeted or destroyed before
+     * coming to rest have no settle time
+     * @return the number of settled moves
+     */
+    public long getSettledMoveCount() {
+      return mSettledMoveCount;
+    }
+
+    public double getMeanSettleMillis() {
+      return mSettledMoveCount == 0 ? 0 : mTotalSettleMillis / mSettledMoveCount;
+    }
+
+    public double getMaxSettleMillis() {
+      return mMaxSettleMillis;
+    }
+
+    /**
+     * get the largest overshoot of any move
+     * @return the overshoot as a fraction of the distance travelled
+     */
+    public double getMaxOvershoot() {
+      return mMaxOvershoot;
+    }
+
+    public long getOvershootingMoveCount() {
+      return mOvershootingMoveCount;
+    }
+
+    void addMove(double overshoot, double settleMillis, boolean settled) {
+      mMoveCount++;
+      if (overshoot > 0) {
+        mOvershootingMoveCount++;
+        mMaxOvershoot = Math.max(mMaxOvershoot, overshoot);
+      }
+      if (settled) {
+        mSettledMoveCount++;
+        mTotalSettleMillis += settleMillis;
+        mMaxSettleMillis = Math.max(mMaxSettleMillis, settleMillis);
+      }
+    }
+  }
+
+  /**
+   * The state of a traced spring and of its move in progress.
+   */
+  private static class TracedSpring {
+    final Stats mStats;
+    Stats mConfigStats;
+    double mPosition;
+    double mEnd;
+    boolean mMoving;
+    double mMoveStartMillis;
+    double mMoveStartPosition;
+    double mMaxOvershoot;
+    // position written by the last START op, used by the next move
+    double mStartPosition;
+    boolean mHasStartPosition;
+
+    TracedSpring(Stats stats) {
+      mStats = stats;
+    }
+  }
+
+  private final Map<Integer, TracedSpring> mSprings = new LinkedHashMap<Integer, TracedSpring>();
+  private final Map<String, Stats> mConfigStats = new LinkedHashMap<String, Stats>();
+  private final Stats mUnknownConfigStats = new Stats("unknown");
+  private final long[] mFrameDeltaHistogram = new long[FRAME_DELTA_BUCKETS_MILLIS.length + 1];
+  private double mQuantum;
+  private long mFrameCount;
+  private double mTimeMillis;
+  private double mMinFrameDeltaMillis = Double.MAX_VALUE;
+  private double mMaxFrameDeltaMillis;
+  private long mSampleCount;
+
+  /**
+   * Read a whole trace. Several traces can be analyzed one after the other, their statistics
+   * add up.
+   * @param input the stream to read the trace from, it is not closed
+   * @throws IOException if the stream is not a trace or cannot be read
+   */
+  public void analyze(InputStream input) throws IOException {
+    if (input == null) {
+      throw new IllegalArgumentException("input is required");
+    }
+    DataInputStream data = new DataInputStream(new BufferedInputStream(input));
+    if (data.readInt() != SpringTraceWriter.MAGIC) {
+      throw new IOException("not a spring trace");
+    }
+    int version = data.readUnsignedByte();
+    // version 1 is version 2 without START ops
+    if (version != 1 && version != SpringTraceWriter.VERSION) {
+      throw new IOException("unsupported spring trace version " + version);
+    }
+    mQuantum = data.readDouble();
+    while (true) {
+      int op;
+      try {
+        op = data.readUnsignedByte();
+      } catch (EOFException e) {
+        // a trace that was not stopped properly ends where the stream ends
+        return;
+      }
+      switch (op) {
+        case SpringTraceWriter.OP_END:
+          return;
+        case SpringTraceWriter.OP_FRAME:
+          readFrame(data);
+          break;
+        case SpringTraceWriter.OP_SPRING: {
+          TracedSpring spring = getSpring((int) readVarLong(data));
+          double tension = data.readDouble();
+          double friction = data.readDouble();
+          spring.mConfigStats = getConfigStats(tension, friction);
+          break;
+        }
+        case SpringTraceWriter.OP_START: {
+          TracedSpring spring = getSpring((int) readVarLong(data));
+          spring.mStartPosition = unzigzag(readVarLong(data)) * mQuantum;
+          spring.mHasStartPosition = true;
+          break;
+        }
+        case SpringTraceWriter.OP_REST:
+          endMove(getSpring((int) readVarLong(data)), true);
+          break;
+        case SpringTraceWriter.OP_DESTROY:
+          endMove(getSpring((int) readVarLong(data)), false);
+          break;
+        default:
+          throw new IOException("unknown spring trace op " + op);
+      }
+    }
+  }
+
+  public long getFrameCount() {
+    return mFrameCount;
+  }
+
+  /**
+   * get the sum of all frame deltas
+   * @return the traced time in millis
+   */
+  public double getDurationMillis() {
+    return mTimeMillis;
+  }
+
+  public double getMeanFrameDeltaMillis() {
+    return mFrameCount == 0 ? 0 : mTimeMillis / mFrameCount;
+  }
+
+  public double getMinFrameDeltaMillis() {
+    return mFrameCount == 0 ? 0 : mMinFrameDeltaMillis;
+  }
+
+  public double getMaxFrameDeltaMillis() {
+    return mMaxFrameDeltaMillis;
+  }
+
+  /**
+   * get the statistics of a spring
+   * @param springId the numeric part of the id of the spring
+   * @return the statistics or null if the spring is not in the trace
+   */
+  public Stats getSpringStats(int springId) {
+    TracedSpring spring = mSprings.get(springId);
+    return spring == null ? null : spring.mStats;
+  }
+
+  /**
+   * get the statistics of every spring config, named tension/friction
+   * @return the statistics in the order the configs first appeared
+   */
+  public Collection<Stats> getConfigStats() {
+    return mConfigStats.values();
+  }
+
+  /**
+   * Print the frame delta distribution and the per config and per spring statistics.
+   * @param out the stream to print to
+   */
+  public void print(PrintStream out) {
+    out.printf(
+        "%d frames  %d samples  %.1fms  frame delta mean %.2fms min %.2fms max %.2fms%n",
+        mFrameCount,
+        mSampleCount,
+        mTimeMillis,
+        getMeanFrameDeltaMillis(),
+        getMinFrameDeltaMillis(),
+        mMaxFrameDeltaMillis);
+    for (int i = 0; i < mFrameDeltaHistogram.length; i++) {
+      String bucket = i < FRAME_DELTA_BUCKETS_MILLIS.length ?
+          "<= " + FRAME_DELTA_BUCKETS_MILLIS[i] + "ms" :
+          ">  " + FRAME_DELTA_BUCKETS_MILLIS[i - 1] + "ms";
+      out.printf("  %-10s %d%n", bucket, mFrameDeltaHistogram[i]);
+    }
+    out.println("configs (tension/friction)");
+    for (Stats stats : mConfigStats.values()) {
+      print(stats, out);
+    }
+    if (mUnknownConfigStats.getSampleCount() > 0) {
+      print(mUnknownConfigStats, out);
+    }
+    out.println("springs");
+    for (TracedSpring spring : mSprings.values()) {
+      print(spring.mStats, out);
+    }
+  }
+
+  private static void print(Stats stats, PrintStream out) {
+    out.printf(
+        "  %-22s moves %6d  settled %6d  settle mean %8.1fms max %8.1fms  " +
+            "overshoot max %6.1f%% in %d moves%n",
+        stats.getName(),
+        stats.getMoveCount(),
+        stats.getSettledMoveCount(),
+        stats.getMeanSettleMillis(),
+        stats.getMaxSettleMillis(),
+        stats.getMaxOvershoot() * 100,
+        stats.getOvershootingMoveCount());
+  }
+
+  private void readFrame(DataInputStream data) throws IOException {
+    double frameStartMillis = mTimeMillis;
+    double deltaMillis = readVarLong(data) / 1000.0;
+    mTimeMillis += deltaMillis;
+    mFrameCount++;
+    mMinFrameDeltaMillis = Math.min(mMinFrameDeltaMillis, deltaMillis);
+    mMaxFrameDeltaMillis = Math.max(mMaxFrameDeltaMillis, deltaMillis);
+    int bucket = 0;
+    while (bucket < FRAME_DELTA_BUCKETS_MILLIS.length &&
+        deltaMillis > FRAME_DELTA_BUCKETS_MILLIS[bucket]) {
+      bucket++;
+    }
+    mFrameDeltaHistogram[bucket]++;
+
+    long key;
+    while ((key = readVarLong(data)) != 0) {
+      TracedSpring spring = getSpring((int) (key - 1));
+      double lastPosition = spring.mPosition;
+      double lastEnd = spring.mEnd;
+      spring.mPosition += unzigzag(readVarLong(data)) * mQuantum;
+      spring.mEnd += unzigzag(readVarLong(data)) * mQuantum;
+      mSampleCount++;
+      spring.mStats.mSampleCount++;
+      configStats(spring).mSampleCount++;
+
+      boolean retargeted = spring.mEnd != lastEnd;
+      if (spring.mMoving && retargeted) {
+        endMove(spring, false);
+      }
+      if (!spring.mMoving) {
+        spring.mMoving = true;
+        spring.mMoveStartMillis = frameStartMillis;
+        spring.mMoveStartPosition = spring.mHasStartPosition ? spring.mStartPosition : lastPosition;
+        spring.mHasStartPosition = false;
+        spring.mMaxOvershoot = 0;
+      }
+      double travel = spring.mEnd - spring.mMoveStartPosition;
+      if (travel != 0) {
+        double overshoot = (spring.mPosition - spring.mEnd) / travel;
+        spring.mMaxOvershoot = Math.max(spring.mMaxOvershoot, overshoot);
+      }
+    }
+  }
+
+  private void endMove(TracedSpring spring, boolean settled) {
+    if (!spring.mMoving) {
+      return;
+    }
+    spring.mMoving = false;
+    double settleMillis = mTimeMillis - spring.mMoveStartMillis;
+    spring.mStats.addMove(spring.mMaxOvershoot, settleMillis, settled);
+    configStats(spring).addMove(spring.mMaxOvershoot, settleMillis, settled);
+  }
+
+  private TracedSpring getSpring(int id) {
+    TracedSpring spring = mSprings.get(id);
+    if (spring == null) {
+      spring = new TracedSpring(new Stats("spring:" + id));
+      mSprings.put(id, spring);
+    }
+    return spring;
+  }
+
+  private Stats configStats(TracedSpring spring) {
+    return spring.mConfigStats == null ? mUnknownConfigStats : spring.mConfigStats;
+  }
+
+  private Stats getConfigStats(double tension, double friction) {
+    String name = tension + "/" + friction;
+    Stats stats = mConfigStats.get(name);
+    if (stats == null) {
+      stats = new Stats(name);
+      mConfigStats.put(name, stats);
+    }
+    return stats;
+  }
+
+  private static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static long readVarLong(DataInputStream data) throws IOException {
+    long value = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = data.readUnsignedByte();
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  /**
+   * Analyze traces and print the statistics.
+   * @param args the trace files
+   * @throws IOException if a trace cannot be read
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("usage: SpringTraceAnalyzer <trace> [trace...]");
+      System.exit(1);
+    }
+    SpringTraceAnalyzer analyzer = new SpringTraceAnalyzer();
+    for (String path : args) {
+      InputStream input = new FileInputStream(path);
+      try {
+        analyzer.analyze(input);
+      } finally {
+        input.close();
+      }
+    }
+    analyzer.print(System.out);
+  }
+}
@@ -0,0 +1,307 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * SpringTraceWriter captures the value of every moving spring of a {@link BaseSpringSystem} on
+ * every loop into a compact stream that {@link SpringTraceAnalyzer} can digest offline, so long
+ * soak tests can be checked for overshoot, settle times and frame deltas.
+ *
+ * Values are quantized to a fixed step and written as the zigzag varint delta from the previous
+ * sample of the same spring, so a spring moving smoothly costs a few bytes per frame and a spring
+ * whose values did not change is not written at all. Frame deltas are written as varint
+ * microseconds.
+ *
+ * <pre>
+ * header: int magic, byte version, double quantum
+ * FRAME:   varint elapsedMicros, then samples terminated by a 0
+ *          sample: varint springId + 1, zigzag varint position delta, zigzag varint end delta
+ * SPRING:  varint springId, double tension, double friction, when first traced or reconfigured
+ * START:   varint springId, zigzag varint quantized position, where the spring was before the
+ *          next frame when it starts moving or is retargeted
+ * REST:    varint springId, the spring came to rest in the last frame
+ * DESTROY: varint springId, the spring was destroyed while moving
+ * END
+ * </pre>
+ *
+ * Tracing never throws into the animation loop. If the stream fails, tracing stops and the error
+ * is available from {@link #getError()}.
+ */
+public class SpringTraceWriter implements SpringSystemListener {
+
+  static final int MAGIC = 0x52425452; // RBTR
+  static final int VERSION = 2;
+
+  static final int OP_END = 0;
+  static final int OP_FRAME = 1;
+  static final int OP_SPRING = 2;
+  static final int OP_REST = 3;
+  static final int OP_DESTROY = 4;
+  static final int OP_START = 5;
+
+  // a tenth of a thousandth of a unit is well below a pixel for any practical mapping
+  public static final double DEFAULT_QUANTUM = 0.0001;
+
+  private final BaseSpringSystem mSpringSystem;
+  private final DataOutputStream mOutput;
+  private final double mQuantum;
+  // springs that are let go of by the app are let go of by the trace as well
+  private final Map<Spring, TracedSpring> mTracedSprings = new WeakHashMap<Spring, TracedSpring>();
+  private final List<TracedSpring> mMovingSprings = new ArrayList<TracedSpring>();
+  private boolean mTracing;
+  private long mFrameCount;
+  private IOException mError;
+
+  /**
+   * constructor for the SpringTraceWriter using the {@link #DEFAULT_QUANTUM}
+   * @param springSystem the system to trace
+   * @param output the stream the trace is written to
+   */
+  public SpringTraceWriter(BaseSpringSystem springSystem, OutputStream output) {
+    this(springSystem, output, DEFAULT_QUANTUM);
+  }
+
+  /**
+   * constructor for the SpringTraceWriter
+   * @param springSystem the system to trace
+   * @param output the stream the trace is written to, it is flushed but not closed by
+   *               {@link #stop()}
+   * @param quantum the step values are rounded to
+   */
+  public SpringTraceWriter(BaseSpringSystem springSystem, OutputStream output, double quantum) {
+    if (springSystem == null) {
+      throw new IllegalArgumentException("springSystem is required");
+    }
+    if (output == null) {
+      throw new IllegalArgumentException("output is required");
+    }
+    if (!(quantum > 0)) {
+      throw new IllegalArgumentException("quantum must be positive");
+    }
+    mSpringSystem = springSystem;
+    mOutput = new DataOutputStream(new BufferedOutputStream(output));
+    mQuantum = quantum;
+  }
+
+  /**
+   * Start tracing from the next loop.
+   */
+  public void start() {
+    if (mTracing) {
+      return;
+    }
+    try {
+      mOutput.writeInt(MAGIC);
+      mOutput.writeByte(VERSION);
+      mOutput.writeDouble(mQuantum);
+    } catch (IOException e) {
+      fail(e);
+      return;
+    }
+    mTracing = true;
+    mSpringSystem.addListener(this);
+  }
+
+  /**
+   * Stop tracing and flush the trace.
+   */
+  public void stop() {
+    if (!mTracing) {
+      return;
+    }
+    mTracing = false;
+    mSpringSystem.removeListener(this);
+    try {
+      mOutput.writeByte(OP_END);
+      mOutput.flush();
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  public boolean isTracing() {
+    return mTracing;
+  }
+
+  /**
+   * get the number of frames traced
+   * @return the number of frames
+   */
+  public long getFrameCount() {
+    return mFrameCount;
+  }
+
+  /**
+   * get the error that stopped the trace
+   * @return the error or null if writing the trace has not failed
+   */
+  public IOException getError() {
+    return mError;
+  }
+
+  @Override
+  public void onBeforeIntegrate(BaseSpringSystem springSystem) {
+    if (!mTracing) {
+      return;
+    }
+    // the frame only shows where a spring went, so note where it starts from before it moves
+    for (Spring spring : springSystem.getActiveSprings()) {
+      TracedSpring traced = getTracedSpring(spring);
+      long end = Math.round(spring.getEndValue() / mQuantum);
+      if (!traced.mMoving || end != traced.mEnd) {
+        traced.mStart = Math.round(spring.getCurrentValue() / mQuantum);
+        traced.mStartPending = true;
+      }
+    }
+  }
+
+  @Override
+  public void onAfterIntegrate(BaseSpringSystem springSystem) {
+    if (!mTracing) {
+      return;
+    }
+    try {
+      writeFrame(springSystem);
+      mFrameCount++;
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  private void writeFrame(BaseSpringSystem springSystem) throws IOException {
+    long frame = mFrameCount;
+    // declare new and reconfigured springs ahead of the frame that uses them
+    for (Spring spring : springSystem.getActiveSprings()) {
+      TracedSpring traced = getTracedSpring(spring);
+      if (traced.mStartPending) {
+        traced.mStartPending = false;
+        mOutput.writeByte(OP_START);
+        writeVarLong(traced.mId);
+        writeVarLong(zigzag(traced.mStart));
+      }
+      SpringConfig config = spring.getSpringConfig();
+      if (config.tension != traced.mTension || config.friction != traced.mFriction) {
+        traced.mTension = config.tension;
+        traced.mFriction = config.friction;
+        mOutput.writeByte(OP_SPRING);
+        writeVarLong(traced.mId);
+        mOutput.writeDouble(config.tension);
+        mOutput.writeDouble(config.friction);
+      }
+    }
+
+    mOutput.writeByte(OP_FRAME);
+    writeVarLong(Math.round(springSystem.getLoopElapsedMillis() * 1000));
+    for (Spring spring : springSystem.getActiveSprings()) {
+      TracedSpring traced = mTracedSprings.get(spring);
+      if (!traced.mMoving) {
+        traced.mMoving = true;
+        mMovingSprings.add(traced);
+      }
+      traced.mLastSeenFrame = frame;
+      traced.mResting = spring.isAtRest();
+      long position = Math.round(spring.getCurrentValue() / mQuantum);
+      long end = Math.round(spring.getEndValue() / mQuantum);
+      if (position == traced.mPosition && end == traced.mEnd) {
+        continue;
+      }
+      writeVarLong(traced.mId + 1);
+      writeVarLong(zigzag(position - traced.mPosition));
+      writeVarLong(zigzag(end - traced.mEnd));
+      traced.mPosition = position;
+      traced.mEnd = end;
+    }
+    mOutput.writeByte(0);
+
+    // springs that settled this frame, or left the loop without settling in it
+    int kept = 0;
+    for (int i = 0; i < mMovingSprings.size(); i++) {
+      TracedSpring traced = mMovingSprings.get(i);
+      if (traced.mLastSeenFrame == frame && !traced.mResting) {
+        mMovingSprings.set(kept++, traced);
+        continue;
+      }
+      traced.mMoving = false;
+      Spring spring = traced.mSpring.get();
+      boolean destroyed = traced.mLastSeenFrame != frame &&
+          (spring == null || !mSpringSystem.isRegistered(spring));
+      mOutput.writeByte(destroyed ? OP_DESTROY : OP_REST);
+      writeVarLong(traced.mId);
+    }
+    while (mMovingSprings.size() > kept) {
+      mMovingSprings.remove(mMovingSprings.size() - 1);
+    }
+  }
+
+  private TracedSpring getTracedSpring(Spring spring) {
+    TracedSpring traced = mTracedSprings.get(spring);
+    if (traced == null) {
+      traced = new TracedSpring(spring);
+      mTracedSprings.put(spring, traced);
+    }
+    return traced;
+  }
+
+  private static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private void writeVarLong(long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      mOutput.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    mOutput.writeByte((int) value);
+  }
+
+  private void fail(IOException e) {
+    if (mError == null) {
+      mError = e;
+    }
+    if (mTracing) {
+      mTracing = false;
+      mSpringSystem.removeListener(this);
+    }
+  }
+
+  /**
+   * What the trace last wrote about a spring.
+   */
+  private static class TracedSpring {
+    // weak so the entry does not keep its own key of the weak map alive
+    final WeakReference<Spring> mSpring;
+    final int mId;
+    double mTension = Double.NaN;
+    double mFriction = Double.NaN;
+    long mPosition;
+    long mEnd;
+    long mStart;
+    boolean mStartPending;
+    long mLastSeenFrame;
+    boolean mMoving;
+    boolean mResting;
+
+    TracedSpring(Spring spring) {
+      mSpring = new WeakReference<Spring>(spring);
+      mId = spring.getNumericId();
+    }
+  }
+}
@@ -0,0 +1,236 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * SpringTrackWriter writes the tracks baked by {@link SpringBaker}.
+ *
+ * <ul>
+ *   <li>JSON: an object with the frame rate and one entry per track holding its curve, duration
+ *   and values rounded to a number of decimals</li>
+ *   <li>CSS: one {@code @keyframes} rule per track with a keyframe per frame, and a class
+ *   running it linearly over the duration of the track</li>
+ *   <li>binary: a big endian table, see {@link #writeBinary(List, OutputStream)}</li>
+ * </ul>
+ */
+public class SpringTrackWriter {
+
+  public static final int BINARY_MAGIC = 0x52424b54; // "RBKT"
+  public static final int BINARY_VERSION = 1;
+  public static final int DEFAULT_DECIMALS = 4;
+  // more decimals would overflow the scaled long of appendDecimal for ordinary values
+  public static final int MAX_DECIMALS = 9;
+  public static final String DEFAULT_CSS_DECLARATION = "transform: scale(%s)";
+
+  private SpringTrackWriter() {
+  }
+
+  /**
+   * write tracks as JSON
+   * @param tracks the tracks to write
+   * @param decimals the number of decimals values are rounded to, from 0 to {@link #MAX_DECIMALS}
+   * @param out where to write
+   * @throws IOException if the output cannot be written
+   */
+  public static void writeJson(List<SpringBaker.Track> tracks, int decimals, Writer out)
+      throws IOException {
+    checkDecimals(decimals);
+    StringBuilder line = new StringBuilder();
+    line.append("{\"fps\":");
+    appendDecimal(line, tracks.isEmpty() ? 0 : tracks.get(0).getFramesPerSecond(), decimals);
+    line.append(",\"tracks\":[");
+    out.append(line);
+    for (int i = 0; i < tracks.size(); i++) {
+      SpringBaker.Track track = tracks.get(i);
+      SpringBaker.Curve curve = track.getCurve();
+      line.setLength(0);
+      if (i > 0) {
+        line.append(',');
+      }
+      line.append("\n{\"name\":");
+      appendJsonString(line, curve.getName());
+      line.append(",\"tension\":");
+      appendDecimal(line, curve.getSpringConfig().tension, decimals);
+      line.append(",\"friction\":");
+      appendDecimal(line, curve.getSpringConfig().friction, decimals);
+      line.append(",\"start\":");
+      appendDecimal(line, curve.getStartValue(), decimals);
+      line.append(",\"end\":");
+      appendDecimal(line, curve.getEndValue(), decimals);
+      line.append(",\"velocity\":");
+      appendDecimal(line, curve.getVelocity(), decimals);
+      line.append(",\"durationMillis\":");
+      appendDecimal(line, track.getDurationMillis(), decimals);
+      line.append(",\"values\":[");
+      for (int frame = 0; frame < track.getFrameCount(); frame++) {
+        if (frame > 0) {
+          line.append(',');
+        }
+        appendDecimal(line, track.getValue(frame), decimals);
+      }
+      line.append("]}");
+      out.append(line);
+    }
+    out.append("\n]}\n");
+  }
+
+  /**
+   * write tracks as CSS keyframes named after their curves, escaped as CSS identifiers
+   * @param tracks the tracks to write
+   * @param declaration the declaration of each keyframe, with %s replaced by the value, such as
+   *     "opacity: %s" or "transform: translateY(%spx)"
+   * @param decimals the number of decimals values are rounded to, from 0 to {@link #MAX_DECIMALS}
+   * @param out where to write
+   * @throws IOException if the output cannot be written
+   */
+  public static void writeCss(
+      List<SpringBaker.Track> tracks,
+      String declaration,
+      int decimals,
+      Writer out) throws IOException {
+    checkDecimals(decimals);
+    StringBuilder line = new StringBuilder();
+    StringBuilder value = new StringBuilder();
+    StringBuilder name = new StringBuilder();
+    for (SpringBaker.Track track : tracks) {
+      name.setLength(0);
+      appendCssIdentifier(name, track.getCurve().getName());
+      out.append("@keyframes ").append(name).append(" {\n");
+      int lastFrame = track.getFrameCount() - 1;
+      for (int frame = 0; frame <= lastFrame; frame++) {
+        line.setLength(0);
+        value.setLength(0);
+        line.append("  ");
+        appendDecimal(line, lastFrame == 0 ? 100 : frame * 100.0 / lastFrame, 3);
+        appendDecimal(value, track.getValue(frame), decimals);
+        line.append("% { ").append(declaration.replace("%s", value)).append("; }\n");
+        out.append(line);
+      }
+      line.setLength(0);
+      line.append("}\n.").append(name).append(" {\n  animation: ").append(name).append(' ');
+      appendDecimal(line, track.getDurationMillis(), 0);
+      line.append("ms linear both;\n}\n");
+      out.append(line);
+    }
+  }
+
+  /**
+   * Write tracks as a big endian binary table: the magic number, the version, the frame rate as
+   * a float and the track count, then for each track its name as modified UTF-8, its tension,
+   * friction, start, end and velocity as floats, its frame count and its values as floats.
+   * @param tracks the tracks to write
+   * @param out where to write
+   * @throws IOException if the output cannot be written
+   */
+  public static void writeBinary(List<SpringBaker.Track> tracks, OutputStream out)
+      throws IOException {
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(BINARY_MAGIC);
+    data.writeInt(BINARY_VERSION);
+    data.writeFloat(tracks.isEmpty() ? 0 : (float) tracks.get(0).getFramesPerSecond());
+    data.writeInt(tracks.size());
+    for (SpringBaker.Track track : tracks) {
+      SpringBaker.Curve curve = track.getCurve();
+      data.writeUTF(curve.getName());
+      data.writeFloat((float) curve.getSpringConfig().tension);
+      data.writeFloat((float) curve.getSpringConfig().friction);
+      data.writeFloat((float) curve.getStartValue());
+      data.writeFloat((float) curve.getEndValue());
+      data.writeFloat((float) curve.getVelocity());
+      data.writeInt(track.getFrameCount());
+      for (int frame = 0; frame < track.getFrameCount(); frame++) {
+        data.writeFloat(track.getValue(frame));
+      }
+    }
+    data.flush();
+  }
+
+  /**
+   * check that a number of decimals can be written by {@link #appendDecimal}
+   * @param decimals the number of decimals
+   */
+  static void checkDecimals(int decimals) {
+    if (decimals < 0 || decimals > MAX_DECIMALS) {
+      throw new IllegalArgumentException("decimals must be between 0 and " + MAX_DECIMALS);
+    }
+  }
+
+  /**
+   * append a value rounded to a number of decimals without trailing zeros, never in scientific
+   * notation
+   */
+  static void appendDecimal(StringBuilder out, double value, int decimals) {
+    long scale = 1;
+    for (int i = 0; i < decimals; i++) {
+      scale *= 10;
+    }
+    long scaled = Math.round(Math.abs(value) * scale);
+    if (value < 0 && scaled != 0) {
+      out.append('-');
+    }
+    out.append(scaled / scale);
+    long fraction = scaled % scale;
+    if (fraction == 0) {
+      return;
+    }
+    out.append('.');
+    for (long digit = scale / 10; digit > fraction; digit /= 10) {
+      out.append('0');
+    }
+    while (fraction % 10 == 0) {
+      fraction /= 10;
+    }
+    out.append(fraction);
+  }
+
+  /**
+   * append a value escaped as a CSS identifier, following the CSS.escape algorithm of CSSOM
+   */
+  static void appendCssIdentifier(StringBuilder out, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == 0) {
+        out.append('\uFFFD');
+      } else if (c < 0x20 || c == 0x7F ||
+          (c >= '0' && c <= '9' && (i == 0 || (i == 1 && value.charAt(0) == '-')))) {
+        out.append('\\').append(Integer.toHexString(c)).append(' ');
+      } else if (c == '-' && i == 0 && value.length() == 1) {
+        out.append("\\-");
+      } else if (c >= 0x80 || c == '-' || c == '_' || (c >= '0' && c <= '9') ||
+          (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+        out.append(c);
+      } else {
+        out.append('\\').append(c);
+      }
+    }
+  }
+
+  private static void appendJsonString(StringBuilder out, String value) {
+    out.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        out.append('\\').append(c);
+      } else if (c < 0x20) {
+        out.append(String.format("\\u%04x", (int) c));
+      } else {
+        out.append(c);
+      }
+    }
+    out.append('"');
+  }
+}
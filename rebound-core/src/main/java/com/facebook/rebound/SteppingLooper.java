@@ -9,27 +9,56 @@
 
 package com.facebook.rebound;
 
+/**
+ * SteppingLooper does not run on its own, the spring system is only looped when {@link #step(long)}
+ * is called. This makes it possible to drive a system from tests and benchmarks on a plain JVM.
+ */
 public class SteppingLooper extends SpringLooper {
 
   private boolean mStarted;
-  private long mLastTime;
 
   @Override
   public void start() {
     mStarted = true;
-    mLastTime = 0;
   }
 
+  /**
+   * loop the spring system once if it is running
+   * @param interval the time since the previous step in milliseconds
+   * @return true if the system is idle after the step
+   */
   public boolean step(long interval) {
     if (mSpringSystem == null || !mStarted) {
       return false;
     }
-    long currentTime = mLastTime + interval;
-    mSpringSystem.loop(currentTime);
-    mLastTime = currentTime;
+    mSpringSystem.loop(interval);
+    return mSpringSystem.getIsIdle();
+  }
+
+  /**
+   * fast forward the spring system if it is running, see {@link BaseSpringSystem#fastForward}
+   * @param interval the time to move forward in milliseconds
+   * @return true if the system is idle afterwards
+   */
+  public boolean fastForward(double interval) {
+    if (mSpringSystem == null || !mStarted) {
+      return false;
+    }
+    mSpringSystem.fastForward(interval);
     return mSpringSystem.getIsIdle();
   }
 
+  /**
+   * fast forward the spring system until it is idle, see
+   * {@link BaseSpringSystem#fastForwardToRest()}
+   */
+  public void fastForwardToRest() {
+    if (mSpringSystem == null || !mStarted) {
+      return;
+    }
+    mSpringSystem.fastForwardToRest();
+  }
+
   @Override
   public void stop() {
     mStarted = false;
@@ -14,6 +14,7 @@ public class SynchronousLooper extends SpringLooper {
   public static final double SIXTY_FPS = 16.6667;
   private double mTimeStep;
   private boolean mRunning;
+  private boolean mFastForward;
 
   public SynchronousLooper() {
     mTimeStep = SIXTY_FPS;
@@ -27,9 +28,38 @@ public class SynchronousLooper extends SpringLooper {
     mTimeStep = timeStep;
   }
 
+  /**
+   * Set the time step to match a display refresh rate.
+   * @param framesPerSecond the refresh rate to simulate, such as 60, 90 or 120
+   */
+  public void setFrameRate(double framesPerSecond) {
+    if (framesPerSecond <= 0) {
+      throw new IllegalArgumentException("framesPerSecond must be positive");
+    }
+    mTimeStep = 1000.0 / framesPerSecond;
+  }
+
+  /**
+   * Make the looper fast forward the spring system to rest instead of looping it a time step at a
+   * time, so each spring only notifies its listeners of its final state.
+   * See {@link BaseSpringSystem#fastForwardToRest()}.
+   * @param fastForward true to fast forward
+   */
+  public void setFastForward(boolean fastForward) {
+    mFastForward = fastForward;
+  }
+
+  public boolean getFastForward() {
+    return mFastForward;
+  }
+
   @Override
   public void start() {
     mRunning = true;
+    if (mFastForward) {
+      mSpringSystem.fastForwardToRest();
+      return;
+    }
     while (!mSpringSystem.getIsIdle()) {
       if (mRunning == false) {
         break;
@@ -0,0 +1,68 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+/**
+ * A {@link FrameRatePolicy} that halves the update rate of a spring for as long as the distance it
+ * would travel over the skipped frames stays below a visible threshold. Fast springs and springs
+ * that are about to accelerate strongly always advance every frame.
+ */
+public class VelocityFrameRatePolicy implements FrameRatePolicy {
+
+  private final double mMinVisibleDistance;
+  private final int mMaxFrameInterval;
+
+  /**
+   * constructor for the VelocityFrameRatePolicy
+   * @param minVisibleDistance the smallest change in value, in the units of the springs, that
+   *                           should be shown on every frame
+   * @param maxFrameInterval the largest number of frames between advances of a slow spring
+   */
+  public VelocityFrameRatePolicy(double minVisibleDistance, int maxFrameInterval) {
+    if (minVisibleDistance < 0) {
+      throw new IllegalArgumentException("minVisibleDistance must not be negative");
+    }
+    if (maxFrameInterval < 1) {
+      throw new IllegalArgumentException("maxFrameInterval must be at least 1");
+    }
+    mMinVisibleDistance = minVisibleDistance;
+    mMaxFrameInterval = maxFrameInterval;
+  }
+
+  public double getMinVisibleDistance() {
+    return mMinVisibleDistance;
+  }
+
+  public int getMaxFrameInterval() {
+    return mMaxFrameInterval;
+  }
+
+  @Override
+  public int getFrameInterval(Spring spring, double frameDeltaMillis) {
+    SpringConfig config = spring.getSpringConfig();
+    double velocity = Math.abs(spring.getVelocity());
+    double acceleration = Math.abs(
+        config.tension * (spring.getEndValue() - spring.getCurrentValue()) -
+        config.friction * spring.getVelocity());
+
+    // Double the interval while the projected travel over the skipped frames stays invisible.
+    int interval = 1;
+    while (interval * 2 <= mMaxFrameInterval) {
+      double seconds = interval * 2 * frameDeltaMillis / 1000.0;
+      double travel = velocity * seconds + 0.5 * acceleration * seconds * seconds;
+      if (travel > mMinVisibleDistance) {
+        break;
+      }
+      interval *= 2;
+    }
+    return interval;
+  }
+}
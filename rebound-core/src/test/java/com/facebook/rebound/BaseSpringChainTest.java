@@ -0,0 +1,86 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BaseSpringChainTest {
+
+  private SteppingLooper mLooper;
+  private BaseSpringSystem mSpringSystem;
+
+  @Before
+  public void beforeEach() {
+    mLooper = new SteppingLooper();
+    mSpringSystem = new BaseSpringSystem(mLooper);
+  }
+
+  private BaseSpringChain createChain(boolean coupled, int size) {
+    BaseSpringChain chain = coupled ?
+        BaseSpringChain.createCoupled(mSpringSystem) :
+        BaseSpringChain.create(mSpringSystem);
+    for (int i = 0; i < size; i++) {
+      chain.addSpring(new SimpleSpringListener());
+    }
+    return chain.setControlSpringIndex(0);
+  }
+
+  private void stepUntilIdle() {
+    int steps = 0;
+    while (!mLooper.step(16) && steps < 2000) {
+      steps++;
+    }
+    assertTrue(mSpringSystem.getIsIdle());
+  }
+
+  @Test
+  public void testChainsShareTheProvidedSystem() {
+    BaseSpringChain first = createChain(false, 3);
+    BaseSpringChain second = createChain(true, 3);
+    assertSame(mSpringSystem, first.getSpringSystem());
+    assertSame(mSpringSystem, second.getSpringSystem());
+    assertEquals(6, mSpringSystem.getAllSprings().size());
+    assertFalse(first.isCoupled());
+    assertTrue(second.isCoupled());
+  }
+
+  @Test
+  public void testChainsSettleWhenSteppedHeadless() {
+    BaseSpringChain cascading = createChain(false, 10);
+    BaseSpringChain coupled = createChain(true, 10);
+    cascading.getControlSpring().setEndValue(1);
+    coupled.getControlSpring().setEndValue(1);
+    stepUntilIdle();
+    // each cascading spring rests within the displacement threshold of its predecessor
+    List<Spring> springs = cascading.getAllSprings();
+    assertEquals(1, springs.get(springs.size() - 1).getCurrentValue(), 0.05);
+    springs = coupled.getAllSprings();
+    assertEquals(1, springs.get(springs.size() - 1).getCurrentValue(), 0);
+  }
+
+  @Test
+  public void testSteppingLooperPassesTheStepInterval() {
+    Spring spring = mSpringSystem.createSpring();
+    spring.setEndValue(1);
+    for (int i = 0; i < 100; i++) {
+      mLooper.step(16);
+    }
+    // 100 steps of 16ms must not cover more ground than 1.6s of the closed form solution
+    SpringConfig config = spring.getSpringConfig();
+    SpringSolution solution = new SpringSolution().set(config.tension, config.friction, 0, 0, 1);
+    assertEquals(solution.getPosition(1.6), spring.getCurrentValue(), 1e-2);
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class ChromeTraceWriterTest {
+
+  private BaseSpringSystem mSpringSystem;
+  private StringWriter mOutput;
+  private ChromeTraceWriter mTrace;
+
+  @Before
+  public void beforeEach() {
+    mSpringSystem = new BaseSpringSystem(new SteppingLooper());
+    mOutput = new StringWriter();
+    mTrace = new ChromeTraceWriter(mOutput, 8);
+    mSpringSystem.setLoopProbe(mTrace);
+  }
+
+  @Test
+  public void testLoopsAndSpringsBecomeSlices() throws IOException {
+    Spring spring = mSpringSystem.createSpring().addListener(new SimpleSpringListener());
+    spring.setEndValue(1);
+    int loops = 0;
+    while (!mSpringSystem.getIsIdle()) {
+      mSpringSystem.loop(16);
+      loops++;
+    }
+    // the small buffer has been written out along the way
+    assertTrue(mOutput.toString().contains("\"name\":\"loop\""));
+    mTrace.close();
+    assertNull(mTrace.getError());
+
+    String json = mOutput.toString();
+    assertTrue(json.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["));
+    assertTrue(json.endsWith("]}\n"));
+    assertEquals(loops, count(json, "\"name\":\"loop\""));
+    assertEquals(loops, count(json, "\"name\":\"integration\""));
+    assertEquals(loops, count(json, "\"name\":\"onBeforeIntegrate listeners\""));
+    assertEquals(loops, count(json, "\"name\":\"onAfterIntegrate listeners\""));
+    // the last loop only removes the resting spring from the active springs
+    assertEquals(loops - 1, count(json, "\"name\":\"" + spring.getId() + " listeners\""));
+    assertEquals(1, count(json, "\"ph\":\"b\""));
+    assertEquals(1, count(json, "\"ph\":\"e\""));
+    assertEquals(2, count(json, "\"id\":" + spring.getNumericId() + ",\"args\""));
+    assertFalse(json.contains("E+") || json.contains(",,") || json.contains("[,"));
+  }
+
+  @Test
+  public void testNonFiniteValuesAreWrittenAsNull() throws IOException {
+    Spring spring = mSpringSystem.createSpring().setEndValue(Double.POSITIVE_INFINITY);
+    mSpringSystem.loop(Double.NaN);
+    spring.setAtRest();
+    mSpringSystem.loop(16);
+    mTrace.close();
+    assertNull(mTrace.getError());
+
+    String json = mOutput.toString();
+    assertTrue(json.contains("\"args\":{\"currentValue\":0.0,\"endValue\":null}"));
+    assertTrue(json.contains("\"args\":{\"elapsedMillis\":null,"));
+    assertFalse(json.contains("NaN") || json.contains("Infinity"));
+  }
+
+  @Test
+  public void testEventsAfterCloseAreDropped() throws IOException {
+    mTrace.close();
+    String json = mOutput.toString();
+    mSpringSystem.createSpring().setEndValue(1);
+    mSpringSystem.loop(16);
+    mTrace.flush();
+    assertEquals(json, mOutput.toString());
+    assertEquals("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[]}\n", json);
+  }
+
+  private static int count(String text, String pattern) {
+    int count = 0;
+    int index = text.indexOf(pattern);
+    while (index >= 0) {
+      count++;
+      index = text.indexOf(pattern, index + pattern.length());
+    }
+    return count;
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CoupledSpringChainTest {
+
+  private BaseSpringSystem mSpringSystem;
+  private CoupledSpringChain mChain;
+
+  @Before
+  public void beforeEach() {
+    mSpringSystem = new BaseSpringSystem(new SteppingLooper());
+    mChain = new CoupledSpringChain(
+        mSpringSystem,
+        SpringConfig.fromOrigamiTensionAndFriction(40, 6),
+        SpringConfig.fromOrigamiTensionAndFriction(70, 10));
+    for (int i = 0; i < 5; i++) {
+      mChain.addSpring();
+    }
+    mChain.setControlSpringIndex(2);
+  }
+
+  @Test
+  public void testWholeChainMovesInTheFirstFrame() {
+    mChain.getControlSpring().setEndValue(100);
+    assertFalse(mSpringSystem.getIsIdle());
+    mSpringSystem.loop(16);
+    for (Spring spring : mChain.getAllSprings()) {
+      assertTrue(spring.getCurrentValue() > 0);
+    }
+    // springs further from the control spring lag behind it
+    List<Spring> springs = mChain.getAllSprings();
+    assertTrue(springs.get(2).getCurrentValue() > springs.get(3).getCurrentValue());
+    assertTrue(springs.get(3).getCurrentValue() > springs.get(4).getCurrentValue());
+    assertEquals(springs.get(1).getCurrentValue(), springs.get(3).getCurrentValue(), 1e-9);
+  }
+
+  @Test
+  public void testChainSettlesOnTheControlEndValue() {
+    final List<String> events = new ArrayList<String>();
+    Spring last = mChain.getAllSprings().get(4);
+    last.addListener(new SimpleSpringListener() {
+      @Override
+      public void onSpringActivate(Spring spring) {
+        events.add("activate");
+      }
+
+      @Override
+      public void onSpringAtRest(Spring spring) {
+        events.add("rest");
+      }
+    });
+    mChain.getControlSpring().setEndValue(100);
+    int frames = 0;
+    while (!mSpringSystem.getIsIdle() && frames < 1000) {
+      mSpringSystem.loop(16);
+      frames++;
+    }
+    assertTrue(mSpringSystem.getIsIdle());
+    for (Spring spring : mChain.getAllSprings()) {
+      assertEquals(100, spring.getCurrentValue(), 0);
+      assertTrue(spring.isAtRest());
+    }
+    assertEquals(2, events.size());
+    assertEquals("activate", events.get(0));
+    assertEquals("rest", events.get(1));
+  }
+
+  @Test
+  public void testMovingTheControlSpringDirectlyIsPickedUp() {
+    mChain.getControlSpring().setCurrentValue(50).setEndValue(50);
+    mSpringSystem.loop(16);
+    List<Spring> springs = mChain.getAllSprings();
+    assertEquals(50, springs.get(2).getCurrentValue(), 0);
+    assertTrue(springs.get(0).getCurrentValue() > 0);
+    assertTrue(springs.get(0).getCurrentValue() < 50);
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DoubleRingBufferTest {
+
+  @Test
+  public void testFifoOrderAcrossWrapAround() {
+    DoubleRingBuffer buffer = new DoubleRingBuffer(4);
+    for (int round = 0; round < 10; round++) {
+      buffer.add(round);
+      buffer.add(round + 0.5);
+      assertEquals(round, buffer.get(0), 0);
+      assertEquals(round + 0.5, buffer.get(1), 0);
+      assertEquals(round, buffer.poll(), 0);
+      assertEquals(round + 0.5, buffer.poll(), 0);
+      assertTrue(buffer.isEmpty());
+    }
+  }
+
+  @Test
+  public void testGrowKeepsOrder() {
+    DoubleRingBuffer buffer = new DoubleRingBuffer(2);
+    buffer.add(-1);
+    buffer.add(0);
+    buffer.poll();
+    buffer.addAll(new double[] {1, 2, 3, 4, 5});
+    assertEquals(6, buffer.size());
+    for (int i = 0; i < 6; i++) {
+      assertEquals(i, buffer.poll(), 0);
+    }
+    buffer.add(7);
+    buffer.clear();
+    assertEquals(0, buffer.size());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testPollingAnEmptyBufferThrows() {
+    new DoubleRingBuffer().poll();
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+
+  @Test
+  public void testSmallValuesAreExact() {
+    Histogram histogram = new Histogram();
+    for (int i = 1; i <= 20; i++) {
+      histogram.record(i);
+    }
+    assertEquals(20, histogram.getCount());
+    assertEquals(1, histogram.getMin());
+    assertEquals(20, histogram.getMax());
+    assertEquals(10.5, histogram.getMean(), 0);
+    assertEquals(10, histogram.getValueAtPercentile(50));
+    assertEquals(19, histogram.getValueAtPercentile(95));
+    assertEquals(20, histogram.getValueAtPercentile(100));
+  }
+
+  @Test
+  public void testLargeValuesStayWithinBucketPrecision() {
+    Histogram histogram = new Histogram();
+    for (long value = 1000; value <= 100000000; value *= 10) {
+      histogram.record(value);
+      long recorded = Histogram.getHighestValueInBucket(Histogram.getBucketIndex(value));
+      assertTrue(recorded >= value);
+      assertTrue(recorded - value <= value / 16);
+    }
+    assertEquals(1000, histogram.getValueAtPercentile(0));
+    assertEquals(100000000, histogram.getValueAtPercentile(100));
+    long median = histogram.getValueAtPercentile(50);
+    assertTrue(median >= 100000 && median <= 100000 + 100000 / 16);
+  }
+
+  @Test
+  public void testBucketsCoverTheWholeRange() {
+    long previous = -1;
+    for (int i = 0; i <= Histogram.getBucketIndex(Long.MAX_VALUE); i++) {
+      long highest = Histogram.getHighestValueInBucket(i);
+      assertEquals(i, Histogram.getBucketIndex(highest));
+      assertEquals(i, Histogram.getBucketIndex(previous + 1));
+      previous = highest;
+    }
+    assertEquals(Long.MAX_VALUE, previous);
+  }
+
+  @Test
+  public void testCopyIsIndependent() {
+    Histogram histogram = new Histogram();
+    histogram.record(5);
+    Histogram copy = new Histogram(histogram);
+    histogram.record(-3);
+    assertEquals(1, copy.getCount());
+    assertEquals(2, histogram.getCount());
+    assertEquals(0, histogram.getMin());
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+    assertEquals(5, copy.getMax());
+  }
+}
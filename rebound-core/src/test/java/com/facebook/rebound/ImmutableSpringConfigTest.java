@@ -0,0 +1,104 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ImmutableSpringConfigTest {
+
+  @Test
+  public void testConfigsAreInterned() {
+    assertSame(ImmutableSpringConfig.of(100, 10), ImmutableSpringConfig.of(100, 10));
+    assertSame(
+        ImmutableSpringConfig.DEFAULT,
+        ImmutableSpringConfig.fromOrigamiTensionAndFriction(40, 7));
+    assertSame(ImmutableSpringConfig.DEFAULT, SpringConfig.defaultConfig.toImmutable());
+    assertNotSame(ImmutableSpringConfig.of(100, 10), ImmutableSpringConfig.of(100, 11));
+  }
+
+  @Test
+  public void testDerivedConstants() {
+    ImmutableSpringConfig underdamped = ImmutableSpringConfig.of(100, 10);
+    assertEquals(10, underdamped.naturalFrequency, 1e-12);
+    assertEquals(0.5, underdamped.dampingRatio, 1e-12);
+    assertEquals(Math.sqrt(75), underdamped.dampedFrequency, 1e-12);
+
+    ImmutableSpringConfig critical = ImmutableSpringConfig.of(100, 20);
+    assertEquals(1, critical.dampingRatio, 1e-12);
+    assertEquals(0, critical.dampedFrequency, 0);
+
+    ImmutableSpringConfig noTension = ImmutableSpringConfig.of(0, 5);
+    assertEquals(0, noTension.naturalFrequency, 0);
+    assertEquals(0, noTension.dampingRatio, 0);
+  }
+
+  @Test
+  public void testRoundTripWithSpringConfig() {
+    SpringConfig springConfig = SpringConfig.fromBouncinessAndSpeed(5, 10);
+    ImmutableSpringConfig config = springConfig.toImmutable();
+    assertSame(ImmutableSpringConfig.fromBouncinessAndSpeed(5, 10), config);
+    SpringConfig copy = config.toSpringConfig();
+    assertNotSame(springConfig, copy);
+    assertEquals(springConfig.tension, copy.tension, 0);
+    assertEquals(springConfig.friction, copy.friction, 0);
+  }
+
+  @Test
+  public void testSolutionMatchesTensionAndFriction() {
+    double[][] configs = {{100, 10}, {100, 20}, {100, 40}, {0, 5}};
+    SpringSolution expected = new SpringSolution();
+    SpringSolution actual = new SpringSolution();
+    for (double[] values : configs) {
+      expected.set(values[0], values[1], 2, -3, 1);
+      actual.set(ImmutableSpringConfig.of(values[0], values[1]), 2, -3, 1);
+      for (double time = 0; time < 2; time += 0.125) {
+        assertEquals(expected.getPosition(time), actual.getPosition(time), 0);
+        assertEquals(expected.getVelocity(time), actual.getVelocity(time), 0);
+      }
+      assertEquals(expected.getTimeToRest(0.005, 0.005), actual.getTimeToRest(0.005, 0.005), 0);
+    }
+  }
+
+  @Test
+  public void testSpringTracksItsMutableConfig() {
+    BaseSpringSystem springSystem = new BaseSpringSystem(new SteppingLooper());
+    ImmutableSpringConfig config = ImmutableSpringConfig.of(100, 10);
+    Spring spring = springSystem.createSpring().setSpringConfig(config);
+    assertSame(config, spring.getDerivedSpringConfig());
+
+    // changes to the copy the spring holds are picked up
+    spring.getSpringConfig().tension = 200;
+    ImmutableSpringConfig derived = spring.getDerivedSpringConfig();
+    assertEquals(200, derived.tension, 0);
+    assertEquals(ImmutableSpringConfig.of(200, 10), derived);
+    assertSame(derived, spring.getDerivedSpringConfig());
+    assertEquals(100, config.tension, 0);
+  }
+
+  @Test
+  public void testLiveTuningDoesNotGrowTheInternTable() {
+    BaseSpringSystem springSystem = new BaseSpringSystem(new SteppingLooper());
+    Spring spring = springSystem.createSpring()
+        .setSpringConfig(new SpringConfig(1000, 30))
+        .setEndValue(1);
+    SpringSolution solution = new SpringSolution();
+    int internedCount = ImmutableSpringConfig.getInternedCount();
+    for (int i = 0; i < 100; i++) {
+      spring.getSpringConfig().tension = 1000 + i * 0.5;
+      solution.set(spring);
+      spring.getTimeToRest(solution);
+      springSystem.fastForward(16);
+    }
+    assertEquals(internedCount, ImmutableSpringConfig.getInternedCount());
+  }
+}
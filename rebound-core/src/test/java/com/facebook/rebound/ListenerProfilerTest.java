@@ -0,0 +1,121 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class ListenerProfilerTest {
+
+  private BaseSpringSystem mSpringSystem;
+  private ListenerProfiler mProfiler;
+
+  @Before
+  public void beforeEach() {
+    mSpringSystem = new BaseSpringSystem(new SteppingLooper());
+    mProfiler = new ListenerProfiler();
+    mSpringSystem.setListenerProfiler(mProfiler);
+  }
+
+  @Test
+  public void testCostsAreAggregatedByListenerClass() {
+    Spring first = mSpringSystem.createSpring().addListener(new SlowSpringListener(0));
+    Spring second = mSpringSystem.createSpring().addListener(new SlowSpringListener(0));
+    mSpringSystem.addListener(new SlowSystemListener(1));
+    first.setEndValue(1);
+    second.setEndValue(1);
+    mSpringSystem.loop(16);
+    mSpringSystem.loop(16);
+
+    ListenerProfiler.ListenerCost springCost = mProfiler.getCost(SlowSpringListener.class);
+    assertEquals(4, springCost.getCallCount());
+    ListenerProfiler.ListenerCost systemCost = mProfiler.getCost(SlowSystemListener.class);
+    // before and after integrate on each loop
+    assertEquals(4, systemCost.getCallCount());
+    assertTrue(systemCost.getMaxCallMillis() >= 1);
+
+    List<ListenerProfiler.ListenerCost> top = mProfiler.getTopListeners(1);
+    assertEquals(1, top.size());
+    assertEquals(SlowSystemListener.class, top.get(0).getListenerClass());
+
+    mProfiler.reset();
+    assertNull(mProfiler.getCost(SlowSpringListener.class));
+  }
+
+  @Test
+  public void testListenersOverBudgetAreReported() {
+    ListenerBudgetListener budgetListener = mock(ListenerBudgetListener.class);
+    mProfiler.addBudgetListener(budgetListener);
+    mProfiler.setListenerBudget(2);
+    SlowSpringListener fast = new SlowSpringListener(0);
+    SlowSpringListener slow = new SlowSpringListener(3);
+    mSpringSystem.createSpring().addListener(fast).setEndValue(1);
+    mSpringSystem.createSpring().addListener(slow).setEndValue(1);
+    mSpringSystem.loop(16);
+
+    verify(budgetListener).onListenerBudgetExceeded(eq(mSpringSystem), eq(slow), anyDouble());
+    verify(budgetListener, never())
+        .onListenerBudgetExceeded(eq(mSpringSystem), eq(fast), anyDouble());
+
+    // the budget applies to each loop on its own
+    slow.mSleepMillis = 0;
+    mSpringSystem.loop(16);
+    verify(budgetListener, times(1))
+        .onListenerBudgetExceeded(eq(mSpringSystem), eq(slow), anyDouble());
+  }
+
+  private static void sleep(long millis) {
+    if (millis == 0) {
+      return;
+    }
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static class SlowSpringListener extends SimpleSpringListener {
+    long mSleepMillis;
+
+    SlowSpringListener(long sleepMillis) {
+      mSleepMillis = sleepMillis;
+    }
+
+    @Override
+    public void onSpringUpdate(Spring spring) {
+      sleep(mSleepMillis);
+    }
+  }
+
+  private static class SlowSystemListener implements SpringSystemListener {
+    private final long mSleepMillis;
+
+    SlowSystemListener(long sleepMillis) {
+      mSleepMillis = sleepMillis;
+    }
+
+    @Override
+    public void onBeforeIntegrate(BaseSpringSystem springSystem) {
+      sleep(mSleepMillis);
+    }
+
+    @Override
+    public void onAfterIntegrate(BaseSpringSystem springSystem) {
+      sleep(mSleepMillis);
+    }
+  }
+}
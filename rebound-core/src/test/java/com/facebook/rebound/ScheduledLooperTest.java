@@ -0,0 +1,111 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ScheduledLooperTest {
+
+  private ScheduledLooper mLooper;
+
+  @After
+  public void afterEach() {
+    if (mLooper != null) {
+      mLooper.shutdown();
+    }
+  }
+
+  @Test
+  public void testLoopsOnSchedulerThreadUntilIdle() throws InterruptedException {
+    mLooper = new ScheduledLooper();
+    mLooper.setFrameRate(120);
+    BaseSpringSystem springSystem = new BaseSpringSystem(mLooper);
+    final AtomicInteger loops = new AtomicInteger();
+    springSystem.addListener(new SpringSystemListener() {
+      @Override
+      public void onBeforeIntegrate(BaseSpringSystem springSystem) {
+        loops.incrementAndGet();
+      }
+
+      @Override
+      public void onAfterIntegrate(BaseSpringSystem springSystem) {
+      }
+    });
+    final CountDownLatch atRest = new CountDownLatch(1);
+    Spring spring = springSystem.createSpring().addListener(new SimpleSpringListener() {
+      @Override
+      public void onSpringAtRest(Spring spring) {
+        atRest.countDown();
+      }
+    });
+    spring.setEndValue(1);
+    assertTrue(atRest.await(5, TimeUnit.SECONDS));
+    assertEquals(1, spring.getCurrentValue(), 0);
+
+    // parked while idle
+    Thread.sleep(50);
+    int idleLoops = loops.get();
+    Thread.sleep(100);
+    assertEquals(idleLoops, loops.get());
+    assertTrue(springSystem.getIsIdle());
+  }
+
+  @Test
+  public void testFramesAreCoalescedWhileExecutorIsBusy() throws InterruptedException {
+    final List<Runnable> queued = new ArrayList<Runnable>();
+    mLooper = new ScheduledLooper(new Executor() {
+      @Override
+      public void execute(Runnable frame) {
+        synchronized (queued) {
+          queued.add(frame);
+        }
+      }
+    });
+    mLooper.setFrameRate(200);
+    BaseSpringSystem springSystem = new BaseSpringSystem(mLooper);
+    Spring spring = springSystem.createSpring().setEndValue(1);
+
+    Thread.sleep(100);
+    Runnable frame;
+    synchronized (queued) {
+      assertEquals(1, queued.size());
+      frame = queued.remove(0);
+    }
+    assertTrue(mLooper.getCoalescedFrameCount() > 0);
+    assertEquals(0, spring.getCurrentValue(), 0);
+
+    // the frame that runs covers all the time since the spring started
+    frame.run();
+    assertTrue(spring.getCurrentValue() > 0);
+  }
+
+  @Test
+  public void testFrameRate() {
+    mLooper = new ScheduledLooper();
+    mLooper.setFrameRate(90);
+    assertEquals(90, mLooper.getFrameRate(), 0.01);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testThreadFactoryIsRequired() {
+    new ScheduledLooper(null, null);
+  }
+}
@@ -0,0 +1,203 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SpringBakerTest {
+
+  private static final SpringConfig CONFIG = SpringConfig.fromOrigamiTensionAndFriction(40, 7);
+
+  @Test
+  public void testTrackFollowsTheSpringSystem() {
+    SpringBaker.Track track = new SpringBaker(60).bake(new SpringBaker.Curve("a", CONFIG, 0, 1, 0));
+
+    BaseSpringSystem springSystem = new BaseSpringSystem(new SteppingLooper());
+    Spring spring = springSystem.createSpring().setSpringConfig(CONFIG).setEndValue(1);
+    assertEquals(0, track.getValue(0), 0);
+    int frame = 1;
+    while (!springSystem.getIsIdle()) {
+      springSystem.loop(1000.0 / 60);
+      if (frame < track.getFrameCount()) {
+        assertEquals((float) spring.getCurrentValue(), track.getValue(frame), 0);
+      }
+      frame++;
+    }
+    // the system needs one more loop to notice the spring came to rest
+    assertEquals(frame - 1, track.getFrameCount());
+    assertEquals(1, track.getValue(track.getFrameCount() - 1), 0);
+    assertEquals((track.getFrameCount() - 1) * 1000.0 / 60, track.getDurationMillis(), 1e-9);
+  }
+
+  @Test
+  public void testTrackIsCutOffAtMaxDuration() {
+    SpringBaker baker = new SpringBaker(100);
+    baker.setMaxDuration(100);
+    SpringBaker.Track track =
+        baker.bake(new SpringBaker.Curve("a", new SpringConfig(10, 0), 0, 1, 0));
+    assertEquals(11, track.getFrameCount());
+  }
+
+  @Test
+  public void testRestingCurveHasOneFrame() {
+    SpringBaker.Track track = new SpringBaker(60).bake(new SpringBaker.Curve("a", CONFIG, 1, 1, 0));
+    assertEquals(1, track.getFrameCount());
+    assertEquals(0, track.getDurationMillis(), 0);
+  }
+
+  @Test
+  public void testParallelBakeMatchesSequentialBake() {
+    List<SpringBaker.Curve> curves = new ArrayList<SpringBaker.Curve>();
+    for (int i = 0; i < 200; i++) {
+      curves.add(new SpringBaker.Curve(
+          "curve" + i,
+          SpringConfig.fromOrigamiTensionAndFriction(10 + i % 50, 3 + i % 10),
+          0,
+          i % 7,
+          i % 3));
+    }
+    SpringBaker baker = new SpringBaker(60);
+    List<SpringBaker.Track> parallel = baker.bakeAll(curves, 4);
+    assertEquals(curves.size(), parallel.size());
+    for (int i = 0; i < curves.size(); i++) {
+      SpringBaker.Track expected = baker.bake(curves.get(i));
+      SpringBaker.Track actual = parallel.get(i);
+      assertSame(curves.get(i), actual.getCurve());
+      assertEquals(expected.getFrameCount(), actual.getFrameCount());
+      for (int frame = 0; frame < expected.getFrameCount(); frame++) {
+        assertEquals(expected.getValue(frame), actual.getValue(frame), 0);
+      }
+    }
+  }
+
+  @Test
+  public void testWriteJson() throws IOException {
+    List<SpringBaker.Track> tracks = Collections.singletonList(
+        new SpringBaker(60).bake(new SpringBaker.Curve("a\"b", CONFIG, 0, 1, 0)));
+    StringWriter out = new StringWriter();
+    SpringTrackWriter.writeJson(tracks, 3, out);
+    String json = out.toString();
+    assertTrue(json.startsWith("{\"fps\":60,\"tracks\":[\n{\"name\":\"a\\\"b\",\"tension\":"));
+    assertTrue(json.contains(",\"start\":0,\"end\":1,\"velocity\":0,"));
+    assertTrue(json.contains("\"values\":[0,"));
+    assertTrue(json.endsWith(",1]}\n]}\n"));
+  }
+
+  @Test
+  public void testWriteCss() throws IOException {
+    SpringBaker.Track track =
+        new SpringBaker(60).bake(new SpringBaker.Curve("pop", CONFIG, 0, 1, 0));
+    StringWriter out = new StringWriter();
+    SpringTrackWriter.writeCss(Collections.singletonList(track), "opacity: %s", 2, out);
+    String css = out.toString();
+    assertTrue(css.startsWith("@keyframes pop {\n  0% { opacity: 0; }\n"));
+    assertTrue(css.contains("  100% { opacity: 1; }\n}\n.pop {\n  animation: pop "));
+    assertTrue(css.endsWith("ms linear both;\n}\n"));
+  }
+
+  @Test
+  public void testWriteCssEscapesNames() throws IOException {
+    SpringBaker.Track track =
+        new SpringBaker(60).bake(new SpringBaker.Curve("1 card.big", CONFIG, 0, 1, 0));
+    StringWriter out = new StringWriter();
+    SpringTrackWriter.writeCss(Collections.singletonList(track), "opacity: %s", 2, out);
+    String css = out.toString();
+    assertTrue(css.startsWith("@keyframes \\31 \\ card\\.big {\n"));
+    assertTrue(css.contains("}\n.\\31 \\ card\\.big {\n  animation: \\31 \\ card\\.big "));
+  }
+
+  @Test
+  public void testAppendCssIdentifier() {
+    StringBuilder out = new StringBuilder();
+    SpringTrackWriter.appendCssIdentifier(out, "card-title_2");
+    out.append(' ');
+    SpringTrackWriter.appendCssIdentifier(out, "-9a");
+    out.append(' ');
+    SpringTrackWriter.appendCssIdentifier(out, "-");
+    out.append(' ');
+    SpringTrackWriter.appendCssIdentifier(out, "a\tb#c");
+    assertEquals("card-title_2 -\\39 a \\- a\\9 b\\#c", out.toString());
+  }
+
+  @Test
+  public void testWriteBinary() throws IOException {
+    SpringBaker.Track track = new SpringBaker(60).bake(new SpringBaker.Curve("a", CONFIG, 0, 1, 2));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    SpringTrackWriter.writeBinary(Collections.singletonList(track), out);
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(SpringTrackWriter.BINARY_MAGIC, in.readInt());
+    assertEquals(SpringTrackWriter.BINARY_VERSION, in.readInt());
+    assertEquals(60, in.readFloat(), 0);
+    assertEquals(1, in.readInt());
+    assertEquals("a", in.readUTF());
+    assertEquals((float) CONFIG.tension, in.readFloat(), 0);
+    assertEquals((float) CONFIG.friction, in.readFloat(), 0);
+    assertEquals(0, in.readFloat(), 0);
+    assertEquals(1, in.readFloat(), 0);
+    assertEquals(2, in.readFloat(), 0);
+    assertEquals(track.getFrameCount(), in.readInt());
+    for (int frame = 0; frame < track.getFrameCount(); frame++) {
+      assertEquals(track.getValue(frame), in.readFloat(), 0);
+    }
+    assertEquals(-1, in.read());
+  }
+
+  @Test
+  public void testAppendDecimal() {
+    StringBuilder out = new StringBuilder();
+    SpringTrackWriter.appendDecimal(out, 1.23456, 4);
+    out.append(' ');
+    SpringTrackWriter.appendDecimal(out, -0.00012, 4);
+    out.append(' ');
+    SpringTrackWriter.appendDecimal(out, 0.0304, 3);
+    out.append(' ');
+    SpringTrackWriter.appendDecimal(out, -0.00001, 4);
+    out.append(' ');
+    SpringTrackWriter.appendDecimal(out, 1e-9, 4);
+    assertEquals("1.2346 -0.0001 0.03 0 0", out.toString());
+  }
+
+  @Test
+  public void testWritersRejectDecimalsOutOfRange() throws IOException {
+    List<SpringBaker.Track> tracks = Collections.singletonList(
+        new SpringBaker(60).bake(new SpringBaker.Curve("a", CONFIG, 0, 1, 0)));
+    int[] invalid = {-1, SpringTrackWriter.MAX_DECIMALS + 1, 64};
+    for (int decimals : invalid) {
+      try {
+        SpringTrackWriter.writeJson(tracks, decimals, new StringWriter());
+        fail("writeJson accepted " + decimals + " decimals");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+      try {
+        SpringTrackWriter.writeCss(tracks, "opacity: %s", decimals, new StringWriter());
+        fail("writeCss accepted " + decimals + " decimals");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+    StringWriter out = new StringWriter();
+    SpringTrackWriter.writeJson(tracks, SpringTrackWriter.MAX_DECIMALS, out);
+    assertTrue(out.toString().contains(",\"start\":0,\"end\":1,\"velocity\":0,"));
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SpringGraphTest {
+
+  private BaseSpringSystem mSpringSystem;
+  private SpringGraph mGraph;
+
+  @Before
+  public void beforeEach() {
+    mSpringSystem = new BaseSpringSystem(new SteppingLooper());
+    mGraph = new SpringGraph(mSpringSystem);
+  }
+
+  private void loopUntilIdle() {
+    int frames = 0;
+    while (!mSpringSystem.getIsIdle() && frames < 2000) {
+      mSpringSystem.loop(16);
+      frames++;
+    }
+    assertTrue(mSpringSystem.getIsIdle());
+  }
+
+  @Test
+  public void testChildrenTrailTheirParent() {
+    Spring card = mGraph.addSpring();
+    Spring title = mGraph.addSpring();
+    Spring image = mGraph.addSpring();
+    Spring caption = mGraph.addSpring();
+    mGraph.attach(title, card).attach(image, card).attach(caption, image);
+
+    card.setEndValue(1);
+    mSpringSystem.loop(16);
+    assertTrue(card.getCurrentValue() > title.getCurrentValue());
+    assertTrue(title.getCurrentValue() > 0);
+    assertEquals(title.getCurrentValue(), image.getCurrentValue(), 1e-12);
+    assertTrue(image.getCurrentValue() > caption.getCurrentValue());
+
+    loopUntilIdle();
+    for (Spring spring : mGraph.getAllSprings()) {
+      assertEquals(1, spring.getCurrentValue(), 0);
+      assertTrue(spring.isAtRest());
+    }
+  }
+
+  @Test
+  public void testEachSpringIsNotifiedOncePerLoopInTopologicalOrder() {
+    final List<Spring> updates = new ArrayList<Spring>();
+    SimpleSpringListener listener = new SimpleSpringListener() {
+      @Override
+      public void onSpringUpdate(Spring spring) {
+        updates.add(spring);
+      }
+    };
+    // added out of order so the topological order differs from the insertion order
+    Spring leaf = mGraph.addSpring();
+    Spring middle = mGraph.addSpring();
+    Spring root = mGraph.addSpring();
+    mGraph.attach(leaf, middle).attach(middle, root);
+    for (Spring spring : mGraph.getAllSprings()) {
+      spring.addListener(listener);
+    }
+    root.setEndValue(1);
+    mSpringSystem.loop(16);
+    assertEquals(3, updates.size());
+    assertSame(root, updates.get(0));
+    assertSame(middle, updates.get(1));
+    assertSame(leaf, updates.get(2));
+  }
+
+  @Test
+  public void testGridTilesTrailTheirNeighbours() {
+    int size = 4;
+    Spring[][] tiles = new Spring[size][size];
+    for (int row = 0; row < size; row++) {
+      for (int column = 0; column < size; column++) {
+        tiles[row][column] = mGraph.addSpring();
+        if (row > 0) {
+          mGraph.attach(tiles[row][column], tiles[row - 1][column]);
+        }
+        if (column > 0) {
+          mGraph.attach(tiles[row][column], tiles[row][column - 1]);
+        }
+      }
+    }
+    assertEquals(2, mGraph.getParents(tiles[1][1]).size());
+    tiles[0][0].setEndValue(1);
+    mSpringSystem.loop(16);
+    assertTrue(tiles[1][1].getCurrentValue() > tiles[size - 1][size - 1].getCurrentValue());
+    loopUntilIdle();
+    assertEquals(1, tiles[size - 1][size - 1].getCurrentValue(), 0);
+  }
+
+  @Test
+  public void testDetachWhileAtRestMovesTheChild() {
+    Spring left = mGraph.addSpring();
+    Spring right = mGraph.addSpring();
+    Spring child = mGraph.addSpring();
+    mGraph.attach(child, left).attach(child, right);
+    left.setEndValue(1);
+    loopUntilIdle();
+    assertEquals(0.5, child.getCurrentValue(), 1e-9);
+
+    mGraph.detach(child, right);
+    assertFalse(mSpringSystem.getIsIdle());
+    loopUntilIdle();
+    assertEquals(1, child.getCurrentValue(), 1e-9);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCyclesAreRejected() {
+    Spring a = mGraph.addSpring();
+    Spring b = mGraph.addSpring();
+    Spring c = mGraph.addSpring();
+    mGraph.attach(b, a).attach(c, b).attach(a, c);
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class SpringNetworkTest {
+
+  private static final int SIZE = 5;
+  private static final SpringConfig ANCHOR = SpringConfig.fromOrigamiTensionAndFriction(40, 7);
+  private static final SpringConfig LINK = SpringConfig.fromOrigamiTensionAndFriction(60, 3);
+
+  private BaseSpringSystem mSpringSystem;
+  private SpringNetwork mNetwork;
+
+  @Before
+  public void beforeEach() {
+    mSpringSystem = new BaseSpringSystem(new SteppingLooper());
+    mNetwork = new SpringNetwork(mSpringSystem);
+    // a SIZE x SIZE grid of anchored tiles, each linked to its right and lower neighbour
+    for (int row = 0; row < SIZE; row++) {
+      for (int column = 0; column < SIZE; column++) {
+        int node = mNetwork.addNode(0, ANCHOR);
+        if (column > 0) {
+          mNetwork.link(node - 1, node, LINK);
+        }
+        if (row > 0) {
+          mNetwork.link(node - SIZE, node, LINK);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testPokeRipplesWithinTheSameLoop() {
+    assertEquals(SIZE * SIZE, mNetwork.getNodeCount());
+    assertEquals(2 * SIZE * (SIZE - 1), mNetwork.getLinkCount());
+    assertTrue(mSpringSystem.getIsIdle());
+
+    mNetwork.setVelocity(0, 100);
+    assertTrue(mNetwork.isActive());
+    assertFalse(mSpringSystem.getIsIdle());
+    mSpringSystem.loop(16);
+    // the poked corner moved most and its neighbours were already pulled along
+    assertTrue(mNetwork.getValue(0) > mNetwork.getValue(1));
+    assertTrue(mNetwork.getValue(1) > 0);
+    assertEquals(mNetwork.getValue(1), mNetwork.getValue(SIZE), 1e-12);
+    assertTrue(mNetwork.getValue(SIZE * SIZE - 1) >= 0);
+  }
+
+  @Test
+  public void testNetworkSettlesBackAndNotifiesOncePerLoop() {
+    SpringNetworkListener listener = mock(SpringNetworkListener.class);
+    mNetwork.addListener(listener);
+    mNetwork.setValue(SIZE * 2 + 2, 1);
+    int loops = 0;
+    while (!mSpringSystem.getIsIdle() && loops < 2000) {
+      mSpringSystem.loop(16);
+      loops++;
+    }
+    assertTrue(mSpringSystem.getIsIdle());
+    assertFalse(mNetwork.isActive());
+    for (int node = 0; node < mNetwork.getNodeCount(); node++) {
+      assertEquals(0, mNetwork.getValue(node), 0);
+      assertEquals(0, mNetwork.getVelocity(node), 0);
+    }
+    verify(listener, times(loops)).onNetworkUpdate(mNetwork);
+    verify(listener, times(1)).onNetworkAtRest(mNetwork);
+  }
+
+  @Test
+  public void testLinksHoldFreeNodes() {
+    SpringNetwork network = new SpringNetwork(mSpringSystem);
+    int anchored = network.addNode(10, ANCHOR);
+    int free = network.addNode(20);
+    network.link(anchored, free, LINK);
+    network.setVelocity(free, 50);
+    int loops = 0;
+    while (network.isActive() && loops < 2000) {
+      mSpringSystem.loop(16);
+      loops++;
+    }
+    assertFalse(network.isActive());
+    assertEquals(10, network.getValue(anchored), 0);
+    assertEquals(20, network.getValue(free), 0.01);
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SpringRecorderTest {
+
+  private BaseSpringSystem mSpringSystem;
+  private ByteArrayOutputStream mLog;
+  private SpringRecorder mRecorder;
+
+  @Before
+  public void beforeEach() {
+    mSpringSystem = new BaseSpringSystem(new SteppingLooper());
+    mLog = new ByteArrayOutputStream();
+    mRecorder = new SpringRecorder(mSpringSystem, mLog);
+  }
+
+  @Test
+  public void testReplayReproducesEveryLoop() throws IOException {
+    Spring existing = mSpringSystem.createSpring().setCurrentValue(3);
+    mRecorder.start();
+    final Spring leader = mSpringSystem.createSpring()
+        .setSpringConfig(SpringConfig.fromOrigamiTensionAndFriction(50, 5));
+    final Spring follower = mSpringSystem.createSpring().setOvershootClampingEnabled(true);
+    // the follower is started from inside the loop when the leader crosses half way
+    leader.addListener(new SimpleSpringListener() {
+      @Override
+      public void onSpringUpdate(Spring spring) {
+        if (spring.getCurrentValue() > 0.5 && follower.getEndValue() == 0) {
+          follower.setEndValue(2);
+          spring.setVelocity(spring.getVelocity() * 0.5);
+        }
+      }
+    });
+    leader.setEndValue(1);
+    existing.setEndValue(-1);
+
+    List<double[]> recorded = new ArrayList<double[]>();
+    double[] deltas = {16, 17, 15.5, 33, 16, 8, 16.7};
+    for (int i = 0; i < 120; i++) {
+      mSpringSystem.loop(deltas[i % deltas.length]);
+      recorded.add(new double[] {
+          existing.getCurrentValue(),
+          leader.getCurrentValue(),
+          follower.getCurrentValue()});
+    }
+    mRecorder.stop();
+    assertEquals(120, mRecorder.getLoopCount());
+    assertNull(mRecorder.getError());
+
+    SpringReplayer replayer = new SpringReplayer(new ByteArrayInputStream(mLog.toByteArray()));
+    for (int i = 0; i < 120; i++) {
+      assertTrue(replayer.replayLoop());
+      for (int s = 0; s < 3; s++) {
+        assertEquals(recorded.get(i)[s], replayer.getSpring(s).getCurrentValue(), 0);
+      }
+    }
+    assertFalse(replayer.replayLoop());
+    assertTrue(replayer.isFinished());
+    assertEquals(0, replayer.getUnmatchedRecordCount());
+    assertEquals(2, replayer.getSpring(2).getEndValue(), 0);
+  }
+
+  @Test
+  public void testReplayRestoresPriorities() throws IOException {
+    Spring existing = mSpringSystem.createSpring().setPriority(Spring.PRIORITY_CRITICAL);
+    mRecorder.start();
+    Spring created = mSpringSystem.createSpring().setPriority(Spring.PRIORITY_LOW);
+    mSpringSystem.loop(16);
+    existing.setPriority(Spring.PRIORITY_LOW);
+    created.setPriority(Spring.PRIORITY_NORMAL);
+    mRecorder.stop();
+
+    SpringReplayer replayer = new SpringReplayer(new ByteArrayInputStream(mLog.toByteArray()));
+    assertTrue(replayer.replayLoop());
+    assertEquals(Spring.PRIORITY_CRITICAL, replayer.getSpring(0).getPriority());
+    assertEquals(Spring.PRIORITY_LOW, replayer.getSpring(1).getPriority());
+    replayer.replay();
+    assertEquals(Spring.PRIORITY_LOW, replayer.getSpring(0).getPriority());
+    assertEquals(Spring.PRIORITY_NORMAL, replayer.getSpring(1).getPriority());
+  }
+
+  @Test
+  public void testStoppedRecorderLeavesSystemAlone() {
+    mRecorder.start();
+    assertTrue(mRecorder.isRecording());
+    mRecorder.stop();
+    assertFalse(mRecorder.isRecording());
+    int size = mLog.size();
+    mSpringSystem.createSpring().setEndValue(1);
+    mSpringSystem.loop(16);
+    assertEquals(size, mLog.size());
+  }
+}
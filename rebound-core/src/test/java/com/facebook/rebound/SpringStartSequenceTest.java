@@ -0,0 +1,156 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SpringStartSequenceTest {
+
+  private BaseSpringSystem mSpringSystem;
+
+  @Before
+  public void beforeEach() {
+    mSpringSystem = new BaseSpringSystem(new SteppingLooper());
+  }
+
+  @Test
+  public void testScheduledStartRunsAfterDelay() {
+    Spring spring = mSpringSystem.createSpring();
+    mSpringSystem.scheduleEndValue(spring, 1, 40);
+    assertFalse(mSpringSystem.getIsIdle());
+    assertEquals(1, mSpringSystem.getPendingScheduledStartCount());
+
+    mSpringSystem.loop(16);
+    mSpringSystem.loop(16);
+    assertEquals(0, spring.getEndValue(), 0);
+
+    mSpringSystem.loop(16);
+    assertEquals(1, spring.getEndValue(), 0);
+    assertEquals(0, mSpringSystem.getPendingScheduledStartCount());
+  }
+
+  @Test
+  public void testCancelledStartDoesNotRun() {
+    Spring spring = mSpringSystem.createSpring();
+    ScheduledSpringStart start = mSpringSystem.scheduleEndValue(spring, 1, 10);
+    start.cancel();
+    mSpringSystem.loop(16);
+    assertEquals(0, spring.getEndValue(), 0);
+    assertFalse(start.isDone());
+    assertTrue(mSpringSystem.getIsIdle());
+  }
+
+  @Test
+  public void testCancelledStartNoLongerKeepsTheSystemBusy() {
+    Spring spring = mSpringSystem.createSpring();
+    ScheduledSpringStart first = mSpringSystem.scheduleEndValue(spring, 1, 10000);
+    ScheduledSpringStart second = mSpringSystem.scheduleEndValue(spring, 2, 10000);
+    assertEquals(2, mSpringSystem.getPendingScheduledStartCount());
+
+    first.cancel();
+    first.cancel();
+    assertEquals(1, mSpringSystem.getPendingScheduledStartCount());
+    second.cancel();
+    assertEquals(0, mSpringSystem.getPendingScheduledStartCount());
+    mSpringSystem.loop(16);
+    assertTrue(mSpringSystem.getIsIdle());
+    assertEquals(0, spring.getEndValue(), 0);
+  }
+
+  @Test
+  public void testStartsScheduledByARunningStartAreNotDelayedByARevolution() {
+    final Spring first = mSpringSystem.createSpring();
+    final Spring chained = mSpringSystem.createSpring();
+    final Spring delayed = mSpringSystem.createSpring();
+    mSpringSystem.schedule(new ScheduledSpringStart(first, 1) {
+      @Override
+      void onStart(BaseSpringSystem springSystem) {
+        super.onStart(springSystem);
+        springSystem.schedule(new ScheduledSpringStart(chained, 1), 0);
+        springSystem.schedule(new ScheduledSpringStart(delayed, 1), 8);
+      }
+    }, 16);
+
+    mSpringSystem.loop(16);
+    assertEquals(1, first.getEndValue(), 0);
+    assertEquals(1, chained.getEndValue(), 0);
+    assertEquals(0, delayed.getEndValue(), 0);
+    mSpringSystem.loop(16);
+    assertEquals(1, delayed.getEndValue(), 0);
+    assertEquals(0, mSpringSystem.getPendingScheduledStartCount());
+  }
+
+  @Test
+  public void testStartsScheduledDuringALongFrameKeepTheirDelay() {
+    final Spring first = mSpringSystem.createSpring();
+    final Spring delayed = mSpringSystem.createSpring();
+    mSpringSystem.schedule(new ScheduledSpringStart(first, 1) {
+      @Override
+      void onStart(BaseSpringSystem springSystem) {
+        super.onStart(springSystem);
+        // due 8ms after the end of the long frame that ran this start
+        springSystem.schedule(new ScheduledSpringStart(delayed, 1), 8);
+      }
+    }, 10);
+
+    mSpringSystem.loop(2000);
+    assertEquals(1, first.getEndValue(), 0);
+    assertEquals(0, delayed.getEndValue(), 0);
+    mSpringSystem.loop(16);
+    assertEquals(1, delayed.getEndValue(), 0);
+  }
+
+  @Test
+  public void testStartsBeyondOneRevolutionWaitForTheirTick() {
+    Spring spring = mSpringSystem.createSpring();
+    mSpringSystem.scheduleEndValue(spring, 1, 5000);
+    for (int i = 0; i < 300; i++) {
+      mSpringSystem.loop(16);
+    }
+    assertEquals(0, spring.getEndValue(), 0);
+    for (int i = 0; i < 20; i++) {
+      mSpringSystem.loop(16);
+    }
+    assertEquals(1, spring.getEndValue(), 0);
+  }
+
+  @Test
+  public void testStaggeredAndParallelSteps() {
+    List<Spring> springs = new ArrayList<Spring>();
+    for (int i = 0; i < 3; i++) {
+      springs.add(mSpringSystem.createSpring());
+    }
+    Spring parallel = mSpringSystem.createSpring();
+    SpringStartSequence sequence = SpringStartSequence
+        .staggered(springs, 1, 20)
+        .with(parallel, 2);
+    assertEquals(40, sequence.getDuration(), 0);
+
+    List<ScheduledSpringStart> starts = sequence.schedule(mSpringSystem, 0);
+    assertEquals(4, starts.size());
+    assertEquals(1, springs.get(0).getEndValue(), 0);
+    assertEquals(0, springs.get(1).getEndValue(), 0);
+
+    mSpringSystem.loop(20);
+    assertEquals(1, springs.get(1).getEndValue(), 0);
+    assertEquals(0, springs.get(2).getEndValue(), 0);
+
+    mSpringSystem.loop(20);
+    assertEquals(1, springs.get(2).getEndValue(), 0);
+    assertEquals(2, parallel.getEndValue(), 0);
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class SpringStateExporterTest {
+
+  private File mFile;
+  private BaseSpringSystem mSpringSystem;
+  private SpringStateExporter mExporter;
+  private SpringStateReader mReader;
+
+  @Before
+  public void beforeEach() throws IOException {
+    mFile = File.createTempFile("springs", ".bin");
+    mSpringSystem = new BaseSpringSystem(new SteppingLooper());
+    mExporter = new SpringStateExporter(mSpringSystem, mFile, 4, 2);
+    mReader = new SpringStateReader(mFile);
+  }
+
+  @After
+  public void afterEach() throws IOException {
+    mReader.close();
+    mExporter.close();
+    mFile.delete();
+  }
+
+  @Test
+  public void testReaderSeesEveryActiveSpringOfTheLatestLoop() {
+    SpringStateReader.Frame frame = mReader.createFrame();
+    assertEquals(-1, mReader.getLatestFrame());
+    assertFalse(mReader.readLatest(frame));
+
+    Spring spring = mSpringSystem.createSpring().setEndValue(1);
+    mSpringSystem.loop(16);
+    assertTrue(mReader.readLatest(frame));
+    assertEquals(0, frame.getFrame());
+    assertEquals(1, frame.getSpringCount());
+    assertEquals(spring.getNumericId(), frame.getSpringId(0));
+    assertEquals(spring.getCurrentValue(), frame.getPosition(0), 0);
+    assertEquals(spring.getVelocity(), frame.getVelocity(0), 0);
+    assertEquals(1, frame.getEndValue(0), 0);
+  }
+
+  @Test
+  public void testRingKeepsRecentFramesAndCountsDroppedSprings() {
+    for (int i = 0; i < 3; i++) {
+      mSpringSystem.createSpring().setEndValue(1);
+    }
+    for (int i = 0; i < 6; i++) {
+      mSpringSystem.loop(16);
+    }
+    assertEquals(6, mExporter.getFrameCount());
+    SpringStateReader.Frame frame = mReader.createFrame();
+    assertFalse(mReader.read(1, frame));
+    assertTrue(mReader.read(2, frame));
+    assertEquals(2, frame.getSpringCount());
+    assertEquals(1, frame.getDroppedSpringCount());
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    SpringStateReader.print(frame, true, new PrintStream(output));
+    assertTrue(output.toString().startsWith("frame 2"));
+  }
+
+  @Test
+  public void testReaderRejectsHeaderThatDoesNotFitTheFile() throws IOException {
+    byte[] export = new byte[(int) mFile.length()];
+    RandomAccessFile exported = new RandomAccessFile(mFile, "r");
+    try {
+      exported.readFully(export);
+    } finally {
+      exported.close();
+    }
+    int[][] headers = {{4, 0}, {0, 2}, {-1, 2}, {5, 2}, {4, Integer.MAX_VALUE}};
+    for (int[] header : headers) {
+      File corrupt = File.createTempFile("springs", ".bin");
+      RandomAccessFile file = new RandomAccessFile(corrupt, "rw");
+      try {
+        file.write(export);
+        file.seek(SpringStateExporter.HEADER_SLOT_COUNT);
+        file.writeInt(header[0]);
+        file.writeInt(header[1]);
+      } finally {
+        file.close();
+      }
+      try {
+        new SpringStateReader(corrupt).close();
+        fail("reader accepted " + header[0] + " slots of " + header[1] + " springs");
+      } catch (IOException e) {
+        assertEquals("not a spring state export", e.getMessage());
+      } finally {
+        corrupt.delete();
+      }
+    }
+  }
+}
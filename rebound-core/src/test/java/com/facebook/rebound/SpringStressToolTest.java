@@ -0,0 +1,76 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.*;
+
+public class SpringStressToolTest {
+
+  @Test
+  public void testRunMeasuresEveryFrameAfterWarmup() {
+    SpringStressTool.Workload workload = new SpringStressTool.Workload();
+    workload.springCount = 50;
+    workload.frames = 30;
+    workload.warmupFrames = 10;
+    workload.paced = false;
+    workload.listenerCostMicros = 1;
+    workload.budgetMillis = 0;
+    SpringStressTool.Result result = SpringStressTool.run(workload);
+    assertEquals(50, result.getSpringCount());
+    assertEquals(30, result.getFrameNanos().getCount());
+    assertEquals(30, result.getFramesOverBudget());
+    assertTrue(result.getFrameMillis(50) <= result.getFrameMillis(99));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    SpringStressTool.print(result, new PrintStream(out));
+    String report = out.toString();
+    assertTrue(report.startsWith("springs=50 frames=30\n"));
+    assertTrue(report.contains("over 0.000ms budget: 30 frames (100.0%)"));
+  }
+
+  @Test
+  public void testPacedRunTakesFrameTime() {
+    SpringStressTool.Workload workload = new SpringStressTool.Workload();
+    workload.springCount = 5;
+    workload.frames = 5;
+    workload.warmupFrames = 0;
+    workload.frameMillis = 10;
+    long start = System.nanoTime();
+    SpringStressTool.run(workload);
+    assertTrue(System.nanoTime() - start >= 50 * 1000000L);
+  }
+
+  @Test
+  public void testNothingFitsAZeroBudget() {
+    SpringStressTool.Workload workload = new SpringStressTool.Workload();
+    workload.budgetMillis = 0;
+    assertEquals(0, SpringStressTool.findMaxSpringCount(workload));
+  }
+
+  @Test
+  public void testParseConfigs() {
+    SpringConfig[] configs = SpringStressTool.parseConfigs("40:7, 230:22");
+    assertEquals(2, configs.length);
+    SpringConfig expected = SpringConfig.fromOrigamiTensionAndFriction(230, 22);
+    assertEquals(expected.tension, configs[1].tension, 0);
+    assertEquals(expected.friction, configs[1].friction, 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseConfigsRejectsMissingFriction() {
+    SpringStressTool.parseConfigs("40");
+  }
+}
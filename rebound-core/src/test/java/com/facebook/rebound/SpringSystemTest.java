@@ -14,6 +14,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InOrder;
 
+import java.nio.ByteBuffer;
+import java.util.List;
+
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
@@ -180,6 +183,327 @@ public class SpringSystemTest {
     mSpringSystemSpy.loop(1);
   }
 
+  @Test
+  public void testFrameRatePolicyAdvancesSlowSpringsLessOften() {
+    BaseSpringSystem springSystem = new BaseSpringSystem(mSynchronousLooper);
+    mSynchronousLooper.setSpringSystem(springSystem);
+    mSynchronousLooper.setFrameRate(120);
+    springSystem.setFrameRatePolicy(new VelocityFrameRatePolicy(0.001, 4));
+
+    Spring spring = springSystem.createSpring().setCurrentValue(0).setEndValue(1);
+
+    assertTrue(springSystem.getIsIdle());
+    assertEquals(1, spring.getCurrentValue(), 0);
+    assertTrue(springSystem.getFrameIntervalTickCount(1) > 0);
+    assertTrue(springSystem.getFrameIntervalTickCount(2) + springSystem.getFrameIntervalTickCount(4) > 0);
+
+    springSystem.resetFrameIntervalTickCounts();
+    assertEquals(0, springSystem.getFrameIntervalTickCount(2));
+  }
+
+  @Test
+  public void testFrameBudgetDegradesOnlyNonCriticalSprings() {
+    SteppingLooper looper = new SteppingLooper();
+    BaseSpringSystem springSystem = new BaseSpringSystem(looper);
+    FrameBudgetListener budgetListener = mock(FrameBudgetListener.class);
+    springSystem.addFrameBudgetListener(budgetListener);
+    // a budget of one nanosecond is always exceeded
+    springSystem.setFrameBudget(0.000001);
+
+    Spring critical = springSystem.createSpring().setPriority(Spring.PRIORITY_CRITICAL);
+    Spring low = springSystem.createSpring().setPriority(Spring.PRIORITY_LOW);
+    critical.setCurrentValue(0).setEndValue(1);
+    low.setCurrentValue(0).setEndValue(1);
+
+    SteppingLooper referenceLooper = new SteppingLooper();
+    BaseSpringSystem referenceSystem = new BaseSpringSystem(referenceLooper);
+    Spring reference = referenceSystem.createSpring().setCurrentValue(0).setEndValue(1);
+
+    for (int i = 0; i < 6; i++) {
+      springSystem.loop(16);
+      referenceSystem.loop(16);
+      assertEquals(reference.getCurrentValue(), critical.getCurrentValue(), 0);
+    }
+    assertTrue(springSystem.getFrameIntervalTickCount(2) > 0);
+    verify(budgetListener, atLeastOnce())
+        .onFrameBudgetExceeded(eq(springSystem), anyDouble(), eq(1));
+
+    while (!springSystem.getIsIdle()) {
+      springSystem.loop(16);
+    }
+    assertEquals(1, low.getCurrentValue(), 0);
+  }
+
+  @Test
+  public void testSnapshotRestoresStateWithoutListenerStorm() {
+    BaseSpringSystem springSystem = new BaseSpringSystem(new SteppingLooper());
+    Spring moving = springSystem.createSpring()
+        .setSpringConfig(SpringConfig.fromOrigamiTensionAndFriction(30, 4))
+        .setEndValue(10);
+    Spring resting = springSystem.createSpring()
+        .setCurrentValue(3)
+        .setOvershootClampingEnabled(true);
+    springSystem.loop(16);
+    springSystem.loop(16);
+    ByteBuffer snapshot = springSystem.snapshot();
+    assertEquals(springSystem.getSnapshotSize(), snapshot.remaining());
+
+    // the screen is re-created: same springs, default state
+    BaseSpringSystem restoredSystem = new BaseSpringSystem(new SteppingLooper());
+    Spring restoredMoving = restoredSystem.createSpring();
+    SpringListener listener = mock(SpringListener.class);
+    restoredMoving.addListener(listener);
+    SpringRestoreListener restoreListener = mock(SpringRestoreListener.class);
+    restoredSystem.addRestoreListener(restoreListener);
+    List<Spring> restored = restoredSystem.restore(snapshot);
+
+    assertEquals(2, restored.size());
+    assertSame(restoredMoving, restored.get(0));
+    Spring restoredResting = restored.get(1);
+    verify(restoreListener, times(1)).onSpringsRestored(restoredSystem, restored);
+    verify(listener, never()).onSpringUpdate(any(Spring.class));
+    verify(listener, never()).onSpringActivate(any(Spring.class));
+    verify(listener, never()).onSpringEndStateChange(any(Spring.class));
+    assertEquals(moving.getCurrentValue(), restoredMoving.getCurrentValue(), 0);
+    assertEquals(moving.getVelocity(), restoredMoving.getVelocity(), 0);
+    assertEquals(10, restoredMoving.getEndValue(), 0);
+    assertEquals(3, restoredResting.getCurrentValue(), 0);
+    assertTrue(restoredResting.isOvershootClampingEnabled());
+    assertFalse(restoredSystem.getIsIdle());
+
+    // both systems continue identically from the snapshot
+    for (int i = 0; i < 20; i++) {
+      springSystem.loop(16);
+      restoredSystem.loop(16);
+      assertEquals(moving.getCurrentValue(), restoredMoving.getCurrentValue(), 0);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRestoreRejectsTruncatedSnapshot() {
+    BaseSpringSystem springSystem = new BaseSpringSystem(new SteppingLooper());
+    springSystem.createSpring();
+    ByteBuffer snapshot = springSystem.snapshot();
+    snapshot.limit(snapshot.limit() - 1);
+    new BaseSpringSystem(new SteppingLooper()).restore(snapshot);
+  }
+
+  @Test
+  public void testRestoreRejectsInvalidPriority() {
+    BaseSpringSystem springSystem = new BaseSpringSystem(new SteppingLooper());
+    springSystem.createSpring();
+    ByteBuffer snapshot = springSystem.snapshot();
+    snapshot.put(snapshot.limit() - 1, (byte) 7);
+    BaseSpringSystem restored = new BaseSpringSystem(new SteppingLooper());
+    try {
+      restored.restore(snapshot);
+      fail("restore accepted an invalid priority");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    assertTrue(restored.getAllSprings().isEmpty());
+  }
+
+  @Test
+  public void testMetricsAreOnlyCollectedWhileEnabled() {
+    BaseSpringSystem springSystem = new BaseSpringSystem(new SteppingLooper());
+    assertNull(springSystem.getMetrics());
+    Spring spring = springSystem.createSpring().setEndValue(1);
+    springSystem.loop(16);
+
+    springSystem.setMetricsEnabled(true);
+    springSystem.createSpring().setEndValue(1);
+    int loops = 0;
+    while (!springSystem.getIsIdle()) {
+      springSystem.loop(16);
+      loops++;
+    }
+    SpringSystemMetrics metrics = springSystem.getMetrics();
+    assertEquals(loops, metrics.getLoopCount());
+    assertEquals(1, metrics.getActivationCount());
+    assertEquals(2, metrics.getDeactivationCount());
+    assertEquals(2, metrics.getActiveSpringCount().getMax());
+    // two springs each integrated over 16ms in 1ms steps
+    assertEquals(32, metrics.getSolverIterations().getValueAtPercentile(50));
+    assertEquals(
+        Math.round(metrics.getSolverIterations().getMean() * loops),
+        metrics.getSolverIterationCount());
+    assertTrue(metrics.getLoopNanos().getMax() >= metrics.getIntegrationNanos().getMax());
+
+    // the snapshot does not move with the system
+    spring.setEndValue(0);
+    springSystem.loop(16);
+    assertEquals(loops, metrics.getLoopCount());
+    assertEquals(loops + 1, springSystem.getMetrics().getLoopCount());
+
+    springSystem.resetMetrics();
+    assertEquals(0, springSystem.getMetrics().getLoopCount());
+    springSystem.setMetricsEnabled(false);
+    assertNull(springSystem.getMetrics());
+  }
+
+  @Test
+  public void testLoopProbeSeesEveryPhaseInOrder() {
+    BaseSpringSystem springSystem = new BaseSpringSystem(new SteppingLooper());
+    SpringLoopProbe probe = mock(SpringLoopProbe.class);
+    springSystem.setLoopProbe(probe);
+    Spring spring = springSystem.createSpring().setEndValue(1);
+    springSystem.loop(16);
+
+    InOrder inOrder = inOrder(probe);
+    inOrder.verify(probe).onLoopBegin(springSystem, 16, 1);
+    inOrder.verify(probe).onListenerDispatchBegin(springSystem, false);
+    inOrder.verify(probe).onListenerDispatchEnd(springSystem, false);
+    inOrder.verify(probe).onIntegrationBegin(springSystem);
+    inOrder.verify(probe).onSpringActivate(spring);
+    inOrder.verify(probe).onIntegrationEnd(springSystem, 1);
+    inOrder.verify(probe).onListenerDispatchBegin(springSystem, true);
+    inOrder.verify(probe).onListenerDispatchEnd(springSystem, true);
+    inOrder.verify(probe).onLoopEnd(springSystem, 1);
+
+    while (!springSystem.getIsIdle()) {
+      springSystem.loop(16);
+    }
+    verify(probe).onSpringAtRest(spring);
+  }
+
+  @Test
+  public void testFastForwardToRestNotifiesFinalStateOnce() {
+    mSynchronousLooper.setFastForward(true);
+    Spring spring = mSpringSystemSpy.createSpring();
+    SpringListener listener = mock(SpringListener.class);
+    spring.addListener(listener);
+    spring.setEndValue(1);
+
+    assertTrue(mSpringSystemSpy.getIsIdle());
+    assertEquals(1, spring.getCurrentValue(), 0);
+    assertEquals(0, spring.getVelocity(), 0);
+    InOrder inOrder = inOrder(listener);
+    inOrder.verify(listener).onSpringActivate(spring);
+    inOrder.verify(listener).onSpringUpdate(spring);
+    inOrder.verify(listener).onSpringAtRest(spring);
+    verify(listener).onSpringEndStateChange(spring);
+    verifyNoMoreInteractions(listener);
+  }
+
+  @Test
+  public void testFastForwardMatchesIntegration() {
+    BaseSpringSystem integrated = new BaseSpringSystem(new SteppingLooper());
+    BaseSpringSystem fastForwarded = new BaseSpringSystem(new SteppingLooper());
+    SpringConfig[] configs = {
+        SpringConfig.fromOrigamiTensionAndFriction(40, 7),
+        SpringConfig.fromOrigamiTensionAndFriction(5, 20),
+        new SpringConfig(100, 20),
+        new SpringConfig(0, 5),
+    };
+    for (SpringConfig config : configs) {
+      Spring expected = integrated.createSpring().setSpringConfig(config).setVelocity(3);
+      expected.setEndValue(1);
+      Spring actual = fastForwarded.createSpring().setSpringConfig(config).setVelocity(3);
+      actual.setEndValue(1);
+    }
+    for (int i = 0; i < 10; i++) {
+      integrated.loop(16);
+    }
+    fastForwarded.fastForward(160);
+    for (int i = 0; i < configs.length; i++) {
+      Spring expected = integrated.getAllSprings().get(i);
+      Spring actual = fastForwarded.getAllSprings().get(i);
+      // the closed form is exact, the integration drifts from it slightly
+      assertEquals(expected.getCurrentValue(), actual.getCurrentValue(), 5e-3);
+      assertEquals(expected.getVelocity(), actual.getVelocity(), 5e-2);
+    }
+  }
+
+  @Test
+  public void testFastForwardIncludesDeferredFrames() {
+    BaseSpringSystem springSystem = new BaseSpringSystem(new SteppingLooper());
+    springSystem.setFrameRatePolicy(new FrameRatePolicy() {
+      @Override
+      public int getFrameInterval(Spring spring, double frameDeltaMillis) {
+        return 4;
+      }
+    });
+    Spring deferred = springSystem.createSpring().setEndValue(1);
+    // a starting spring always advances, the next frames are deferred
+    springSystem.loop(16);
+    double position = deferred.getCurrentValue();
+    springSystem.loop(16);
+    springSystem.loop(16);
+    assertEquals(position, deferred.getCurrentValue(), 0);
+    springSystem.fastForward(100);
+
+    BaseSpringSystem referenceSystem = new BaseSpringSystem(new SteppingLooper());
+    Spring reference = referenceSystem.createSpring().setEndValue(1);
+    referenceSystem.loop(16);
+    referenceSystem.fastForward(132);
+    assertEquals(reference.getCurrentValue(), deferred.getCurrentValue(), 1e-12);
+    assertEquals(reference.getVelocity(), deferred.getVelocity(), 1e-12);
+  }
+
+  @Test
+  public void testTimeToRestIsNotBeforeIntegratedRest() {
+    SpringConfig[] configs = {
+        SpringConfig.fromOrigamiTensionAndFriction(40, 7),
+        SpringConfig.fromOrigamiTensionAndFriction(5, 20),
+        new SpringConfig(100, 20),
+        new SpringConfig(0, 5),
+    };
+    SpringSolution solution = new SpringSolution();
+    for (SpringConfig config : configs) {
+      BaseSpringSystem springSystem = new BaseSpringSystem(new SteppingLooper());
+      Spring spring = springSystem.createSpring().setSpringConfig(config).setVelocity(3);
+      spring.setEndValue(1);
+      double timeToRest = spring.getTimeToRest(solution);
+      int frames = 0;
+      while (!springSystem.getIsIdle()) {
+        springSystem.loop(1);
+        frames++;
+      }
+      // the last loop only removes the resting spring
+      double integratedTimeToRest = (frames - 1) / 1000.0;
+      assertTrue(timeToRest + 0.001 >= integratedTimeToRest);
+      assertTrue(timeToRest <= integratedTimeToRest * 1.5);
+    }
+  }
+
+  @Test
+  public void testFastForwardRunsDelayedStarts() {
+    BaseSpringSystem springSystem = new BaseSpringSystem(new SteppingLooper());
+    final int[] loops = new int[1];
+    springSystem.addListener(new SimpleSpringSystemListener() {
+      @Override
+      public void onBeforeIntegrate(BaseSpringSystem springSystem) {
+        loops[0]++;
+      }
+    });
+    Spring first = springSystem.createSpring();
+    Spring second = springSystem.createSpring();
+    springSystem.scheduleEndValue(first, 1, 200);
+    springSystem.scheduleEndValue(second, 2, 5000);
+
+    springSystem.fastForward(1000);
+    assertEquals(1, first.getCurrentValue(), 0);
+    assertEquals(0, second.getCurrentValue(), 0);
+
+    springSystem.fastForwardToRest();
+    assertTrue(springSystem.getIsIdle());
+    assertEquals(2, second.getCurrentValue(), 0);
+    assertTrue(loops[0] < 10);
+  }
+
+  @Test
+  public void testSteppingLooperFastForward() {
+    SteppingLooper looper = new SteppingLooper();
+    BaseSpringSystem springSystem = new BaseSpringSystem(looper);
+    Spring spring = springSystem.createSpring().setEndValue(1);
+    assertFalse(looper.fastForward(50));
+    assertTrue(spring.getCurrentValue() > 0 && spring.getCurrentValue() < 1);
+    looper.fastForwardToRest();
+    assertTrue(springSystem.getIsIdle());
+    assertEquals(1, spring.getCurrentValue(), 0);
+  }
+
   private class SimpleSpringSystemListener implements SpringSystemListener {
     @Override
     public void onBeforeIntegrate(BaseSpringSystem springSystem) {
@@ -0,0 +1,147 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SpringTimelineTest {
+
+  private BaseSpringSystem mSpringSystem;
+
+  @Before
+  public void beforeEach() {
+    mSpringSystem = new BaseSpringSystem(new SteppingLooper());
+  }
+
+  @Test
+  public void testSolutionMatchesIntegratedSpring() {
+    SpringConfig[] configs = {
+        new SpringConfig(230.2, 19), // underdamped
+        new SpringConfig(100, 20),   // critically damped
+        new SpringConfig(100, 40),   // overdamped
+    };
+    SpringSolution solution = new SpringSolution();
+    for (SpringConfig config : configs) {
+      Spring spring = mSpringSystem.createSpring().setSpringConfig(config);
+      spring.setCurrentValue(0).setVelocity(3);
+      spring.setEndValue(1);
+      solution.set(spring);
+      for (int frame = 1; frame <= 30; frame++) {
+        mSpringSystem.loop(16);
+        if (spring.isAtRest()) {
+          break;
+        }
+        // the integrator can trail the exact solution by up to one 1ms solver step
+        assertEquals(solution.getPosition(frame * 0.016), spring.getCurrentValue(), 1e-2);
+        assertEquals(solution.getVelocity(frame * 0.016), spring.getVelocity(), 0.3);
+      }
+    }
+  }
+
+  @Test
+  public void testProgressTriggerStartsOnCrossingFrame() {
+    Spring card = mSpringSystem.createSpring();
+    Spring title = mSpringSystem.createSpring();
+    SpringTimeline timeline = new SpringTimeline(mSpringSystem);
+    SpringTimeline.Step cardStep = timeline.step(card, 1);
+    SpringTimeline.Step titleStep = timeline.step(title, 1).afterProgress(cardStep, 0.8);
+    timeline.play();
+    assertTrue(cardStep.isStarted());
+    assertFalse(titleStep.isStarted());
+
+    double previous = card.getCurrentValue();
+    while (!titleStep.isStarted()) {
+      previous = card.getCurrentValue();
+      mSpringSystem.loop(16);
+    }
+    assertTrue(previous < 0.8);
+    assertTrue(card.getCurrentValue() >= 0.8 - 1e-3);
+    assertEquals(1, title.getEndValue(), 0);
+    assertFalse(timeline.isPlaying());
+  }
+
+  @Test
+  public void testDependentsOfWheelStartedStepsStartOnTheirFrame() {
+    Spring first = mSpringSystem.createSpring();
+    Spring second = mSpringSystem.createSpring();
+    Spring parallel = mSpringSystem.createSpring();
+    Spring progress = mSpringSystem.createSpring();
+    SpringTimeline timeline = new SpringTimeline(mSpringSystem);
+    SpringTimeline.Step firstStep = timeline.step(first, 1);
+    SpringTimeline.Step secondStep = timeline.step(second, 1).afterStart(firstStep, 16);
+    SpringTimeline.Step parallelStep = timeline.step(parallel, 1).afterStart(secondStep, 0);
+    SpringTimeline.Step progressStep =
+        timeline.step(progress, 1).afterProgress(secondStep, 0.5);
+
+    // the second step starts from the timer wheel, its spring moves over the whole first frame
+    SpringSolution solution =
+        new SpringSolution().set(second.getSpringConfig().toImmutable(), 0, 0, 1);
+    double crossingMillis = solution.getTimeToReach(0.5, 10) * 1000;
+    int progressFrame = (int) Math.ceil(Math.ceil(crossingMillis) / 16);
+    assertTrue(progressFrame > 1);
+
+    timeline.play();
+    mSpringSystem.loop(16);
+    assertTrue(secondStep.isStarted());
+    assertTrue(parallelStep.isStarted());
+    int frame = 1;
+    while (!progressStep.isStarted() && frame < 100) {
+      mSpringSystem.loop(16);
+      frame++;
+    }
+    assertEquals(progressFrame, frame);
+  }
+
+  @Test
+  public void testStartAndRestTriggers() {
+    Spring first = mSpringSystem.createSpring();
+    Spring parallel = mSpringSystem.createSpring();
+    Spring delayed = mSpringSystem.createSpring();
+    Spring last = mSpringSystem.createSpring();
+    SpringTimeline timeline = new SpringTimeline(mSpringSystem);
+    SpringTimeline.Step firstStep = timeline.step(first, 1).with(parallel, 2);
+    SpringTimeline.Step delayedStep = timeline.step(delayed, 1).afterStart(firstStep, 32);
+    SpringTimeline.Step lastStep = timeline.step(last, 1).afterRest(firstStep);
+    timeline.play();
+
+    assertEquals(2, parallel.getEndValue(), 0);
+    mSpringSystem.loop(16);
+    assertFalse(delayedStep.isStarted());
+    mSpringSystem.loop(16);
+    assertTrue(delayedStep.isStarted());
+
+    while (!first.isAtRest() || !parallel.isAtRest()) {
+      assertFalse(lastStep.isStarted());
+      mSpringSystem.loop(16);
+    }
+    assertTrue(lastStep.isStarted());
+    assertEquals(3, timeline.getStartedStepCount());
+  }
+
+  @Test
+  public void testCancelStopsPendingSteps() {
+    Spring first = mSpringSystem.createSpring();
+    Spring second = mSpringSystem.createSpring();
+    SpringTimeline timeline = new SpringTimeline(mSpringSystem);
+    SpringTimeline.Step firstStep = timeline.step(first, 1);
+    SpringTimeline.Step secondStep = timeline.step(second, 1).afterStart(firstStep, 100);
+    timeline.play();
+    timeline.cancel();
+    for (int i = 0; i < 20; i++) {
+      mSpringSystem.loop(16);
+    }
+    assertFalse(secondStep.isStarted());
+    assertEquals(0, second.getEndValue(), 0);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class SpringTraceTest {
+
+  private BaseSpringSystem mSpringSystem;
+  private ByteArrayOutputStream mOutput;
+  private SpringTraceWriter mWriter;
+
+  @Before
+  public void beforeEach() {
+    mSpringSystem = new BaseSpringSystem(new SteppingLooper());
+    mOutput = new ByteArrayOutputStream();
+    mWriter = new SpringTraceWriter(mSpringSystem, mOutput);
+  }
+
+  @Test
+  public void testAnalyzerMeasuresSettleTimeAndOvershoot() throws IOException {
+    Spring spring = mSpringSystem.createSpring()
+        .setSpringConfig(SpringConfig.fromOrigamiTensionAndFriction(40, 3));
+    mWriter.start();
+    spring.setEndValue(100);
+    double maxValue = 0;
+    int loops = 0;
+    while (!mSpringSystem.getIsIdle()) {
+      mSpringSystem.loop(16);
+      maxValue = Math.max(maxValue, spring.getCurrentValue());
+      loops++;
+    }
+    mWriter.stop();
+    assertNull(mWriter.getError());
+    // frame and sample together take less than the two raw doubles of the sample alone
+    assertTrue(mOutput.size() < loops * 16);
+
+    SpringTraceAnalyzer analyzer = new SpringTraceAnalyzer();
+    analyzer.analyze(new ByteArrayInputStream(mOutput.toByteArray()));
+    assertEquals(mWriter.getFrameCount(), analyzer.getFrameCount());
+    assertEquals(16, analyzer.getMeanFrameDeltaMillis(), 0);
+
+    SpringTraceAnalyzer.Stats stats = analyzer.getSpringStats(spring.getNumericId());
+    assertEquals(1, stats.getMoveCount());
+    assertEquals(1, stats.getSettledMoveCount());
+    assertEquals(loops * 16, stats.getMaxSettleMillis(), 16);
+    assertEquals((maxValue - 100) / 100, stats.getMaxOvershoot(), 0.0001);
+    assertEquals(1, analyzer.getConfigStats().size());
+    assertEquals(1, analyzer.getConfigStats().iterator().next().getSettledMoveCount());
+  }
+
+  @Test
+  public void testOvershootIsMeasuredFromWhereTheMoveStarted() throws IOException {
+    Spring spring = mSpringSystem.createSpring()
+        .setSpringConfig(SpringConfig.fromOrigamiTensionAndFriction(40, 3))
+        .setCurrentValue(50);
+    mWriter.start();
+    spring.setEndValue(100);
+    double firstOvershoot = (loopUntilIdle(spring, true) - 100) / 50;
+
+    // moved while at rest, so the last traced position is not where the next move starts, and
+    // less friction so this move overshoots more than the first
+    spring.setSpringConfig(SpringConfig.fromOrigamiTensionAndFriction(40, 1));
+    spring.setCurrentValue(20);
+    spring.setEndValue(10);
+    double secondOvershoot = (10 - loopUntilIdle(spring, false)) / 10;
+    mWriter.stop();
+
+    SpringTraceAnalyzer analyzer = new SpringTraceAnalyzer();
+    analyzer.analyze(new ByteArrayInputStream(mOutput.toByteArray()));
+    SpringTraceAnalyzer.Stats stats = analyzer.getSpringStats(spring.getNumericId());
+    assertEquals(2, stats.getMoveCount());
+    assertTrue(secondOvershoot > firstOvershoot);
+    assertEquals(secondOvershoot, stats.getMaxOvershoot(), 0.0001);
+    assertEquals(2, stats.getOvershootingMoveCount());
+  }
+
+  private double loopUntilIdle(Spring spring, boolean max) {
+    double extreme = spring.getCurrentValue();
+    while (!mSpringSystem.getIsIdle()) {
+      mSpringSystem.loop(16);
+      extreme = max ?
+          Math.max(extreme, spring.getCurrentValue()) :
+          Math.min(extreme, spring.getCurrentValue());
+    }
+    return extreme;
+  }
+
+  @Test
+  public void testRetargetedAndDestroyedMovesDoNotSettle() throws IOException {
+    Spring spring = mSpringSystem.createSpring();
+    Spring destroyed = mSpringSystem.createSpring();
+    mWriter.start();
+    spring.setEndValue(1);
+    destroyed.setEndValue(1);
+    mSpringSystem.loop(16);
+    spring.setEndValue(2);
+    destroyed.destroy();
+    while (!mSpringSystem.getIsIdle()) {
+      mSpringSystem.loop(16);
+    }
+    mWriter.stop();
+
+    SpringTraceAnalyzer analyzer = new SpringTraceAnalyzer();
+    analyzer.analyze(new ByteArrayInputStream(mOutput.toByteArray()));
+    SpringTraceAnalyzer.Stats stats = analyzer.getSpringStats(spring.getNumericId());
+    assertEquals(2, stats.getMoveCount());
+    assertEquals(1, stats.getSettledMoveCount());
+    SpringTraceAnalyzer.Stats destroyedStats = analyzer.getSpringStats(destroyed.getNumericId());
+    assertEquals(1, destroyedStats.getMoveCount());
+    assertEquals(0, destroyedStats.getSettledMoveCount());
+  }
+}
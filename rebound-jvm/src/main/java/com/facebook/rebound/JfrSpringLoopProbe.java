@@ -0,0 +1,223 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JfrSpringLoopProbe emits JDK Flight Recorder events for the loops of a
+ * {@link BaseSpringSystem}, so spring work shows up in a recording as its own lanes next to GC,
+ * safepoint and rendering events on the same timeline and thread.
+ *
+ * <ul>
+ *   <li>com.facebook.rebound.Loop: a whole loop with its elapsed time and active springs</li>
+ *   <li>com.facebook.rebound.ListenerDispatch: the system listeners before or after
+ *   integration</li>
+ *   <li>com.facebook.rebound.Integration: advancing the springs and simulations</li>
+ *   <li>com.facebook.rebound.SpringTransition: a spring starting to move or coming to rest</li>
+ * </ul>
+ *
+ * Events are only allocated while their type is enabled in a running recording, and are only
+ * committed when they pass its threshold, so an installed probe costs a few flag checks per loop
+ * when nothing is recording. A probe keeps the events of the loop in progress, so each system
+ * needs its own probe.
+ *
+ * <pre>
+ *   springSystem.setLoopProbe(new JfrSpringLoopProbe());
+ * </pre>
+ */
+public class JfrSpringLoopProbe implements SpringLoopProbe {
+
+  @Name("com.facebook.rebound.Loop")
+  @Label("Spring Loop")
+  @Category("Rebound")
+  @Description("One pass of a spring system over its active springs")
+  static class LoopEvent extends Event {
+    @Label("Elapsed Millis")
+    double elapsedMillis;
+
+    @Label("Active Springs At Start")
+    int activeSpringsAtStart;
+
+    @Label("Active Springs At End")
+    int activeSpringsAtEnd;
+  }
+
+  @Name("com.facebook.rebound.ListenerDispatch")
+  @Label("Spring System Listener Dispatch")
+  @Category("Rebound")
+  @Description("Notification of the spring system listeners before or after integration")
+  static class ListenerDispatchEvent extends Event {
+    @Label("After Integrate")
+    boolean afterIntegrate;
+  }
+
+  @Name("com.facebook.rebound.Integration")
+  @Label("Spring Integration")
+  @Category("Rebound")
+  @Description("Advancing the springs and simulations, including spring listeners")
+  static class IntegrationEvent extends Event {
+    @Label("Active Springs At End")
+    int activeSpringsAtEnd;
+  }
+
+  @Name("com.facebook.rebound.SpringTransition")
+  @Label("Spring Transition")
+  @Category("Rebound")
+  @Description("A spring starting to move or coming to rest")
+  static class SpringTransitionEvent extends Event {
+    @Label("Spring Id")
+    String springId;
+
+    @Label("Transition")
+    String transition;
+
+    @Label("Current Value")
+    double currentValue;
+
+    @Label("End Value")
+    double endValue;
+  }
+
+  static final String TRANSITION_ACTIVATE = "activate";
+  static final String TRANSITION_AT_REST = "atRest";
+
+  private static final EventType LOOP_EVENT_TYPE = EventType.getEventType(LoopEvent.class);
+  private static final EventType LISTENER_DISPATCH_EVENT_TYPE =
+      EventType.getEventType(ListenerDispatchEvent.class);
+  private static final EventType INTEGRATION_EVENT_TYPE =
+      EventType.getEventType(IntegrationEvent.class);
+  private static final EventType SPRING_TRANSITION_EVENT_TYPE =
+      EventType.getEventType(SpringTransitionEvent.class);
+
+  // events of the loop in progress, null unless their type is enabled
+  LoopEvent mLoopEvent;
+  ListenerDispatchEvent mListenerDispatchEvent;
+  IntegrationEvent mIntegrationEvent;
+
+  @Override
+  public void onLoopBegin(
+      BaseSpringSystem springSystem,
+      double elapsedMillis,
+      int activeSpringCount) {
+    mLoopEvent = null;
+    if (!LOOP_EVENT_TYPE.isEnabled()) {
+      return;
+    }
+    LoopEvent event = new LoopEvent();
+    event.begin();
+    event.elapsedMillis = elapsedMillis;
+    event.activeSpringsAtStart = activeSpringCount;
+    mLoopEvent = event;
+  }
+
+  @Override
+  public void onListenerDispatchBegin(BaseSpringSystem springSystem, boolean afterIntegrate) {
+    mListenerDispatchEvent = null;
+    if (!LISTENER_DISPATCH_EVENT_TYPE.isEnabled()) {
+      return;
+    }
+    ListenerDispatchEvent event = new ListenerDispatchEvent();
+    event.begin();
+    event.afterIntegrate = afterIntegrate;
+    mListenerDispatchEvent = event;
+  }
+
+  @Override
+  public void onListenerDispatchEnd(BaseSpringSystem springSystem, boolean afterIntegrate) {
+    ListenerDispatchEvent event = mListenerDispatchEvent;
+    if (event == null) {
+      return;
+    }
+    mListenerDispatchEvent = null;
+    event.end();
+    if (event.shouldCommit()) {
+      event.commit();
+    }
+  }
+
+  @Override
+  public void onIntegrationBegin(BaseSpringSystem springSystem) {
+    mIntegrationEvent = null;
+    if (!INTEGRATION_EVENT_TYPE.isEnabled()) {
+      return;
+    }
+    IntegrationEvent event = new IntegrationEvent();
+    event.begin();
+    mIntegrationEvent = event;
+  }
+
+  @Override
+  public void onIntegrationEnd(BaseSpringSystem springSystem, int activeSpringCount) {
+    IntegrationEvent event = mIntegrationEvent;
+    if (event == null) {
+      return;
+    }
+    mIntegrationEvent = null;
+    event.end();
+    if (event.shouldCommit()) {
+      event.activeSpringsAtEnd = activeSpringCount;
+      event.commit();
+    }
+  }
+
+  @Override
+  public void onSpringActivate(Spring spring) {
+    commitTransition(spring, TRANSITION_ACTIVATE);
+  }
+
+  @Override
+  public void onSpringAtRest(Spring spring) {
+    commitTransition(spring, TRANSITION_AT_REST);
+  }
+
+  @Override
+  public void onSpringListenersBegin(Spring spring) {
+    // spring listeners are part of the Integration event
+  }
+
+  @Override
+  public void onSpringListenersEnd(Spring spring) {
+  }
+
+  @Override
+  public void onLoopEnd(BaseSpringSystem springSystem, int activeSpringCount) {
+    LoopEvent event = mLoopEvent;
+    if (event == null) {
+      return;
+    }
+    mLoopEvent = null;
+    event.end();
+    if (event.shouldCommit()) {
+      event.activeSpringsAtEnd = activeSpringCount;
+      event.commit();
+    }
+  }
+
+  private static void commitTransition(Spring spring, String transition) {
+    if (!SPRING_TRANSITION_EVENT_TYPE.isEnabled()) {
+      return;
+    }
+    SpringTransitionEvent event = new SpringTransitionEvent();
+    if (event.shouldCommit()) {
+      event.springId = spring.getId();
+      event.transition = transition;
+      event.currentValue = spring.getCurrentValue();
+      event.endValue = spring.getEndValue();
+      event.commit();
+    }
+  }
+}
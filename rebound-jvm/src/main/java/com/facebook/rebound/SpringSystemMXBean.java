@@ -0,0 +1,70 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+/**
+ * Management interface of a {@link BaseSpringSystem}, registered with {@link SpringSystemMonitor}.
+ */
+public interface SpringSystemMXBean {
+
+  /**
+   * get the number of springs registered with the system
+   * @return the number of springs
+   */
+  int getRegisteredSpringCount();
+
+  /**
+   * get the number of springs advanced by the loop
+   * @return the number of active springs
+   */
+  int getActiveSpringCount();
+
+  /**
+   * check if the system is idle
+   * @return true if the system is not looping
+   */
+  boolean isIdle();
+
+  /**
+   * get the number of loops run during the last full second
+   * @return the loop rate
+   */
+  double getLoopsPerSecond();
+
+  /**
+   * get the mean duration of the loops measured since the statistics were reset
+   * @return the mean loop time in milliseconds
+   */
+  double getAverageLoopMillis();
+
+  /**
+   * get the longest loop measured since the statistics were reset
+   * @return the max loop time in milliseconds
+   */
+  double getMaxLoopMillis();
+
+  /**
+   * get the number of integration steps taken by all springs since the statistics were reset
+   * @return the number of solver iterations
+   */
+  long getTotalSolverIterations();
+
+  /**
+   * describe every active spring on its own line
+   * @return the id, config, position, velocity and end value of the active springs
+   */
+  String[] dumpActiveSprings();
+
+  /**
+   * clear the loop timings and solver iterations
+   */
+  void resetStatistics();
+}
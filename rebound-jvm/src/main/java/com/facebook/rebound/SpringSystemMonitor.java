@@ -0,0 +1,227 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SpringSystemMonitor exposes the live statistics of a {@link BaseSpringSystem} as a
+ * {@link SpringSystemMXBean} on the platform MBean server, so a running application can be
+ * inspected from JConsole, VisualVM or any other JMX client.
+ *
+ * The monitor is registered under {@code com.facebook.rebound:type=SpringSystem,name=<name>}.
+ * While registered it listens to the system to measure the loop rate and turns on
+ * {@link SpringSystemMetrics} for the loop times and solver iterations. Metrics that were off
+ * when the monitor was registered are turned off again when it is unregistered.
+ *
+ * The system is not thread safe, so the JMX thread never touches its collections or writes to
+ * it. Spring counts are published by the loop into volatile fields and lag up to a loop behind,
+ * or more while the system is idle. Loop times and solver iterations are read from the metrics
+ * without locking and may be momentarily inconsistent with each other. Resetting the statistics
+ * only raises a flag, the loop resets the metrics at the start of its next pass.
+ *
+ * <pre>
+ *   SpringSystemMonitor monitor = new SpringSystemMonitor(springSystem);
+ *   monitor.register("main");
+ *   ...
+ *   monitor.unregister();
+ * </pre>
+ */
+public class SpringSystemMonitor implements SpringSystemMXBean, SpringSystemListener {
+
+  private static final long NANOS_PER_SECOND = 1000000000L;
+
+  private final BaseSpringSystem mSpringSystem;
+  private ObjectName mObjectName;
+  private boolean mEnabledMetrics;
+  // loop rate, updated once per second from the loop
+  private long mWindowStartNanos;
+  private int mWindowLoops;
+  private volatile double mLoopsPerSecond;
+  private volatile long mLastLoopNanos;
+  // published by the loop for the JMX thread
+  private volatile int mRegisteredSpringCount;
+  private volatile int mActiveSpringCount;
+  private volatile boolean mResetRequested;
+
+  /**
+   * constructor for the SpringSystemMonitor
+   * @param springSystem the system to monitor
+   */
+  public SpringSystemMonitor(BaseSpringSystem springSystem) {
+    if (springSystem == null) {
+      throw new IllegalArgumentException("springSystem is required");
+    }
+    mSpringSystem = springSystem;
+  }
+
+  /**
+   * Register the monitor with the platform MBean server and start listening to the system.
+   * @param name the name of the system, unique among the registered systems
+   * @throws JMException if the name is not valid or already registered
+   */
+  public void register(String name) throws JMException {
+    if (name == null) {
+      throw new IllegalArgumentException("name is required");
+    }
+    if (mObjectName != null) {
+      throw new IllegalStateException("monitor is already registered as " + mObjectName);
+    }
+    ObjectName objectName = new ObjectName(
+        "com.facebook.rebound:type=SpringSystem,name=" + ObjectName.quote(name));
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    mObjectName = objectName;
+    mEnabledMetrics = !mSpringSystem.isMetricsEnabled();
+    mSpringSystem.setMetricsEnabled(true);
+    mWindowStartNanos = System.nanoTime();
+    mWindowLoops = 0;
+    mResetRequested = false;
+    publishSpringCounts(mSpringSystem);
+    mSpringSystem.addListener(this);
+  }
+
+  /**
+   * Stop listening to the system and remove the monitor from the platform MBean server.
+   * @throws JMException if the monitor cannot be unregistered
+   */
+  public void unregister() throws JMException {
+    if (mObjectName == null) {
+      return;
+    }
+    mSpringSystem.removeListener(this);
+    if (mEnabledMetrics) {
+      mSpringSystem.setMetricsEnabled(false);
+    }
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName objectName = mObjectName;
+    mObjectName = null;
+    server.unregisterMBean(objectName);
+  }
+
+  /**
+   * get the name the monitor is registered under
+   * @return the name or null if the monitor is not registered
+   */
+  public ObjectName getObjectName() {
+    return mObjectName;
+  }
+
+  @Override
+  public int getRegisteredSpringCount() {
+    return mRegisteredSpringCount;
+  }
+
+  @Override
+  public int getActiveSpringCount() {
+    return mActiveSpringCount;
+  }
+
+  @Override
+  public boolean isIdle() {
+    return mSpringSystem.getIsIdle();
+  }
+
+  @Override
+  public double getLoopsPerSecond() {
+    if (mResetRequested || System.nanoTime() - mLastLoopNanos > NANOS_PER_SECOND) {
+      return 0;
+    }
+    return mLoopsPerSecond;
+  }
+
+  @Override
+  public double getAverageLoopMillis() {
+    SpringSystemMetrics metrics = getReadableMetrics();
+    return metrics == null ? 0 : metrics.getLoopNanos().getMean() / 1000000.0;
+  }
+
+  @Override
+  public double getMaxLoopMillis() {
+    SpringSystemMetrics metrics = getReadableMetrics();
+    return metrics == null ? 0 : metrics.getLoopNanos().getMax() / 1000000.0;
+  }
+
+  @Override
+  public long getTotalSolverIterations() {
+    SpringSystemMetrics metrics = getReadableMetrics();
+    return metrics == null ? 0 : metrics.getSolverIterationCount();
+  }
+
+  /**
+   * get the metrics to read the statistics from, none while a reset is pending so the statistics
+   * read as reset right away
+   */
+  private SpringSystemMetrics getReadableMetrics() {
+    return mResetRequested ? null : mSpringSystem.getCollectingMetrics();
+  }
+
+  @Override
+  public String[] dumpActiveSprings() {
+    List<String> lines = new ArrayList<String>();
+    for (Spring spring : mSpringSystem.getActiveSprings()) {
+      SpringConfig config = spring.getSpringConfig();
+      lines.add(String.format(
+          "%s tension=%.3f friction=%.3f position=%.4f velocity=%.4f end=%.4f",
+          spring.getId(),
+          config.tension,
+          config.friction,
+          spring.getCurrentValue(),
+          spring.getVelocity(),
+          spring.getEndValue()));
+    }
+    return lines.toArray(new String[lines.size()]);
+  }
+
+  @Override
+  public void resetStatistics() {
+    mResetRequested = true;
+  }
+
+  @Override
+  public void onBeforeIntegrate(BaseSpringSystem springSystem) {
+    if (mResetRequested) {
+      springSystem.resetMetrics();
+      mWindowStartNanos = System.nanoTime();
+      mWindowLoops = 0;
+      mLoopsPerSecond = 0;
+      mResetRequested = false;
+    }
+  }
+
+  @Override
+  public void onAfterIntegrate(BaseSpringSystem springSystem) {
+    long now = System.nanoTime();
+    if (now - mLastLoopNanos > NANOS_PER_SECOND) {
+      // the system was idle, start a new window instead of averaging over the pause
+      mWindowStartNanos = now;
+      mWindowLoops = 0;
+    }
+    long windowNanos = now - mWindowStartNanos;
+    if (windowNanos >= NANOS_PER_SECOND) {
+      mLoopsPerSecond = mWindowLoops * (double) NANOS_PER_SECOND / windowNanos;
+      mWindowStartNanos = now;
+      mWindowLoops = 0;
+    }
+    mWindowLoops++;
+    mLastLoopNanos = now;
+    publishSpringCounts(springSystem);
+  }
+
+  private void publishSpringCounts(BaseSpringSystem springSystem) {
+    mRegisteredSpringCount = springSystem.getSpringCount();
+    mActiveSpringCount = springSystem.getActiveSprings().size();
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class JfrSpringLoopProbeTest {
+
+  @Test
+  public void testLoopPhasesAndTransitionsAreRecorded() throws IOException {
+    BaseSpringSystem springSystem = new BaseSpringSystem(new SteppingLooper());
+    springSystem.setLoopProbe(new JfrSpringLoopProbe());
+    Spring spring = springSystem.createSpring();
+
+    File file = File.createTempFile("rebound", ".jfr");
+    int loops = 0;
+    try {
+      Recording recording = new Recording();
+      recording.enable("com.facebook.rebound.Loop");
+      recording.enable("com.facebook.rebound.ListenerDispatch");
+      recording.enable("com.facebook.rebound.Integration");
+      recording.enable("com.facebook.rebound.SpringTransition");
+      recording.start();
+      spring.setEndValue(1);
+      while (!springSystem.getIsIdle()) {
+        springSystem.loop(16);
+        loops++;
+      }
+      recording.stop();
+      recording.dump(file.toPath());
+      recording.close();
+
+      List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+      Map<String, Integer> counts = new HashMap<String, Integer>();
+      for (RecordedEvent event : events) {
+        String name = event.getEventType().getName();
+        counts.put(name, counts.containsKey(name) ? counts.get(name) + 1 : 1);
+        if (name.equals("com.facebook.rebound.SpringTransition")) {
+          assertEquals(spring.getId(), event.getString("springId"));
+        }
+      }
+      assertEquals(loops, (int) counts.get("com.facebook.rebound.Loop"));
+      assertEquals(loops, (int) counts.get("com.facebook.rebound.Integration"));
+      assertEquals(loops * 2, (int) counts.get("com.facebook.rebound.ListenerDispatch"));
+      assertEquals(2, (int) counts.get("com.facebook.rebound.SpringTransition"));
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testNoEventIsCreatedWithoutARecording() {
+    final int[] events = new int[1];
+    JfrSpringLoopProbe probe = new JfrSpringLoopProbe() {
+      @Override
+      public void onLoopBegin(
+          BaseSpringSystem springSystem,
+          double elapsedMillis,
+          int activeSpringCount) {
+        super.onLoopBegin(springSystem, elapsedMillis, activeSpringCount);
+        countEvent(mLoopEvent);
+      }
+
+      @Override
+      public void onListenerDispatchBegin(BaseSpringSystem springSystem, boolean afterIntegrate) {
+        super.onListenerDispatchBegin(springSystem, afterIntegrate);
+        countEvent(mListenerDispatchEvent);
+      }
+
+      @Override
+      public void onIntegrationBegin(BaseSpringSystem springSystem) {
+        super.onIntegrationBegin(springSystem);
+        countEvent(mIntegrationEvent);
+      }
+
+      private void countEvent(Object event) {
+        if (event != null) {
+          events[0]++;
+        }
+      }
+    };
+    BaseSpringSystem springSystem = new BaseSpringSystem(new SteppingLooper());
+    springSystem.setLoopProbe(probe);
+    Spring spring = springSystem.createSpring().setEndValue(1);
+    int loops = 0;
+    while (!springSystem.getIsIdle()) {
+      springSystem.loop(16);
+      loops++;
+    }
+    assertTrue(loops > 0);
+    assertEquals(1, spring.getCurrentValue(), 0);
+    assertEquals(0, events[0]);
+  }
+}
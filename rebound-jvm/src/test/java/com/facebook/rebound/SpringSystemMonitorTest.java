@@ -0,0 +1,87 @@
+/*
+ *  Copyright (c) 2013, Facebook, Inc.
+ *  All rights reserved.
+ *
+ *  This source code is licensed under the BSD-style license found in the
+ *  LICENSE file in the root directory of this source tree. An additional grant
+ *  of patent rights can be found in the PATENTS file in the same directory.
+ *
+ */
+
+package com.facebook.rebound;
+
+import org.junit.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+public class SpringSystemMonitorTest {
+
+  @Test
+  public void testAttributesAreReadThroughThePlatformServer() throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    BaseSpringSystem springSystem = new BaseSpringSystem(new SteppingLooper());
+    SpringSystemMonitor monitor = new SpringSystemMonitor(springSystem);
+    monitor.register("test");
+    ObjectName name = monitor.getObjectName();
+    try {
+      assertTrue(server.isRegistered(name));
+      assertTrue(springSystem.isMetricsEnabled());
+
+      Spring spring = springSystem.createSpring().setEndValue(1);
+      springSystem.createSpring();
+      springSystem.loop(16);
+      assertEquals(2, server.getAttribute(name, "RegisteredSpringCount"));
+      assertEquals(1, server.getAttribute(name, "ActiveSpringCount"));
+      assertEquals(false, server.getAttribute(name, "Idle"));
+      long iterations = springSystem.getMetrics().getSolverIterationCount();
+      assertTrue(iterations > 0);
+      assertEquals(iterations, server.getAttribute(name, "TotalSolverIterations"));
+      assertTrue((Double) server.getAttribute(name, "MaxLoopMillis") > 0);
+
+      String[] dump = (String[]) server.invoke(name, "dumpActiveSprings", null, null);
+      assertEquals(1, dump.length);
+      assertTrue(dump[0].startsWith(spring.getId() + " tension="));
+
+      while (!springSystem.getIsIdle()) {
+        springSystem.loop(16);
+      }
+      assertEquals(0, server.getAttribute(name, "ActiveSpringCount"));
+      assertEquals(true, server.getAttribute(name, "Idle"));
+      assertEquals(0, ((String[]) server.invoke(name, "dumpActiveSprings", null, null)).length);
+
+      // the reset shows right away but only happens on the next loop, from the loop thread
+      long totalIterations = springSystem.getMetrics().getSolverIterationCount();
+      server.invoke(name, "resetStatistics", null, null);
+      assertEquals(0L, server.getAttribute(name, "TotalSolverIterations"));
+      assertEquals(totalIterations, springSystem.getMetrics().getSolverIterationCount());
+      springSystem.createSpring().setEndValue(1);
+      assertEquals(2, server.getAttribute(name, "RegisteredSpringCount"));
+      springSystem.loop(16);
+      assertEquals(3, server.getAttribute(name, "RegisteredSpringCount"));
+      assertEquals(
+          springSystem.getMetrics().getSolverIterationCount(),
+          server.getAttribute(name, "TotalSolverIterations"));
+      assertTrue(springSystem.getMetrics().getSolverIterationCount() < totalIterations);
+    } finally {
+      monitor.unregister();
+    }
+    assertFalse(server.isRegistered(name));
+    assertFalse(springSystem.isMetricsEnabled());
+    assertNull(monitor.getObjectName());
+  }
+
+  @Test
+  public void testMetricsStayOnIfAlreadyEnabled() throws JMException {
+    BaseSpringSystem springSystem = new BaseSpringSystem(new SteppingLooper());
+    springSystem.setMetricsEnabled(true);
+    SpringSystemMonitor monitor = new SpringSystemMonitor(springSystem);
+    monitor.register("enabled");
+    monitor.unregister();
+    assertTrue(springSystem.isMetricsEnabled());
+  }
+}